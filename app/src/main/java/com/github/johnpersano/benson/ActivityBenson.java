@@ -19,65 +19,113 @@
 package com.github.johnpersano.benson;
 
 import android.app.Activity;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.graphics.Color;
 import android.hardware.usb.UsbManager;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.speech.RecognizerIntent;
 import android.speech.tts.TextToSpeech;
 import android.speech.tts.UtteranceProgressListener;
-import android.util.Log;
 import android.view.View;
-
+import android.view.ViewStub;
+
+import com.github.johnpersano.benson.accessory.AccessoryChannel;
+import com.github.johnpersano.benson.accessory.AccessorySupervisor;
+import com.github.johnpersano.benson.accessory.UsbAccessoryStream;
+import com.github.johnpersano.benson.diagnostics.AllocationCounter;
+import com.github.johnpersano.benson.diagnostics.VisualizerStats;
+import com.github.johnpersano.benson.lexicon.LexiconIndex;
 import com.github.johnpersano.benson.lexicon.Query;
+import com.github.johnpersano.benson.lexicon.ReplyPool;
 import com.github.johnpersano.benson.lexicon.Response;
 import com.github.johnpersano.benson.lexicon.Lexicon;
 import com.github.johnpersano.benson.recognition.AndroidRecognition;
 import com.github.johnpersano.benson.recognition.CMUSphinxRecognition;
+import com.github.johnpersano.benson.recognition.CMUSphinxRecognizer;
+import com.github.johnpersano.benson.recognition.KeywordDetector;
+import com.github.johnpersano.benson.speech.PhraseCache;
+import com.github.johnpersano.benson.speech.ReplyChunker;
+import com.github.johnpersano.benson.speech.TurnEngine;
+import com.github.johnpersano.benson.speech.Utterance;
 import com.github.johnpersano.benson.views.AnimatedTextView;
-import com.github.johnpersano.benson.views.visualizer.CircleRenderer;
-import com.github.johnpersano.benson.views.visualizer.VisualizerView;
-
-import com.wolfram.alpha.WAEngine;
-import com.wolfram.alpha.WAException;
-import com.wolfram.alpha.WAPlainText;
-import com.wolfram.alpha.WAQuery;
-import com.wolfram.alpha.WAQueryResult;
+import com.github.johnpersano.benson.views.FrameStatsOverlay;
+import com.github.johnpersano.benson.visualizer.CircleRenderer;
+import com.github.johnpersano.benson.visualizer.SpectrumRenderer;
+import com.github.johnpersano.benson.visualizer.VisualizerHost;
+import com.github.johnpersano.benson.wolfram.ResponseCache;
+import com.github.johnpersano.benson.wolfram.WolframClient;
+import com.github.johnpersano.benson.wolfram.WolframDispatcher;
 
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Random;
 
-import edu.cmu.pocketsphinx.Assets;
 import edu.cmu.pocketsphinx.SpeechRecognizer;
-import me.palazzetti.adktoolkit.AdkManager;
 
-import static edu.cmu.pocketsphinx.SpeechRecognizerSetup.defaultSetup;
 
 
-public class ActivityBenson extends Activity implements AndroidRecognition.OnResultListener {
+public class ActivityBenson extends Activity implements AndroidRecognition.OnResultListener,
+        CMUSphinxRecognizer.OnReadyListener {
 
     @SuppressWarnings("UnusedDeclaration")
     private static final String TAG = "ActivityBenson";
 
-    /* CMUSphinx keyword requires a string key. For simplicity, the value is set as 'key'. */
-    private static final String RECOGNITION_KEY = "key";
+    /* CMUSphinx keyword search. The recognizer listens for 'benson' under this key. */
+    private static final String RECOGNITION_KEY = CMUSphinxRecognizer.RECOGNITION_KEY;
 
-    /* CMUSphinx keyword. This is the only word CMUSphinx will listen for. */
-    private static final String RECOGNITION_KEYWORD = "benson";
+    /* Keyword hypotheses within one edit of a keyword count, and one keyword only triggers once. */
+    private static final int KEYWORD_TOLERANCE = 1;
+    private static final long KEYWORD_DEBOUNCE = 2 * 1000;
+
+    /* Recognition alternatives requested from the Android recognizer. Agreeing alternatives outvote a misheard top result. */
+    private static final int RECOGNITION_ALTERNATIVES = 5;
 
     /* Generic responses for speech recognition. */
     private static final String RESPONSE_SIR = "Sir?";
     private static final String RESPONSE_ONLINE = "I am online. If you require my services, I'll be here.";
     private static final String RESPONSE_HOLD = "Let me look that up.";
 
+    /* Wolfram answers are cached on disk. Keep enough for the usual questions and let them go stale after a day. */
+    private static final String WOLFRAM_CACHE_FILE = "wolfram_cache";
+    private static final int WOLFRAM_CACHE_SIZE = 128;
+    private static final long WOLFRAM_CACHE_TTL = 24 * 60 * 60 * 1000;
+
+    /* Time to wait for a Wolfram answer before saying the hold phrase. Cached and fast answers skip it. */
+    private static final long WOLFRAM_HOLD_DELAY = 400;
+
+    /* Time to wait for a Wolfram answer before apologizing. */
+    private static final long WOLFRAM_DEADLINE = 8 * 1000;
+
+    /* Accessory commands wait at most this long to be written. Few are ever waiting, they coalesce per device. */
+    private static final long ACCESSORY_WRITE_TIMEOUT = 500;
+    private static final int ACCESSORY_QUEUE_CAPACITY = 16;
+
+    /* Long replies are spoken in chunks. The first is short so it is heard quickly, every canned reply fits in it. */
+    private static final int FIRST_CHUNK_LENGTH = 120;
+    private static final int CHUNK_LENGTH = 240;
+
+    /* Disk budget for pre-rendered phrases. A short reply renders to roughly 100KB. */
+    private static final long PHRASE_CACHE_BYTES = 16 * 1024 * 1024;
+
+    /* Reply arrays rendered ahead of time, most frequently spoken first. Time and temperature replies are formatted and cannot be cached. */
+    private static final int[] PHRASE_CACHE_ARRAYS = {
+            R.array.hello_default, R.array.how_are_you_default, R.array.component_on_default,
+            R.array.component_off_default, R.array.component_default, R.array.component_state_on,
+            R.array.component_state_off, R.array.component_state_unknown, R.array.temperature_unavailable,
+            R.array.wolfram_no_find, R.array.wolfram_bad_query, R.array.wolfram_timeout, R.array.hello_positive_status,
+            R.array.hello_negative_status, R.array.hello_no_joke, R.array.how_are_you_positive_status,
+            R.array.how_are_you_negative_status, R.array.how_are_you_no_joke, R.array.joke_default};
+
     /* Custom TextView that will animate text. */
     private AnimatedTextView mAnimatedTextView;
 
@@ -89,20 +137,41 @@ public class ActivityBenson extends Activity implements AndroidRecognition.OnRes
     /* Benson's voice. Try experimenting with text to speech settings to change voice. */
     private TextToSpeech mTTS;
 
+    /* Fixed phrases rendered to files, so speaking them skips synthesis. */
+    private PhraseCache mPhraseCache;
+
     /* The pulsating circles used to represent voice and status. */
-    private VisualizerView mVisualizerView;
+    private VisualizerHost mVisualizerView;
 
-    /* Android Adk manager to communicate with the Arduino Due. */
-    private AdkManager mAdkManager;
+    /* Frame timing of the visualizer, shown by the debug overlay and written by dump(). */
+    private final VisualizerStats mVisualizerStats = new VisualizerStats();
+
+    /* Keeps the link to the Arduino Due alive. Its channel writes commands on its own thread, a stalled accessory never blocks a turn. */
+    private AccessorySupervisor mAccessorySupervisor;
 
     /* This handler will clear on screen text and reset mood ten seconds after Benson speaks. */
     private Handler mTextViewHandler;
 
-    /* Default conversational vocabulary. This list is used to reset Benson's lexicon and does NOT change. */
-    private final List<? extends Query> mDefaultList = new Lexicon().lexicon;
+    /* Every reply array, loaded once so turns never parse array resources. */
+    private ReplyPool mReplyPool;
+
+    /* Matches CMUSphinx hypotheses against the Benson keywords without allocating. */
+    private KeywordDetector mKeywordDetector;
+
+    /* Runs Wolfram lookups for the current turn and drops stale answers. */
+    private WolframDispatcher mWolframDispatcher;
 
-    /* Conversational vocabulary. This list will change depending on response clarification. */
-    private List<? extends Query> mDynamicList;
+    /* Default conversational vocabulary. This index is used to reset Benson's lexicon and does NOT change. */
+    private final LexiconIndex mDefaultIndex = Lexicon.getDefaultIndex();
+
+    /* Result of matching the recognition alternatives of a turn, reused every turn. */
+    private final LexiconIndex.Match mMatch = new LexiconIndex.Match();
+
+    /* Tracks what Benson is saying and decides which recognizer listens once he is done. */
+    private TurnEngine mTurnEngine;
+
+    /* Parameters for every utterance. TextToSpeech copies them, so one map is reused. */
+    private final HashMap<String, String> mSpeechParams = new HashMap<String, String>();
 
 
     @Override
@@ -118,17 +187,32 @@ public class ActivityBenson extends Activity implements AndroidRecognition.OnRes
                 | View.SYSTEM_UI_FLAG_FULLSCREEN
                 | View.SYSTEM_UI_FLAG_HIDE_NAVIGATION);
 
-        /* Open connection to the Arduino Due. */
-        mAdkManager = new AdkManager((UsbManager) getSystemService(Context.USB_SERVICE));
-        mAdkManager.open();
+        /* Load reply arrays up front so the first turn does not pay for it. */
+        mReplyPool = ReplyPool.getInstance(ActivityBenson.this);
+
+        /* Partial results arrive many times per second, so keywords are matched from a prebuilt set. */
+        mKeywordDetector = new KeywordDetector(mReplyPool.getReplies(R.array.cmusphinx_keywords),
+                KEYWORD_TOLERANCE, KEYWORD_DEBOUNCE);
+
+        /* Go online to > http://products.wolframalpha.com/developers/ and sign up for an app key.
+         * Once you have an app key, create a string resource with the id wolfram_key and the key for text. */
+        mWolframDispatcher = new WolframDispatcher(new WolframClient(getResources().getString(R.string.wolfram_key),
+                new ResponseCache(new File(getCacheDir(), WOLFRAM_CACHE_FILE), WOLFRAM_CACHE_SIZE, WOLFRAM_CACHE_TTL)));
+
+        /* Connection to the Arduino Due. The accessory is opened by the first command and reopened whenever it is attached. */
+        final UsbAccessoryStream accessoryStream = new UsbAccessoryStream((UsbManager) getSystemService(Context.USB_SERVICE));
+        mAccessorySupervisor = new AccessorySupervisor(accessoryStream,
+                new AccessoryChannel(accessoryStream, ACCESSORY_QUEUE_CAPACITY, ACCESSORY_WRITE_TIMEOUT));
+        registerReceiver(mAccessoryReceiver, new IntentFilter(UsbManager.ACTION_USB_ACCESSORY_DETACHED));
 
         /* This textview serves as Benson's subtitle. */
         mAnimatedTextView = (AnimatedTextView)
                 findViewById(R.id.animated_textview);
         mAnimatedTextView.setText(getResources().getString(R.string.initialization));
 
-        /* The CMUSphinxRecognizer will continuously listen for the word 'benson'. */
-        initializeCMUSphinxRecognizer();
+        /* The CMUSphinxRecognizer will continuously listen for the word 'benson'. The decoder is shared
+         * by the whole process, so after the first launch it is handed over without reloading. */
+        CMUSphinxRecognizer.getInstance(ActivityBenson.this).attach(ActivityBenson.this);
 
         /* The AndroidRecognizer will be called after Benson hears his name to listen for the users speech. */
         /* Create an Android speechrecognizer and set recognition listener. Used custom listener for simplicity. */
@@ -140,105 +224,90 @@ public class ActivityBenson extends Activity implements AndroidRecognition.OnRes
         mAndroidRecognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_PREFERENCE, "en");
         mAndroidRecognizerIntent.putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, ActivityBenson.this.getPackageName());
         mAndroidRecognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_WEB_SEARCH);
-        mAndroidRecognizerIntent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 1);
+        mAndroidRecognizerIntent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, RECOGNITION_ALTERNATIVES);
 
         /* The visualizer is Benson's pulsating circle. */
-        mVisualizerView = (VisualizerView) findViewById(R.id.visualizer_view);
+        /* The GL backend fades the trails on the GPU, the Canvas backend is kept as a fallback. */
+        final ViewStub visualizerStub = (ViewStub) findViewById(R.id.visualizer_stub);
+        visualizerStub.setLayoutResource(getResources().getBoolean(R.bool.use_gl_visualizer)
+                ? R.layout.visualizer_gl : R.layout.visualizer_canvas);
+        mVisualizerView = (VisualizerHost) visualizerStub.inflate();
+        mVisualizerView.setFrameObserver(mVisualizerStats);
         mVisualizerView.create();
 
-        /* Add a circle renderer to the visualizer view. Other renderers can be used from the visualizer library. */
-        CircleRenderer circleRenderer = new CircleRenderer();
-        mVisualizerView.addRenderer(circleRenderer);
-        circleRenderer.changeColor(Color.CYAN);
-
-        /* The Android TTS service will serve as Benson's voice. */
-        initializeSpeech();
-
-        /* Create a handler to clear the subtitle text off of the screen. */
-        mTextViewHandler = new Handler();
-
-    }
-
-    private void initializeCMUSphinxRecognizer() {
-
-        /* Do the initialization in an AsyncTask since it takes a while. */
-        new AsyncTask<Void, Void, Exception>() {
-
-            @Override
-            protected void onPreExecute() {
-                super.onPreExecute();
-
-                mAnimatedTextView.setText(getResources().getString(R.string.initialization));
-
-            }
-
-            @Override
-            protected Exception doInBackground(Void... params) {
+        if (getResources().getBoolean(R.bool.show_visualizer_stats)) {
 
-                try {
+            final FrameStatsOverlay frameStatsOverlay = (FrameStatsOverlay) findViewById(R.id.frame_stats_overlay);
+            frameStatsOverlay.setVisibility(View.VISIBLE);
+            frameStatsOverlay.setStats(mVisualizerStats);
 
-                    final File assetDirectory = new Assets(ActivityBenson.this).syncAssets();
-                    final File modelsDirectory = new File(assetDirectory, "models");
+        }
 
-                    mCMUSphinxRecognizer = defaultSetup()
-                            .setAcousticModel(new File(modelsDirectory, "hmm/en-us-semi"))
-                            .setDictionary(new File(modelsDirectory, "dict/cmu07a.dic"))
-                            .setRawLogDir(assetDirectory).setKeywordThreshold(1e-20f)
-                            .getRecognizer();
+        AllocationCounter.setEnabled(getResources().getBoolean(R.bool.count_turn_allocations));
 
-                } catch (IOException exception) {
+        /* Add a circle renderer to the visualizer view, or a spectrum renderer if configured. */
+        if (getResources().getBoolean(R.bool.use_spectrum_renderer)) {
 
-                    return exception;
+            SpectrumRenderer spectrumRenderer = new SpectrumRenderer();
+            mVisualizerView.addRenderer(spectrumRenderer);
+            spectrumRenderer.changeColor(Color.CYAN);
 
-                }
+        } else {
 
-                return null;
+            CircleRenderer circleRenderer = new CircleRenderer();
+            mVisualizerView.addRenderer(circleRenderer);
+            circleRenderer.changeColor(Color.CYAN);
 
-            }
+        }
 
-            @Override
-            protected void onPostExecute(Exception exception) {
+        /* Speech progress drives the recognizers through the turn engine. */
+        mTurnEngine = new TurnEngine(mSpeaker, mTurnCallbacks);
 
-                /* If no exception was thrown during initialization, add recognition listener. */
-                if (exception == null) {
+        /* The Android TTS service will serve as Benson's voice. */
+        initializeSpeech();
 
-                    mCMUSphinxRecognizer.addListener(new CMUSphinxRecognition(new CMUSphinxRecognition.OnResultListener() {
+        /* Create a handler to clear the subtitle text off of the screen. */
+        mTextViewHandler = new Handler();
 
-                        @Override
-                        public void onSpeechResult(String hypothesis) {
+    }
 
-                            if (hypothesis != null) {
+    @Override
+    public void onRecognizerReady(SpeechRecognizer recognizer) {
 
-                                /* Check if response contains the Benson keywords. */
-                                if (Arrays.asList(getResources().getStringArray(R.array.cmusphinx_keywords)).contains(hypothesis)) {
+        mCMUSphinxRecognizer = recognizer;
+        mCMUSphinxRecognizer.addListener(mCMUSphinxRecognition);
 
-                                    say(new Response().setReply(RESPONSE_SIR));
+        /* Do not start recognition immediately. Recognition start/stop is handled by a TTS listener. */
+        mCMUSphinxRecognizer.stop();
 
-                                }
+    }
 
-                            }
+    @Override
+    public void onRecognizerError(IOException exception) {
 
-                        }
+        mAnimatedTextView.setText(getResources().getString(R.string.error_recognition));
 
-                    }));
+    }
 
-                    /* Set the CMUSphinx speech recognizer to listen for the keyword 'benson'. */
-                    mCMUSphinxRecognizer.addKeyphraseSearch(RECOGNITION_KEY, RECOGNITION_KEYWORD);
+    /* Listens for the Benson keywords while the CMUSphinx recognizer is running. */
+    private final CMUSphinxRecognition mCMUSphinxRecognition = new CMUSphinxRecognition(new CMUSphinxRecognition.OnResultListener() {
 
-                    /* Do not start recognition immediately. Recognition start/stop is handled by a TTS listener. */
-                    mCMUSphinxRecognizer.stop();
+        @Override
+        public void onSpeechResult(String hypothesis) {
 
-                } else {
+            /* Check if response contains the Benson keywords. Repeated partial results only trigger once. */
+            if (mKeywordDetector.onHypothesis(hypothesis)) {
 
-                    mAnimatedTextView.setText(getResources().getString(R.string.error_recognition));
+                /* A new turn has started, an answer to the previous question would be stale. */
+                mWolframDispatcher.cancel();
 
-                }
+                say(new Response().setReply(RESPONSE_SIR));
 
             }
 
-        }.execute();
+        }
 
-    }
+    });
 
     private void initializeSpeech() {
 
@@ -257,90 +326,149 @@ public class ActivityBenson extends Activity implements AndroidRecognition.OnRes
                     /* On first initialization tell user Benson is online. */
                     say(new Response().setReply(RESPONSE_ONLINE));
 
-                    /* Set listener for Benson's speech. Both recognition services will start/stop based on speech progress. */
+                    /* 'Sir?' starts every interaction, so it is rendered first. */
+                    final List<String> phrases = new ArrayList<String>();
+                    phrases.add(RESPONSE_SIR);
+                    phrases.add(RESPONSE_HOLD);
+                    phrases.add(getResources().getString(R.string.response_misunderstood_nested_lexicon));
+                    phrases.add(RESPONSE_ONLINE);
+
+                    for (int arrayId : PHRASE_CACHE_ARRAYS) {
+
+                        phrases.addAll(Arrays.asList(mReplyPool.getReplies(arrayId)));
+
+                    }
+
+                    mPhraseCache = new PhraseCache(ActivityBenson.this, mTTS, PHRASE_CACHE_BYTES);
+                    mPhraseCache.warm(phrases);
+
+                    /* Set listener for Benson's speech. Progress is reported on a binder thread, the turn engine runs on the UI thread. */
                     mTTS.setOnUtteranceProgressListener(new UtteranceProgressListener() {
 
                         @Override
                         public void onStart(final String utteranceId) {
 
-                            /* If Benson is speaking, do not listen for speech recognition. */
-                            mCMUSphinxRecognizer.stop();
-
-                            /* Show what Benson is saying in the textview. Apparently this listener does not run on UI thread. */
                             runOnUiThread(new Runnable() {
                                 public void run() {
 
-                                    mAnimatedTextView.animateText(utteranceId);
+                                    mTurnEngine.onUtteranceStart(utteranceId);
 
                                 }
                             });
 
-                            /* Clear pending runnable that removes subtitle text. */
-                            mTextViewHandler.removeCallbacks(mTextViewRunnable);
+                        }
+
+                        @Override
+                        public void onDone(final String utteranceId) {
+
+                            runOnUiThread(new Runnable() {
+                                public void run() {
+
+                                    mTurnEngine.onUtteranceDone(utteranceId);
+
+                                }
+                            });
 
                         }
 
                         @Override
-                        public void onDone(String utteranceId) {
+                        public void onError(final String utteranceId) {
+
+                            runOnUiThread(new Runnable() {
+                                public void run() {
 
-                            /* If Benson has responded to his name or is asking a question, start Android SpeechRecognizer. */
-                            if (utteranceId.equals(RESPONSE_SIR) || utteranceId.endsWith("?")) {
+                                    mTurnEngine.onUtteranceError(utteranceId);
+
+                                }
+                            });
+
+                        }
 
-                                runOnUiThread(new Runnable() {
-                                    public void run() {
+                    });
 
-                                        mAndroidRecognizer.startListening(mAndroidRecognizerIntent);
+                }
 
-                                    }
-                                });
+            }
 
-                            /* If Benson has told the user to hold (Wolfram query) do not start listening. */
-                            } else if (utteranceId.equals(RESPONSE_HOLD)) {
+        });
 
-                                /* Prevent speech recognition while Wolfram query is running. Only used to avoid the else call. */
-                                mCMUSphinxRecognizer.stop();
+    }
 
-                            } else {
 
-                                /* Benson has responded to the user and should start listening again. */
-                                mCMUSphinxRecognizer.startListening(RECOGNITION_KEY);
+    /* The activity is single task, so an accessory attached while Benson runs arrives here. */
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
 
-                                /* Clear the subtitle after twelve seconds. */
-                                mTextViewHandler.postDelayed(mTextViewRunnable, (12 * 1000));
+        if (UsbManager.ACTION_USB_ACCESSORY_ATTACHED.equals(intent.getAction())) {
 
-                            }
+            mAccessorySupervisor.onAccessoryAttached();
 
-                        }
+        }
 
-                        @Override
-                        public void onError(String utteranceId) {
+    }
 
-                            /* This has never been called during testing. Start listening just in case. */
-                            mCMUSphinxRecognizer.startListening(RECOGNITION_KEY);
+    @Override
+    protected void onResume() {
+        super.onResume();
 
-                        }
+        mVisualizerView.onResume();
 
-                    });
+    }
 
-                }
+    @Override
+    protected void onPause() {
 
-            }
+        mVisualizerView.onPause();
 
-        });
+        super.onPause();
 
     }
 
+    /* Visualizer, accessory and Wolfram timing is included in 'adb shell dumpsys activity com.github.johnpersano.benson'. */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+
+        writer.println(prefix + "Visualizer:");
+        mVisualizerStats.dump(prefix + "  ", writer);
+
+        writer.println(prefix + "Accessory:");
+        mAccessorySupervisor.getChannel().dump(prefix + "  ", writer);
+
+        writer.println(prefix + "Wolfram:");
+        writer.println(prefix + "  queued=" + mWolframDispatcher.getQueueDepth());
+        writer.println(prefix + "  latency: " + mWolframDispatcher.getLatency().summary("ms"));
+
+        if (AllocationCounter.isEnabled()) {
+
+            writer.println(prefix + "Allocations:");
+            writer.println(prefix + "  last turn=" + AllocationCounter.getLastCount() + " objects, "
+                    + AllocationCounter.getLastSize() + " bytes");
+
+        }
+
+    }
 
     @Override
     public void onDestroy() {
 
+        /* Hand the decoder back without tearing it down, the next activity reuses it. */
         if (mCMUSphinxRecognizer != null) {
 
-            mCMUSphinxRecognizer.stop();
+            mCMUSphinxRecognizer.removeListener(mCMUSphinxRecognition);
             mCMUSphinxRecognizer = null;
 
         }
 
+        CMUSphinxRecognizer.getInstance(ActivityBenson.this).detach(ActivityBenson.this);
+
+        if (mPhraseCache != null) {
+
+            mPhraseCache.shutdown();
+
+        }
+
         if (mTTS != null) {
 
             mTTS.stop();
@@ -361,153 +489,272 @@ public class ActivityBenson extends Activity implements AndroidRecognition.OnRes
 
         }
 
-        super.onDestroy();
+        if (mWolframDispatcher != null) {
 
-    }
+            mWolframDispatcher.shutdown();
 
+        }
 
-    @Override
-    public void onSpeechResult(boolean resultOK, String hypothesis) {
+        if (mAccessorySupervisor != null) {
 
-        if (resultOK) {
+            unregisterReceiver(mAccessoryReceiver);
+            mAccessorySupervisor.shutdown();
 
-            for (Query query : (mDynamicList != null) ? this.mDynamicList : mDefaultList) {
+        }
 
-                for (String input : query.getInputs()) {
+        super.onDestroy();
 
-                    if (hypothesis.contains(input)) {
+    }
 
-                        final Response response = query.getResponse(ActivityBenson.this, hypothesis, mAdkManager);
-                        this.mDynamicList = response.getNestedLexicon();
 
-                        say(response);
+    @Override
+    public void onSpeechResults(String[] hypotheses, float[] confidences) {
 
-                        return;
+        /* Measure the turn. Lexicons and their indexes are shared, so only the reply itself should allocate. */
+        AllocationCounter.begin();
 
-                    }
+        /* Every alternative is matched in a single pass over it, and the alternatives vote by confidence. */
+        final List<? extends Query> followUp = mTurnEngine.getFollowUp();
+        final boolean matched = ((followUp != null) ? Lexicon.getIndex(followUp) : mDefaultIndex)
+                .matchBest(hypotheses, confidences, mMatch);
 
-                }
+        if (matched) {
 
-            }
+            final Response response = mMatch.getQuery().getResponse(ActivityBenson.this, mMatch.getHypothesis(),
+                    mAccessorySupervisor.getChannel());
 
-            if (mDynamicList != null) {
+            AllocationCounter.end(TAG);
 
-                say(new Response().setReply(getResources().getString(R.string.response_misunderstood_nested_lexicon)));
+            say(response);
 
-                this.mDynamicList = null;
+            return;
 
-            } else {
+        }
 
-                /* Benson was not able to find the user's query in his vocabulary, maybe it's a query for Wolfram Alpha. */
-                say(new Response().setReply(RESPONSE_HOLD));
+        AllocationCounter.end(TAG);
 
-                new WolframQuery().execute(hypothesis);
+        /* The misunderstanding is a statement, so the follow up lexicon no longer applies once it is said. */
+        if (followUp != null) {
 
-            }
+            say(new Response().setReply(getResources().getString(R.string.response_misunderstood_nested_lexicon)));
 
         } else {
 
-            /* Conversation context no longer applies. Reset vocabulary. */
-            this.mDynamicList = null;
+            /* Benson was not able to find the user's query in his vocabulary, maybe it's a query for Wolfram Alpha.
+             * The lookup starts right away with the most confident unmatched alternative, the hold phrase is only spoken if the answer is slow. */
+            mWolframDispatcher.submit(mMatch.getHypothesis(), WOLFRAM_HOLD_DELAY, WOLFRAM_DEADLINE, mWolframCallback);
 
-            /* Error, say error response. See AndroidRecognition class. */
-            say(new Response().setReply(hypothesis));
+            /* Saying Benson's name before the answer arrives starts a new turn and cancels the lookup. */
+            startKeywordSpotting();
 
         }
 
     }
 
+    @Override
+    public void onSpeechError(String reply) {
+
+        /* Error, say error response. See AndroidRecognition class. Conversation context ends with it. */
+        say(new Response().setReply(reply));
+
+    }
+
     private void say(Response response) {
 
-        /* Create parameter with the text to be spoken. This is used to display subtitle. */
-        final HashMap<String, String> params = new HashMap<String, String>();
-        params.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, response.getReply());
+        say(response, true);
+
+    }
+
+    /* Replies with a follow up lexicon are questions, as are plain replies asking something such as 'Sir?'. */
+    private void say(Response response, boolean flush) {
+
+        final String reply = response.getReply();
 
-        mTTS.speak(response.getReply(), TextToSpeech.QUEUE_FLUSH, params);
+        final int type;
+
+        if (response.getNestedLexicon() != null || reply.endsWith("?")) {
+
+            type = Utterance.TYPE_QUESTION;
+
+        } else {
+
+            type = Utterance.TYPE_STATEMENT;
+
+        }
+
+        /* Long Wolfram answers start playing after the first chunk is synthesized instead of the whole answer. */
+        mTurnEngine.say(ReplyChunker.split(reply, FIRST_CHUNK_LENGTH, CHUNK_LENGTH), type, response.getNestedLexicon(), flush);
 
     }
 
-    /* This Runnable will clear any existing text off of the screen. */
-    private Runnable mTextViewRunnable = new Runnable() {
+    /* Speaks through the text to speech service. The utterance id is the turn engine's, never the text. */
+    private final TurnEngine.Speaker mSpeaker = new TurnEngine.Speaker() {
+
         @Override
-        public void run() {
+        public void speak(String text, String utteranceId, boolean flush) {
 
-            if (mAnimatedTextView != null) {
+            mSpeechParams.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, utteranceId);
 
-                mAnimatedTextView.setText(" ");
+            mTTS.speak(text, flush ? TextToSpeech.QUEUE_FLUSH : TextToSpeech.QUEUE_ADD, mSpeechParams);
+
+        }
+
+    };
+
+    /* Starts and stops the recognizers as Benson's turn progresses. Runs on the UI thread. */
+    private final TurnEngine.Callbacks mTurnCallbacks = new TurnEngine.Callbacks() {
+
+        @Override
+        public void onUtteranceStarted(Utterance utterance) {
+
+            /* If Benson is speaking, do not listen for speech recognition. */
+            if (mCMUSphinxRecognizer != null) {
+
+                mCMUSphinxRecognizer.stop();
+
+            }
+
+            /* Show what Benson is saying in the textview. Chunks of a long reply stream in as they are spoken. */
+            if (utterance.isContinuation()) {
+
+                mAnimatedTextView.appendText(utterance.getText());
+
+            } else {
+
+                mAnimatedTextView.animateText(utterance.getText());
 
             }
 
+            /* Only capture the output mix while Benson is speaking. */
+            mVisualizerView.setCapturing(true);
+
+            /* Clear pending runnable that removes subtitle text. */
+            mTextViewHandler.removeCallbacks(mTextViewRunnable);
+
         }
 
-    };
+        @Override
+        public void onListenForKeyword() {
+
+            mVisualizerView.setCapturing(false);
 
-    /* AsyncTask to get response from Wolfram API. */
-    private class WolframQuery extends AsyncTask<String, Void, String> {
+            /* Benson has responded to the user and should start listening again. */
+            startKeywordSpotting();
 
-        private static final String FORMAT = "plaintext";
+            /* Clear the subtitle after twelve seconds. */
+            mTextViewHandler.postDelayed(mTextViewRunnable, (12 * 1000));
+
+        }
 
         @Override
-        protected String doInBackground(String... params) {
+        public void onListenForAnswer(Utterance question) {
+
+            mVisualizerView.setCapturing(false);
+
+            /* Benson has responded to his name or is asking a question, start Android SpeechRecognizer. */
+            mAndroidRecognizer.startListening(mAndroidRecognizerIntent);
 
-            /* Go online to > http://products.wolframalpha.com/developers/ and sign up for an app key.
-             * Once you have an app key, create a string resource with the id wolfram_key and the key for text. */
-            final WAEngine engine = new WAEngine();
-            engine.setAppID(getResources().getString(R.string.wolfram_key));
-            engine.addFormat(FORMAT);
+        }
+
+        @Override
+        public void onHold() {
 
-            final WAQuery query = engine.createQuery();
-            query.setInput(params[0]);
+            mVisualizerView.setCapturing(false);
 
-            try {
+            /* Only Benson's name is listened for while the Wolfram query is running, it cancels the query. */
+            startKeywordSpotting();
 
-                final WAQueryResult queryResult = engine.performQuery(query);
+        }
 
-                if (queryResult.isError()) {
+    };
 
-                    return queryResult.getErrorMessage();
+    /* Start listening for Benson's name. Does nothing if CMUSphinx is not set up yet or already listening. */
+    private void startKeywordSpotting() {
 
-                } else if (!queryResult.isSuccess()) {
+        if (mCMUSphinxRecognizer != null) {
 
-                    return Arrays.asList(getResources().getStringArray(R.array.wolfram_bad_query)).get(new Random()
-                            .nextInt(getResources().getStringArray(R.array.wolfram_bad_query).length));
+            mKeywordDetector.reset();
+            mCMUSphinxRecognizer.startListening(RECOGNITION_KEY);
 
-                } else {
+        }
 
-                    /* Very hacky way to get Wolfram API response. Needs optimization. */
-                    for (int i = 0; i < queryResult.getNumPods(); i++) {
+    }
 
-                        if (i == 2) {
+    /* Detaching is only broadcast, attaching is delivered to onNewIntent(). */
+    private final BroadcastReceiver mAccessoryReceiver = new BroadcastReceiver() {
 
-                            final Object element = queryResult.getPods()[1].getSubpods()[0].getContents()[0];
+        @Override
+        public void onReceive(Context context, Intent intent) {
 
-                            return (((WAPlainText) element).getText());
+            mAccessorySupervisor.onAccessoryDetached();
 
-                        }
+        }
 
-                    }
+    };
 
-                }
+    /* This Runnable will clear any existing text off of the screen. */
+    private Runnable mTextViewRunnable = new Runnable() {
+        @Override
+        public void run() {
 
-            } catch (WAException exception) {
+            if (mAnimatedTextView != null) {
 
-                Log.e(TAG, exception.toString());
+                mAnimatedTextView.setText(" ");
 
             }
 
-            return Arrays.asList(getResources().getStringArray(R.array.wolfram_no_find)).get(new Random()
-                    .nextInt(getResources().getStringArray(R.array.wolfram_no_find).length));
+        }
+
+    };
+
+    /* Speaks the answer of the current Wolfram lookup, or an apology if it took too long.
+     * If the hold phrase was spoken the reply is queued behind it instead of cutting it off. */
+    private final WolframDispatcher.Callback mWolframCallback = new WolframDispatcher.Callback() {
+
+        @Override
+        public void onHold() {
+
+            /* Keyword spotting resumes once the hold phrase is spoken, so the lookup can still be cancelled. */
+            mTurnEngine.say(RESPONSE_HOLD, Utterance.TYPE_HOLD, null, true);
+
+        }
+
+        @Override
+        public void onAnswer(WolframClient.Result result, boolean held) {
+
+            final boolean flush = !held;
+
+            switch (result.getStatus()) {
+
+                case WolframClient.Result.SUCCESS:
+                case WolframClient.Result.ERROR:
+
+                    say(new Response().setReply(result.getText()), flush);
+
+                    break;
+
+                case WolframClient.Result.BAD_QUERY:
+
+                    say(new Response().setReply(mReplyPool.getRandomReply(R.array.wolfram_bad_query)), flush);
+
+                    break;
+
+                default:
+
+                    say(new Response().setReply(mReplyPool.getRandomReply(R.array.wolfram_no_find)), flush);
+
+            }
 
         }
 
         @Override
-        protected void onPostExecute(String result) {
+        public void onDeadline(boolean held) {
 
-            say(new Response().setReply(result));
+            say(new Response().setReply(mReplyPool.getRandomReply(R.array.wolfram_timeout)), !held);
 
         }
 
-    }
+    };
 
 }
 
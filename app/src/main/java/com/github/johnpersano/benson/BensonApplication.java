@@ -0,0 +1,37 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson;
+
+import android.app.Application;
+
+import com.github.johnpersano.benson.recognition.CMUSphinxRecognizer;
+
+
+public class BensonApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        /* Start loading the CMUSphinx decoder with the process, before any activity asks for it. */
+        CMUSphinxRecognizer.getInstance(BensonApplication.this).prepare();
+
+    }
+
+}
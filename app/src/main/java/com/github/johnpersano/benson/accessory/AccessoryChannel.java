@@ -0,0 +1,884 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.github.johnpersano.benson.diagnostics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends commands to the accessory off the main thread. Commands wait in a bounded queue keyed by
+ * the state they set, so a newer command for the same key replaces the waiting one: on, on, off
+ * only writes off. When the queue is full the oldest command is dropped.
+ * <p/>
+ * Every command has a deadline of one write timeout from submission. Commands still waiting at
+ * their deadline are dropped instead of written late. A write that misses it is counted as timed
+ * out. Later commands wait for that write to finish while they coalesce, because the accessory
+ * cannot take two writes at once.
+ * <p/>
+ * Waiting commands are framed with {@link AccessoryProtocol} and packed into as few transfers as
+ * fit, so a burst of commands costs one USB round trip.
+ * <p/>
+ * The sketch acknowledges every frame. A command that is not acknowledged in time is sent again,
+ * unless a newer command for its key was submitted since, and given up after {@link #MAX_ATTEMPTS}. A
+ * rejected command is not retried. Acknowledged values are kept in a {@link DeviceStateTable}.
+ * While the link is idle a heartbeat is sent. When any command is lost the stream is closed, so
+ * the next write reopens it, and once the sketch answers again every device is restored to the
+ * value Benson last asked for.
+ * <p/>
+ * Sensor samples the sketch sends on its own are kept in a {@link Telemetry}.
+ * <p/>
+ * {@link #submit(Command)} never blocks and may be called from any thread. Replies are fed to
+ * {@link #onFrame(int, int, int, byte[], int)} by {@link AccessorySupervisor}.
+ * <p/>
+ * Times come from {@link System#nanoTime()}, the clock the queue and write timeouts wait on, so
+ * the channel runs unchanged in host unit tests.
+ */
+public class AccessoryChannel implements AccessoryProtocol.FrameListener {
+
+    private static final String TAG = "AccessoryChannel";
+
+    private static final String UNIT = "ms";
+
+    /* The sketch answers within one loop pass of ten milliseconds plus the USB round trip. */
+    private static final long ACK_TIMEOUT = 250;
+
+    /* Transmissions of one command before it is given up. */
+    public static final int MAX_ATTEMPTS = 3;
+
+    /* Idle time before a heartbeat is sent. Also how often a missing accessory is probed. */
+    private static final long HEARTBEAT_INTERVAL = 2 * 1000;
+
+    private static final Command PING = new Command(AccessoryProtocol.DEVICE_SYSTEM, AccessoryProtocol.OP_PING);
+
+    private final AccessoryStream mStream;
+    private final int mCapacity;
+    private final long mWriteTimeout;
+    private final long mAckTimeout;
+    private final long mHeartbeatInterval;
+
+    private final DeviceStateTable mDeviceStates = new DeviceStateTable();
+
+    private final Telemetry mTelemetry = new Telemetry();
+
+    /* Waiting commands by key, oldest first. Guarded by itself, as is everything else shared with the reader. */
+    private final LinkedHashMap<Integer, Pending> mPending = new LinkedHashMap<Integer, Pending>();
+
+    /* Written commands waiting for their reply, by sequence number. */
+    private final HashMap<Integer, Pending> mInFlight = new HashMap<Integer, Pending>();
+
+    /* Most recent command per key, waiting or in flight. An overdue older command of its key is not retried. */
+    private final HashMap<Integer, Pending> mLatest = new HashMap<Integer, Pending>();
+
+    private long mLastActivity = now();
+
+    /* Commands in the transfer being written and the transfer itself. Only used by the I/O thread. */
+    private final ArrayList<Pending> mBatch = new ArrayList<Pending>();
+    private final byte[] mTransfer = new byte[AccessoryProtocol.MAX_TRANSFER];
+    private int mTransferLength;
+    private int mSequence;
+
+    /* Takes commands off the queue, waits on writes and times out replies. */
+    private final Thread mIoThread;
+
+    /* Makes the blocking writes, so a stalled accessory cannot hold up the queue. */
+    private final ExecutorService mWriter;
+
+    private volatile boolean mShutdown;
+
+    /* True while the sketch answers. */
+    private volatile boolean mLinkUp;
+
+    /* Time from submission until the write completed, in milliseconds. */
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+
+    /* Time from submission until the sketch acknowledged, retries included, in milliseconds. */
+    private final LatencyHistogram mAckLatency = new LatencyHistogram();
+
+    private final AtomicLong mWritten = new AtomicLong();
+    private final AtomicLong mCoalesced = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mTimedOut = new AtomicLong();
+    private final AtomicLong mFailed = new AtomicLong();
+    private final AtomicLong mAcknowledged = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+    private final AtomicLong mRetried = new AtomicLong();
+    private final AtomicLong mLost = new AtomicLong();
+    private final AtomicLong mConnects = new AtomicLong();
+
+    /**
+     * @param stream       - Stream to the accessory. Closed when the channel shuts down
+     * @param capacity     - Maximum number of waiting commands
+     * @param writeTimeout - Time in milliseconds a command may take from submission until it is written
+     */
+    public AccessoryChannel(AccessoryStream stream, int capacity, long writeTimeout) {
+
+        this(stream, capacity, writeTimeout, ACK_TIMEOUT, HEARTBEAT_INTERVAL);
+
+    }
+
+    /* Tests shorten the reply timeout and heartbeat interval. */
+    AccessoryChannel(AccessoryStream stream, int capacity, long writeTimeout, long ackTimeout, long heartbeatInterval) {
+
+        this.mStream = stream;
+        this.mCapacity = capacity;
+        this.mWriteTimeout = writeTimeout;
+        this.mAckTimeout = ackTimeout;
+        this.mHeartbeatInterval = heartbeatInterval;
+
+        this.mWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+
+                return new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+
+                    }
+
+                }, TAG + "Writer");
+
+            }
+
+        });
+
+        this.mIoThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                loop();
+
+            }
+
+        }, TAG);
+
+        mIoThread.start();
+
+    }
+
+    /**
+     * Queue a command. A waiting command for the same device and opcode is replaced.
+     *
+     * @param command - Command to write
+     * @return False if the channel was shut down.
+     */
+    public boolean submit(Command command) {
+
+        if (mShutdown) {
+
+            return false;
+
+        }
+
+        if (command.getOpcode() == AccessoryProtocol.OP_SET) {
+
+            /* Unsigned, a signed 0xFF would read as UNKNOWN. */
+            mDeviceStates.setDesired(command.getDevice(), command.getPayloadByte(0) & 0xFF);
+
+        }
+
+        synchronized (mPending) {
+
+            enqueue(new Pending(command, now() + mWriteTimeout));
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Returns the device values Benson asked for and the accessory acknowledged.
+     *
+     * @return {@link DeviceStateTable}
+     */
+    public DeviceStateTable getDeviceStates() {
+
+        return mDeviceStates;
+
+    }
+
+    /**
+     * Returns the sensor samples the sketch reported.
+     *
+     * @return {@link Telemetry}
+     */
+    public Telemetry getTelemetry() {
+
+        return mTelemetry;
+
+    }
+
+    /* True while the sketch answers heartbeats and commands. */
+    public boolean isLinkUp() {
+
+        return mLinkUp;
+
+    }
+
+    /**
+     * Returns the number of commands waiting to be written.
+     *
+     * @return The queue depth.
+     */
+    public int getQueueDepth() {
+
+        synchronized (mPending) {
+
+            return mPending.size();
+
+        }
+
+    }
+
+    /**
+     * Returns the command latency histogram, in milliseconds.
+     *
+     * @return Time from submission until the write completed.
+     */
+    public LatencyHistogram getLatency() {
+
+        return mLatency;
+
+    }
+
+    /**
+     * Returns the acknowledgement latency histogram, in milliseconds.
+     *
+     * @return Time from submission until the sketch acknowledged, retries included.
+     */
+    public LatencyHistogram getAckLatency() {
+
+        return mAckLatency;
+
+    }
+
+    /* Commands written. */
+    public long getWrittenCount() {
+
+        return mWritten.get();
+
+    }
+
+    /* Commands replaced by a newer command for the same key. */
+    public long getCoalescedCount() {
+
+        return mCoalesced.get();
+
+    }
+
+    /* Commands dropped because the queue was full or they waited past their deadline. */
+    public long getDroppedCount() {
+
+        return mDropped.get();
+
+    }
+
+    /* Writes that missed their deadline. */
+    public long getTimedOutCount() {
+
+        return mTimedOut.get();
+
+    }
+
+    /* Writes the accessory rejected. */
+    public long getFailedCount() {
+
+        return mFailed.get();
+
+    }
+
+    /* Commands the sketch acknowledged. */
+    public long getAcknowledgedCount() {
+
+        return mAcknowledged.get();
+
+    }
+
+    /* Commands the sketch refused, such as for an unknown device. */
+    public long getRejectedCount() {
+
+        return mRejected.get();
+
+    }
+
+    /* Commands sent again after their reply timed out. */
+    public long getRetriedCount() {
+
+        return mRetried.get();
+
+    }
+
+    /* Commands given up after MAX_ATTEMPTS unanswered transmissions. */
+    public long getLostCount() {
+
+        return mLost.get();
+
+    }
+
+    /* Times the sketch started answering, the first connection included. */
+    public long getConnectCount() {
+
+        return mConnects.get();
+
+    }
+
+    /**
+     * Write the channel counters and latency, as part of the activity dump.
+     *
+     * @param prefix - Indent for every line
+     * @param writer - Dump output
+     */
+    public void dump(String prefix, PrintWriter writer) {
+
+        writer.println(prefix + "link " + (mLinkUp ? "up" : "down") + ", connects=" + getConnectCount());
+        writer.println(prefix + "write latency: " + mLatency.summary(UNIT));
+        writer.println(prefix + "ack latency: " + mAckLatency.summary(UNIT));
+        writer.println(prefix + "written=" + getWrittenCount() + " coalesced=" + getCoalescedCount()
+                + " dropped=" + getDroppedCount() + " timedOut=" + getTimedOutCount()
+                + " failed=" + getFailedCount() + " queued=" + getQueueDepth());
+        writer.println(prefix + "acknowledged=" + getAcknowledgedCount() + " rejected=" + getRejectedCount()
+                + " retried=" + getRetriedCount() + " lost=" + getLostCount());
+
+    }
+
+    /* Drop waiting commands, stop both threads and close the stream. */
+    public void shutdown() {
+
+        mShutdown = true;
+
+        synchronized (mPending) {
+
+            mPending.clear();
+            mInFlight.clear();
+            mLatest.clear();
+            mPending.notify();
+
+        }
+
+        mIoThread.interrupt();
+        mWriter.shutdownNow();
+
+        mStream.close();
+
+    }
+
+    /* Replies and samples from the sketch, fed by the supervisor's reader thread. */
+    @Override
+    public void onFrame(int device, int opcode, int sequence, byte[] payload, int length) {
+
+        /* Samples are unsolicited and are not matched against anything in flight. */
+        if (opcode == AccessoryProtocol.OP_SAMPLE) {
+
+            if (length >= 2) {
+
+                mTelemetry.record(device, (short) (((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF)));
+
+            }
+
+            return;
+
+        }
+
+        if (opcode != AccessoryProtocol.OP_ACK && opcode != AccessoryProtocol.OP_NACK) {
+
+            return;
+
+        }
+
+        final boolean reconnected;
+
+        synchronized (mPending) {
+
+            mLastActivity = now();
+
+            final Pending pending = mInFlight.get(sequence);
+
+            /* A late reply to a transmission that was already retried or given up. */
+            if (pending == null || pending.mCommand.getDevice() != device) {
+
+                return;
+
+            }
+
+            mInFlight.remove(sequence);
+            forget(pending);
+
+            if (opcode == AccessoryProtocol.OP_ACK) {
+
+                mAcknowledged.incrementAndGet();
+                mAckLatency.record(mLastActivity - pending.mSubmitTime);
+
+                if (pending.mCommand.getOpcode() == AccessoryProtocol.OP_SET && length > 0) {
+
+                    mDeviceStates.setConfirmed(device, payload[0] & 0xFF);
+
+                }
+
+            } else {
+
+                mRejected.incrementAndGet();
+
+                /* Nothing to restore for a device the sketch does not have. */
+                if (pending.mCommand.getOpcode() == AccessoryProtocol.OP_SET) {
+
+                    mDeviceStates.setDesired(device, DeviceStateTable.UNKNOWN);
+
+                }
+
+                Log.w(TAG, "Accessory rejected opcode " + pending.mCommand.getOpcode() + " for device " + device
+                        + ", error " + ((length > 0) ? payload[0] : 0));
+
+            }
+
+            reconnected = !mLinkUp;
+            mLinkUp = true;
+
+        }
+
+        if (reconnected) {
+
+            mConnects.incrementAndGet();
+
+            restore();
+
+        }
+
+    }
+
+    /**
+     * The accessory went away or was replaced. Acknowledged values are forgotten and replies to
+     * commands already written will not come. Called by the supervisor.
+     */
+    void onLinkLost() {
+
+        synchronized (mPending) {
+
+            mLinkUp = false;
+            mInFlight.clear();
+
+            mDeviceStates.clearConfirmed();
+
+        }
+
+    }
+
+    /* Probe the accessory now instead of waiting for the next heartbeat. */
+    void ping() {
+
+        submit(PING);
+
+    }
+
+    /* The sketch may have reset, so every device Benson set is set again. */
+    private void restore() {
+
+        for (int device = 0; device < 256; device++) {
+
+            final int desired = mDeviceStates.getDesired(device);
+
+            if (desired != DeviceStateTable.UNKNOWN && !mDeviceStates.isConfirmed(device)) {
+
+                submit(new Command(device, AccessoryProtocol.OP_SET, (byte) desired));
+
+            }
+
+        }
+
+    }
+
+    /* Must hold the mPending lock. */
+    private void enqueue(Pending pending) {
+
+        mLatest.put(pending.mCommand.getKey(), pending);
+
+        /* Replacing keeps the queue position, so a busy key does not starve the others. */
+        if (mPending.put(pending.mCommand.getKey(), pending) != null) {
+
+            mCoalesced.incrementAndGet();
+
+        } else if (mPending.size() > mCapacity) {
+
+            final Iterator<Pending> oldest = mPending.values().iterator();
+            oldest.next();
+            oldest.remove();
+
+            mDropped.incrementAndGet();
+
+        }
+
+        mPending.notify();
+
+    }
+
+    /* A command was answered or given up. Must hold the mPending lock. */
+    private void forget(Pending pending) {
+
+        if (mLatest.get(pending.mCommand.getKey()) == pending) {
+
+            mLatest.remove(pending.mCommand.getKey());
+
+        }
+
+    }
+
+    private void loop() {
+
+        /* A write that missed its deadline and has not returned yet. */
+        Future<?> stalled = null;
+
+        try {
+
+            while (!mShutdown) {
+
+                if (stalled != null) {
+
+                    waitForStalled(stalled);
+                    stalled = null;
+
+                }
+
+                final long deadline = takeBatch();
+
+                if (deadline < 0) {
+
+                    return;
+
+                }
+
+                /* Every command in the batch waited out its deadline behind a stalled write. */
+                if (mBatch.isEmpty()) {
+
+                    continue;
+
+                }
+
+                final Future<?> write;
+
+                try {
+
+                    write = mWriter.submit(new Callable<Void>() {
+
+                        @Override
+                        public Void call() throws IOException {
+
+                            mStream.write(mTransfer, mTransferLength);
+
+                            return null;
+
+                        }
+
+                    });
+
+                } catch (RejectedExecutionException exception) {
+
+                    /* Shut down after the batch was taken. */
+                    return;
+
+                }
+
+                try {
+
+                    write.get(deadline - now(), TimeUnit.MILLISECONDS);
+
+                    final long now = now();
+
+                    for (int i = 0; i < mBatch.size(); i++) {
+
+                        mLatency.record(now - mBatch.get(i).mSubmitTime);
+
+                    }
+
+                    mWritten.addAndGet(mBatch.size());
+
+                } catch (TimeoutException exception) {
+
+                    mTimedOut.addAndGet(mBatch.size());
+                    stalled = write;
+
+                    Log.w(TAG, "Accessory write timed out, queue depth " + getQueueDepth());
+
+                } catch (ExecutionException exception) {
+
+                    mFailed.addAndGet(mBatch.size());
+
+                    /* Expected while no accessory is attached, the heartbeat keeps probing. */
+                    if (mLinkUp) {
+
+                        Log.w(TAG, "Accessory write failed", exception.getCause());
+
+                    }
+
+                }
+
+            }
+
+        } catch (InterruptedException exception) {
+
+            /* Shut down. */
+
+        }
+
+    }
+
+    /* Writes cannot be interrupted, so a stalled one is waited out. Commands keep coalescing meanwhile. */
+    private void waitForStalled(Future<?> stalled) throws InterruptedException {
+
+        try {
+
+            stalled.get();
+
+        } catch (ExecutionException exception) {
+
+            Log.w(TAG, "Stalled accessory write failed", exception.getCause());
+
+        } catch (CancellationException exception) {
+
+            /* Writer shut down. */
+
+        }
+
+    }
+
+    /**
+     * Blocks until commands are waiting, then frames as many as fit into the transfer buffer.
+     * Commands past their deadline are dropped instead. While waiting, unanswered commands are
+     * retried and heartbeats are queued.
+     * <p/>
+     * Framed commands are moved in flight before they are written, so a reply cannot beat them there.
+     *
+     * @return The earliest deadline in the batch, or -1 once the channel is shut down.
+     */
+    private long takeBatch() throws InterruptedException {
+
+        mBatch.clear();
+        mTransferLength = 0;
+
+        long deadline = Long.MAX_VALUE;
+
+        synchronized (mPending) {
+
+            while (!mShutdown) {
+
+                final long wait = checkReplies(now());
+
+                if (!mPending.isEmpty()) {
+
+                    break;
+
+                }
+
+                mPending.wait(wait);
+
+            }
+
+            if (mShutdown) {
+
+                return -1;
+
+            }
+
+            final long now = now();
+
+            final Iterator<Pending> iterator = mPending.values().iterator();
+
+            while (iterator.hasNext()) {
+
+                final Pending pending = iterator.next();
+
+                final int length = AccessoryProtocol.frameLength(pending.mCommand);
+
+                if (mTransferLength + length > mTransfer.length) {
+
+                    break;
+
+                }
+
+                iterator.remove();
+
+                if (pending.mDeadline <= now) {
+
+                    mDropped.incrementAndGet();
+
+                    continue;
+
+                }
+
+                pending.mSequence = mSequence++ & 0xFF;
+                pending.mSentTime = now;
+                pending.mAttempts++;
+
+                mTransferLength = AccessoryProtocol.encode(pending.mCommand, pending.mSequence, mTransfer, mTransferLength);
+                mBatch.add(pending);
+
+                /* Sequence numbers wrap, a reply still owed to an old transmission is simply never matched. */
+                mInFlight.put(pending.mSequence, pending);
+
+                deadline = Math.min(deadline, pending.mDeadline);
+
+            }
+
+            mLastActivity = now;
+
+        }
+
+        return deadline;
+
+    }
+
+    /**
+     * Retries or gives up commands whose reply is overdue and queues a heartbeat when the link is
+     * idle. Must hold the mPending lock.
+     *
+     * @param now - Current time in milliseconds
+     * @return Time in milliseconds until the next reply or heartbeat falls due.
+     */
+    private long checkReplies(long now) {
+
+        long next = mLastActivity + mHeartbeatInterval;
+
+        boolean linkLost = false;
+
+        final Iterator<Pending> iterator = mInFlight.values().iterator();
+
+        while (iterator.hasNext()) {
+
+            final Pending pending = iterator.next();
+
+            final long due = pending.mSentTime + mAckTimeout;
+
+            if (due > now) {
+
+                next = Math.min(next, due);
+
+                continue;
+
+            }
+
+            iterator.remove();
+
+            /* A newer command for the same state is waiting or was already sent, it supersedes this one. */
+            if (mLatest.get(pending.mCommand.getKey()) != pending) {
+
+                continue;
+
+            }
+
+            if (pending.mAttempts < MAX_ATTEMPTS) {
+
+                mRetried.incrementAndGet();
+
+                pending.mDeadline = now + mWriteTimeout;
+                enqueue(pending);
+
+            } else {
+
+                mLost.incrementAndGet();
+                forget(pending);
+
+                if (mLinkUp) {
+
+                    Log.w(TAG, "Accessory stopped answering, opcode " + pending.mCommand.getOpcode()
+                            + " for device " + pending.mCommand.getDevice() + " lost");
+
+                }
+
+                linkLost = true;
+
+                break;
+
+            }
+
+        }
+
+        /* The sketch stopped answering, the link is gone. Close it so the next write reopens the accessory. */
+        if (linkLost) {
+
+            mStream.close();
+            onLinkLost();
+
+        }
+
+        if (mPending.isEmpty() && mInFlight.isEmpty() && next <= now) {
+
+            enqueue(new Pending(PING, now + mWriteTimeout));
+
+            next = now + mHeartbeatInterval;
+
+        }
+
+        return Math.max(1, next - now);
+
+    }
+
+    /* Monotonic time in milliseconds. */
+    private static long now() {
+
+        return System.nanoTime() / 1000000;
+
+    }
+
+    /* A command on its way through the queue and the accessory. Fields after the command are guarded by mPending. */
+    private static class Pending {
+
+        private final Command mCommand;
+        private final long mSubmitTime;
+
+        private long mDeadline;
+        private long mSentTime;
+        private int mSequence;
+        private int mAttempts;
+
+        private Pending(Command command, long deadline) {
+
+            this.mCommand = command;
+            this.mSubmitTime = now();
+            this.mDeadline = deadline;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+/**
+ * Binary command protocol spoken with the Arduino sketch. Several frames may be packed into one
+ * USB transfer. Each frame is:
+ * <pre>
+ * SYNC | device | opcode | sequence | length | payload (length bytes) | CRC-8
+ * </pre>
+ * The CRC-8 (polynomial 0x07) covers device through payload. A receiver that sees a bad CRC skips
+ * to the next SYNC byte, so one corrupt frame does not lose the rest of the transfer.
+ * <p/>
+ * Keep the constants in step with sketches/accessory_protocol.h, and the parsers in step with the
+ * test vectors in sketches/protocol_vectors.txt. Has no Android dependencies.
+ */
+public class AccessoryProtocol {
+
+    public static final int SYNC = 0xA5;
+
+    /* Frame bytes around the payload: SYNC, device, opcode, sequence, length and CRC. */
+    public static final int OVERHEAD = 6;
+
+    public static final int MAX_PAYLOAD = 16;
+
+    /* The sketch reads transfers into a buffer of this size. */
+    public static final int MAX_TRANSFER = 128;
+
+    /* Set a device to the value in the first payload byte. Zero is off. */
+    public static final int OP_SET = 0x01;
+
+    /* Heartbeat, sent to DEVICE_SYSTEM while the link is otherwise idle. */
+    public static final int OP_PING = 0x02;
+
+    /* Replies from the sketch. They echo the device and sequence of the frame they answer.
+     * An ACK to OP_SET carries the device's value, a NACK carries one of the ERROR codes. */
+    public static final int OP_ACK = 0x80;
+    public static final int OP_NACK = 0x81;
+
+    /* Sensor reading sent by the sketch on its own, about once a second. The payload is a signed
+     * 16 bit big endian fixed point value, see the SENSOR constants. */
+    public static final int OP_SAMPLE = 0x90;
+
+    public static final int ERROR_UNKNOWN_DEVICE = 1;
+    public static final int ERROR_UNKNOWN_OPCODE = 2;
+    public static final int ERROR_BAD_PAYLOAD = 3;
+
+    /* The sketch itself, addressed by heartbeats. */
+    public static final int DEVICE_SYSTEM = 0;
+
+    /* Actuators on the Arduino. The sketch maps each to a pin. */
+    public static final int DEVICE_LED = 1;
+
+    /* Sensors on the Arduino. Temperature is in hundredths of a degree Celsius, light in hundredths of a percent. */
+    public static final int SENSOR_TEMPERATURE = 16;
+    public static final int SENSOR_LIGHT = 17;
+
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+
+        for (int i = 0; i < 256; i++) {
+
+            int crc = i;
+
+            for (int bit = 0; bit < 8; bit++) {
+
+                crc = ((crc & 0x80) != 0) ? ((crc << 1) ^ 0x07) : (crc << 1);
+
+            }
+
+            CRC_TABLE[i] = crc & 0xFF;
+
+        }
+
+    }
+
+    private AccessoryProtocol() {
+
+        /* Static methods only. */
+
+    }
+
+    /**
+     * Returns the encoded size of a command.
+     *
+     * @param command - Command to measure
+     * @return Bytes the frame takes on the wire.
+     */
+    public static int frameLength(Command command) {
+
+        return OVERHEAD + command.getPayloadLength();
+
+    }
+
+    /**
+     * Encode a command into a frame.
+     *
+     * @param command  - Command to encode
+     * @param sequence - Sequence number, only the low eight bits are sent
+     * @param buffer   - Destination, must hold {@link #frameLength(Command)} bytes from offset
+     * @param offset   - Position of the frame in buffer
+     * @return Offset just past the frame.
+     */
+    public static int encode(Command command, int sequence, byte[] buffer, int offset) {
+
+        final int length = command.getPayloadLength();
+
+        buffer[offset] = (byte) SYNC;
+        buffer[offset + 1] = (byte) command.getDevice();
+        buffer[offset + 2] = (byte) command.getOpcode();
+        buffer[offset + 3] = (byte) sequence;
+        buffer[offset + 4] = (byte) length;
+
+        for (int i = 0; i < length; i++) {
+
+            buffer[offset + 5 + i] = command.getPayloadByte(i);
+
+        }
+
+        final int end = offset + 5 + length;
+
+        buffer[end] = (byte) crc8(buffer, offset + 1, end);
+
+        return end + 1;
+
+    }
+
+    /**
+     * CRC-8 with polynomial 0x07 and a zero initial value.
+     *
+     * @param buffer - Data
+     * @param from   - First byte, inclusive
+     * @param to     - Last byte, exclusive
+     * @return The CRC in the low eight bits.
+     */
+    public static int crc8(byte[] buffer, int from, int to) {
+
+        int crc = 0;
+
+        for (int i = from; i < to; i++) {
+
+            crc = CRC_TABLE[(crc ^ buffer[i]) & 0xFF];
+
+        }
+
+        return crc;
+
+    }
+
+    /* Receives decoded frames. The payload array is reused, copy anything kept past the call. */
+    public interface FrameListener {
+
+        public void onFrame(int device, int opcode, int sequence, byte[] payload, int length);
+
+    }
+
+    /**
+     * Incremental frame parser. Bytes can be fed in any split, frames are reported as soon as
+     * their CRC byte arrives. Allocates nothing after construction. Not thread safe.
+     */
+    public static class Decoder {
+
+        private static final int STATE_SYNC = 0;
+        private static final int STATE_DEVICE = 1;
+        private static final int STATE_OPCODE = 2;
+        private static final int STATE_SEQUENCE = 3;
+        private static final int STATE_LENGTH = 4;
+        private static final int STATE_PAYLOAD = 5;
+        private static final int STATE_CRC = 6;
+
+        private final byte[] mPayload = new byte[MAX_PAYLOAD];
+
+        private int mState = STATE_SYNC;
+        private int mDevice;
+        private int mOpcode;
+        private int mSequence;
+        private int mLength;
+        private int mPosition;
+        private int mCrc;
+
+        private long mCorrupt;
+
+        /**
+         * Parse received bytes.
+         *
+         * @param data     - Received bytes
+         * @param offset   - First byte to parse
+         * @param length   - Number of bytes to parse
+         * @param listener - Receives every complete frame with a good CRC
+         */
+        public void feed(byte[] data, int offset, int length, FrameListener listener) {
+
+            for (int i = offset, end = offset + length; i < end; i++) {
+
+                final int value = data[i] & 0xFF;
+
+                if (mState != STATE_SYNC && mState != STATE_CRC) {
+
+                    mCrc = CRC_TABLE[mCrc ^ value];
+
+                }
+
+                switch (mState) {
+
+                    case STATE_SYNC:
+
+                        if (value == SYNC) {
+
+                            mCrc = 0;
+                            mState = STATE_DEVICE;
+
+                        }
+
+                        break;
+
+                    case STATE_DEVICE:
+
+                        mDevice = value;
+                        mState = STATE_OPCODE;
+
+                        break;
+
+                    case STATE_OPCODE:
+
+                        mOpcode = value;
+                        mState = STATE_SEQUENCE;
+
+                        break;
+
+                    case STATE_SEQUENCE:
+
+                        mSequence = value;
+                        mState = STATE_LENGTH;
+
+                        break;
+
+                    case STATE_LENGTH:
+
+                        /* No valid frame is this long, the SYNC byte was part of something else. */
+                        if (value > MAX_PAYLOAD) {
+
+                            mCorrupt++;
+                            mState = STATE_SYNC;
+
+                        } else {
+
+                            mLength = value;
+                            mPosition = 0;
+                            mState = (value == 0) ? STATE_CRC : STATE_PAYLOAD;
+
+                        }
+
+                        break;
+
+                    case STATE_PAYLOAD:
+
+                        mPayload[mPosition++] = (byte) value;
+
+                        if (mPosition == mLength) {
+
+                            mState = STATE_CRC;
+
+                        }
+
+                        break;
+
+                    case STATE_CRC:
+
+                        mState = STATE_SYNC;
+
+                        if (value == mCrc) {
+
+                            listener.onFrame(mDevice, mOpcode, mSequence, mPayload, mLength);
+
+                        } else {
+
+                            mCorrupt++;
+
+                        }
+
+                        break;
+
+                }
+
+            }
+
+        }
+
+        /* Frames dropped for a bad CRC or length since the decoder was created. */
+        public long getCorruptCount() {
+
+            return mCorrupt;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import java.io.IOException;
+
+/**
+ * Byte stream to the accessory. Writes may block for as long as the accessory takes to accept
+ * them, so they are only made from the {@link AccessoryChannel} writer thread, and reads block
+ * until the accessory sends something, so they are only made from the {@link AccessorySupervisor}
+ * reader thread. Implemented over the USB accessory, or in memory for tests.
+ */
+public interface AccessoryStream {
+
+    /**
+     * Write one transfer of framed commands.
+     *
+     * @param buffer - Transfer bytes, reused by the caller once this returns
+     * @param length - Number of bytes from the start of buffer to write
+     * @throws IOException If the accessory is gone or rejected the write
+     */
+    public void write(byte[] buffer, int length) throws IOException;
+
+    /**
+     * Read whatever the accessory sent.
+     *
+     * @param buffer - Destination
+     * @return Number of bytes read, at least one.
+     * @throws IOException If the accessory is gone
+     */
+    public int read(byte[] buffer) throws IOException;
+
+    /* Release the accessory. Must not block, it aborts a read or write in progress. The next read or write opens the accessory again. */
+    public void close();
+
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.accessory;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the accessory link alive around an {@link AccessoryChannel}. A reader thread decodes the
+ * sketch's replies and hands them to the channel. When the accessory goes away the channel is
+ * told, and reading resumes once it is attached again or after a short retry interval.
+ * <p/>
+ * Attaching, detaching and shutting down run in order on the supervisor's own thread, so the USB
+ * broadcasts and the activity never wait on the accessory.
+ * <p/>
+ * Closing the stream does not reliably wake a blocked read, so a detach does not wait for the
+ * reader to notice. It stops the reader, closes the stream and joins the reader for a short time.
+ * A reader that is still blocked after that is abandoned: it has its own decoder, drops whatever
+ * it reads once stopped, and the stream only closes the descriptor it used if its read fails.
+ * Readers hand frames to the channel under one lock and check that they were not stopped inside
+ * it, so an abandoned reader never feeds the channel next to its replacement. Attaching starts a
+ * new reader.
+ * <p/>
+ * {@link #onAccessoryAttached()} and {@link #onAccessoryDetached()} are called from the USB
+ * broadcasts and may be called from any thread.
+ */
+public class AccessorySupervisor {
+
+    private static final String TAG = "AccessorySupervisor";
+
+    /* Time to wait before reading again after the accessory was missing. Attaching it skips the wait. */
+    private static final long RETRY_INTERVAL = 2 * 1000;
+
+    /* Time to wait for a stopped reader to exit. Only delays the next attach or detach. */
+    private static final long JOIN_TIMEOUT = 1000;
+
+    private final AccessoryStream mStream;
+    private final AccessoryChannel mChannel;
+
+    /* Runs attach, detach and shutdown in order. The only thread that touches mReader. */
+    private final ExecutorService mExecutor;
+
+    /* Guards the shutdown flag and submitting to the executor. */
+    private final Object mLock = new Object();
+
+    /* Held while a reader feeds the channel, and to stop a reader. */
+    private final Object mFeedLock = new Object();
+
+    private Reader mReader;
+
+    private boolean mShutdown;
+
+    /**
+     * @param stream  - Stream the channel writes to
+     * @param channel - Channel to feed replies to. Shut down with the supervisor
+     */
+    public AccessorySupervisor(AccessoryStream stream, AccessoryChannel channel) {
+
+        this.mStream = stream;
+        this.mChannel = channel;
+
+        this.mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+
+                return new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+
+                    }
+
+                }, TAG);
+
+            }
+
+        });
+
+        mExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                startReader();
+
+            }
+
+        });
+
+    }
+
+    public AccessoryChannel getChannel() {
+
+        return mChannel;
+
+    }
+
+    /* A new accessory was attached. Drop any stale connection and reach the sketch right away. */
+    public void onAccessoryAttached() {
+
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                stopReader();
+
+                mChannel.onLinkLost();
+
+                startReader();
+
+                mChannel.ping();
+
+            }
+
+        });
+
+    }
+
+    /* The accessory is gone. The reader is stopped until it is attached again. */
+    public void onAccessoryDetached() {
+
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                stopReader();
+
+                mChannel.onLinkLost();
+
+            }
+
+        });
+
+    }
+
+    /* Stop reading and shut the channel down. Returns without waiting for the reader. */
+    public void shutdown() {
+
+        synchronized (mLock) {
+
+            if (mShutdown) {
+
+                return;
+
+            }
+
+            mShutdown = true;
+
+            mExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    stopReader();
+
+                    mChannel.shutdown();
+
+                }
+
+            });
+
+            mExecutor.shutdown();
+
+        }
+
+    }
+
+    private void execute(Runnable runnable) {
+
+        synchronized (mLock) {
+
+            if (!mShutdown) {
+
+                mExecutor.execute(runnable);
+
+            }
+
+        }
+
+    }
+
+    /* Called on the executor. */
+    private void startReader() {
+
+        mReader = new Reader();
+        mReader.mThread.start();
+
+    }
+
+    /* Called on the executor. Closes the stream even without a reader, a write may have opened it. */
+    private void stopReader() {
+
+        final Reader reader = mReader;
+
+        mReader = null;
+
+        if (reader != null) {
+
+            /* Waits for a frame being fed, after this the reader never feeds again. */
+            synchronized (mFeedLock) {
+
+                reader.mStopped = true;
+
+            }
+
+            reader.mThread.interrupt();
+
+        }
+
+        mStream.close();
+
+        if (reader != null) {
+
+            try {
+
+                reader.mThread.join(JOIN_TIMEOUT);
+
+            } catch (InterruptedException exception) {
+
+                Thread.currentThread().interrupt();
+
+            }
+
+            if (reader.mThread.isAlive()) {
+
+                Log.w(TAG, "Accessory reader still blocked after " + JOIN_TIMEOUT + "ms, abandoned");
+
+            }
+
+        }
+
+    }
+
+    /* One reader thread. Replaced, never restarted, so a stale one can not feed the channel. */
+    private class Reader implements Runnable {
+
+        private final AccessoryProtocol.Decoder mDecoder = new AccessoryProtocol.Decoder();
+        private final byte[] mBuffer = new byte[AccessoryProtocol.MAX_TRANSFER];
+
+        private final Thread mThread = new Thread(this, TAG + "Reader");
+
+        /* Set under the feed lock, read without it only to leave the loop. */
+        private volatile boolean mStopped;
+
+        @Override
+        public void run() {
+
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            while (!mStopped) {
+
+                try {
+
+                    final int count = mStream.read(mBuffer);
+
+                    synchronized (mFeedLock) {
+
+                        if (mStopped) {
+
+                            return;
+
+                        }
+
+                        mDecoder.feed(mBuffer, 0, count, mChannel);
+
+                    }
+
+                } catch (IOException exception) {
+
+                    synchronized (mFeedLock) {
+
+                        if (mStopped) {
+
+                            return;
+
+                        }
+
+                        mChannel.onLinkLost();
+
+                    }
+
+                    try {
+
+                        Thread.sleep(RETRY_INTERVAL);
+
+                    } catch (InterruptedException interruptedException) {
+
+                        return;
+
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+}
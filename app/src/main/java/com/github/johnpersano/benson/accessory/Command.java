@@ -0,0 +1,115 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+/**
+ * A command for one device on the accessory. Immutable, so common commands can be shared.
+ * The sequence number is assigned when the command is written, see {@link AccessoryProtocol}.
+ */
+public class Command {
+
+    private final int mDevice;
+    private final int mOpcode;
+    private final byte[] mPayload;
+
+    /**
+     * @param device  - One of the {@link AccessoryProtocol} DEVICE constants
+     * @param opcode  - One of the {@link AccessoryProtocol} OP constants
+     * @param payload - Opcode arguments, at most {@link AccessoryProtocol#MAX_PAYLOAD} bytes
+     * @throws IllegalArgumentException If a field does not fit its byte or the payload is too long
+     */
+    public Command(int device, int opcode, byte... payload) {
+
+        /* Device and opcode are single bytes on the wire and index per device tables. */
+        if (device < 0 || device > 0xFF) {
+
+            throw new IllegalArgumentException("Device " + device + " is out of range");
+
+        }
+
+        if (opcode < 0 || opcode > 0xFF) {
+
+            throw new IllegalArgumentException("Opcode " + opcode + " is out of range");
+
+        }
+
+        if (opcode == AccessoryProtocol.OP_SET && payload.length == 0) {
+
+            throw new IllegalArgumentException("Set needs a value");
+
+        }
+
+        if (payload.length > AccessoryProtocol.MAX_PAYLOAD) {
+
+            throw new IllegalArgumentException("Payload of " + payload.length + " bytes is too long");
+
+        }
+
+        this.mDevice = device;
+        this.mOpcode = opcode;
+        /* Copied so the caller's array can not change a shared command. */
+        this.mPayload = payload.clone();
+
+    }
+
+    public int getDevice() {
+
+        return mDevice;
+
+    }
+
+    public int getOpcode() {
+
+        return mOpcode;
+
+    }
+
+    /**
+     * Returns the payload.
+     *
+     * @return A copy, changing it does not change the command.
+     */
+    public byte[] getPayload() {
+
+        return mPayload.clone();
+
+    }
+
+    /* Payload size without copying, for the writer thread. */
+    int getPayloadLength() {
+
+        return mPayload.length;
+
+    }
+
+    /* Payload byte without copying, for the writer thread. */
+    byte getPayloadByte(int index) {
+
+        return mPayload[index];
+
+    }
+
+    /* Commands with the same key set the same state, so a newer one replaces an older one still waiting. */
+    int getKey() {
+
+        return (mDevice << 8) | mOpcode;
+
+    }
+
+}
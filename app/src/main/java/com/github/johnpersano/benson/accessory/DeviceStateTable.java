@@ -0,0 +1,108 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Last known value of every device on the accessory. The desired value is what Benson last asked
+ * for, the confirmed value is what the accessory acknowledged. Questions such as "is the light on?"
+ * are answered from here without a round trip. Values are the unsigned payload byte, 0 to 255.
+ * <p/>
+ * Safe to use from any thread.
+ */
+public class DeviceStateTable {
+
+    /* Value of a device nothing is known about, such as after the accessory was reattached. */
+    public static final int UNKNOWN = -1;
+
+    /* Device ids are a single byte on the wire. */
+    private static final int DEVICES = 256;
+
+    private final AtomicIntegerArray mDesired = new AtomicIntegerArray(DEVICES);
+    private final AtomicIntegerArray mConfirmed = new AtomicIntegerArray(DEVICES);
+
+    public DeviceStateTable() {
+
+        for (int device = 0; device < DEVICES; device++) {
+
+            mDesired.set(device, UNKNOWN);
+            mConfirmed.set(device, UNKNOWN);
+
+        }
+
+    }
+
+    /**
+     * Returns the value the accessory last acknowledged for a device.
+     *
+     * @param device - One of the {@link AccessoryProtocol} DEVICE constants
+     * @return The value, or {@link #UNKNOWN} if it was never acknowledged since the accessory attached.
+     */
+    public int getConfirmed(int device) {
+
+        return mConfirmed.get(device);
+
+    }
+
+    /**
+     * Returns the value Benson last asked a device to take.
+     *
+     * @param device - One of the {@link AccessoryProtocol} DEVICE constants
+     * @return The value, or {@link #UNKNOWN} if the device was never set.
+     */
+    public int getDesired(int device) {
+
+        return mDesired.get(device);
+
+    }
+
+    /* True if the accessory acknowledged the value Benson last asked for. */
+    public boolean isConfirmed(int device) {
+
+        final int desired = mDesired.get(device);
+
+        return desired != UNKNOWN && desired == mConfirmed.get(device);
+
+    }
+
+    void setDesired(int device, int value) {
+
+        mDesired.set(device, value);
+
+    }
+
+    void setConfirmed(int device, int value) {
+
+        mConfirmed.set(device, value);
+
+    }
+
+    /* The accessory went away, it may come back reset. Desired values are kept so they can be restored. */
+    void clearConfirmed() {
+
+        for (int device = 0; device < DEVICES; device++) {
+
+            mConfirmed.set(device, UNKNOWN);
+
+        }
+
+    }
+
+}
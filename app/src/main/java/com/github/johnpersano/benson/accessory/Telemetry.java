@@ -0,0 +1,259 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sensor samples reported by the sketch. Samples are written by one thread, the accessory reader,
+ * and read from any thread without locks:
+ * <ul>
+ * <li>The latest sample of each sensor is one packed long, so reading it is O(1) and never torn.</li>
+ * <li>The most recent samples of all sensors are kept in a ring buffer for windowed aggregates.</li>
+ * </ul>
+ * Values are fixed point, see the SENSOR constants in {@link AccessoryProtocol}. Times are
+ * {@link SystemClock#elapsedRealtime()} milliseconds.
+ */
+public class Telemetry {
+
+    /* Returned for a sensor that never reported. */
+    public static final long NO_SAMPLE = Long.MIN_VALUE;
+
+    /* Ring buffer capacity, a power of two. A few minutes of every sensor at one sample a second. */
+    static final int CAPACITY = 1024;
+
+    /* Device ids are a single byte on the wire. */
+    private static final int SENSORS = 256;
+
+    /* Latest sample per sensor: time in the high 32 bits, value in the low 32 bits. */
+    private final AtomicLongArray mLatest = new AtomicLongArray(SENSORS);
+
+    /* Packed latest sample of a sensor that never reported. Sketch values are 16 bit, so this value never occurs. */
+    private static final long EMPTY = pack(0, Integer.MIN_VALUE);
+
+    /* Ring entries: the time, and the sensor in the high 32 bits with the value in the low 32 bits. */
+    private final long[] mTimes = new long[CAPACITY];
+    private final long[] mSamples = new long[CAPACITY];
+
+    /* Number of samples ever written. Publishes the ring entries below it. */
+    private final AtomicLong mWriteCount = new AtomicLong();
+
+    private final Clock mClock;
+
+    public Telemetry() {
+
+        this(new Clock() {
+
+            @Override
+            public long now() {
+
+                return SystemClock.elapsedRealtime();
+
+            }
+
+        });
+
+    }
+
+    /* Tests drive time themselves, SystemClock does not tick on the host. */
+    Telemetry(Clock clock) {
+
+        this.mClock = clock;
+
+        for (int sensor = 0; sensor < SENSORS; sensor++) {
+
+            mLatest.set(sensor, EMPTY);
+
+        }
+
+    }
+
+    /**
+     * Record a sample. Only called by the accessory reader thread.
+     *
+     * @param sensor - One of the {@link AccessoryProtocol} SENSOR constants
+     * @param value  - Fixed point value
+     */
+    void record(int sensor, int value) {
+
+        final long now = mClock.now();
+
+        mLatest.set(sensor, pack(now, value));
+
+        final long count = mWriteCount.get();
+        final int slot = (int) (count & (CAPACITY - 1));
+
+        mTimes[slot] = now;
+        mSamples[slot] = ((long) sensor << 32) | (value & 0xFFFFFFFFL);
+
+        /* Volatile write, readers see the slot once they see the count. */
+        mWriteCount.lazySet(count + 1);
+
+    }
+
+    /**
+     * Returns the latest value of a sensor if it is recent enough.
+     *
+     * @param sensor - One of the {@link AccessoryProtocol} SENSOR constants
+     * @param maxAge - Oldest sample to accept, in milliseconds
+     * @return The fixed point value, or {@link #NO_SAMPLE} if there is no recent sample.
+     */
+    public long getLatest(int sensor, long maxAge) {
+
+        final long latest = mLatest.get(sensor);
+
+        if (latest == EMPTY || age(latest) > maxAge) {
+
+            return NO_SAMPLE;
+
+        }
+
+        return (int) latest;
+
+    }
+
+    /**
+     * Aggregate the samples of a sensor over a recent window. Scans the ring buffer, so use it for
+     * summaries rather than on every frame.
+     *
+     * @param sensor    - One of the {@link AccessoryProtocol} SENSOR constants
+     * @param window    - Window in milliseconds, ending now
+     * @param aggregate - Receives the result
+     * @return False if the sensor has no samples in the window.
+     */
+    public boolean aggregate(int sensor, long window, Aggregate aggregate) {
+
+        final long since = mClock.now() - window;
+
+        aggregate.reset();
+
+        final long end = mWriteCount.get();
+
+        for (long index = end - 1; index >= Math.max(0, end - CAPACITY); index--) {
+
+            final int slot = (int) (index & (CAPACITY - 1));
+
+            final long time = mTimes[slot];
+            final long sample = mSamples[slot];
+
+            /*
+             * Seqlock style check after copying the pair. The writer fills slot (count & mask) before
+             * it publishes count + 1, so once the count reaches index + CAPACITY this slot may hold a
+             * newer or half written sample. Discard it, everything older is gone as well.
+             */
+            if (mWriteCount.get() - index >= CAPACITY) {
+
+                break;
+
+            }
+
+            if (time < since) {
+
+                break;
+
+            }
+
+            if ((int) (sample >>> 32) == sensor) {
+
+                aggregate.add((int) sample);
+
+            }
+
+        }
+
+        return aggregate.mCount > 0;
+
+    }
+
+    /* Milliseconds since a packed sample was taken. The 32 bit time wraps after 49 days, unsigned arithmetic handles it. */
+    private long age(long packed) {
+
+        return (mClock.now() - (packed >>> 32)) & 0xFFFFFFFFL;
+
+    }
+
+    private static long pack(long time, int value) {
+
+        return ((time & 0xFFFFFFFFL) << 32) | (value & 0xFFFFFFFFL);
+
+    }
+
+    /* Source of sample times in milliseconds. */
+    interface Clock {
+
+        public long now();
+
+    }
+
+    /* Minimum, maximum and mean of a window of samples. Reusable. */
+    public static class Aggregate {
+
+        private int mCount;
+        private int mMin;
+        private int mMax;
+        private long mSum;
+
+        private void reset() {
+
+            mCount = 0;
+            mMin = Integer.MAX_VALUE;
+            mMax = Integer.MIN_VALUE;
+            mSum = 0;
+
+        }
+
+        private void add(int value) {
+
+            mCount++;
+            mMin = Math.min(mMin, value);
+            mMax = Math.max(mMax, value);
+            mSum += value;
+
+        }
+
+        public int getCount() {
+
+            return mCount;
+
+        }
+
+        public int getMin() {
+
+            return mMin;
+
+        }
+
+        public int getMax() {
+
+            return mMax;
+
+        }
+
+        public double getMean() {
+
+            return (mCount == 0) ? Double.NaN : (double) mSum / mCount;
+
+        }
+
+    }
+
+}
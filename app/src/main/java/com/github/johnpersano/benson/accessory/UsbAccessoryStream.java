@@ -0,0 +1,231 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import android.hardware.usb.UsbAccessory;
+import android.hardware.usb.UsbManager;
+import android.os.ParcelFileDescriptor;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * {@link AccessoryStream} over the Android USB accessory API. Frames are binary, so the file
+ * descriptor is used directly. The accessory is opened by the first read or write after it is
+ * attached and closed again if either fails, so a replugged accessory is picked up by the next one.
+ * <p/>
+ * Reads and writes run outside the lock, so closing does not wait for them. Every open descriptor
+ * gets a new generation, and a failed read or write only closes the generation it used. The other
+ * thread may already have reopened the accessory and that descriptor must stay open.
+ * <p/>
+ * Closing the descriptor does not reliably wake a blocked read, the accessory has to detach or send
+ * something first. {@link AccessorySupervisor} does not rely on it, see its detach handling.
+ */
+public class UsbAccessoryStream implements AccessoryStream {
+
+    private final UsbManager mUsbManager;
+
+    private ParcelFileDescriptor mDescriptor;
+    private FileInputStream mInputStream;
+    private FileOutputStream mOutputStream;
+
+    /* Incremented whenever a descriptor is opened or closed. */
+    private int mGeneration;
+
+    public UsbAccessoryStream(UsbManager usbManager) {
+
+        this.mUsbManager = usbManager;
+
+    }
+
+    @Override
+    public void write(byte[] buffer, int length) throws IOException {
+
+        final FileOutputStream outputStream;
+        final int generation;
+
+        synchronized (this) {
+
+            if (mDescriptor == null) {
+
+                open();
+
+            }
+
+            outputStream = mOutputStream;
+            generation = mGeneration;
+
+        }
+
+        try {
+
+            outputStream.write(buffer, 0, length);
+
+        } catch (IOException exception) {
+
+            close(generation);
+
+            throw exception;
+
+        }
+
+    }
+
+    @Override
+    public int read(byte[] buffer) throws IOException {
+
+        final FileInputStream inputStream;
+        final int generation;
+
+        synchronized (this) {
+
+            if (mDescriptor == null) {
+
+                open();
+
+            }
+
+            inputStream = mInputStream;
+            generation = mGeneration;
+
+        }
+
+        try {
+
+            final int count = inputStream.read(buffer);
+
+            if (count < 0) {
+
+                throw new EOFException("Accessory closed");
+
+            }
+
+            return count;
+
+        } catch (IOException exception) {
+
+            close(generation);
+
+            throw exception;
+
+        }
+
+    }
+
+    @Override
+    public void close() {
+
+        final ParcelFileDescriptor descriptor;
+
+        synchronized (this) {
+
+            descriptor = release();
+
+        }
+
+        closeDescriptor(descriptor);
+
+    }
+
+    /* Close the descriptor a failed read or write used, unless it was already replaced. */
+    private void close(int generation) {
+
+        final ParcelFileDescriptor descriptor;
+
+        synchronized (this) {
+
+            if (generation != mGeneration) {
+
+                return;
+
+            }
+
+            descriptor = release();
+
+        }
+
+        closeDescriptor(descriptor);
+
+    }
+
+    /* Forget the current descriptor and return it. Called with the lock held. */
+    private ParcelFileDescriptor release() {
+
+        final ParcelFileDescriptor descriptor = mDescriptor;
+
+        if (descriptor != null) {
+
+            mGeneration++;
+
+        }
+
+        mDescriptor = null;
+        mInputStream = null;
+        mOutputStream = null;
+
+        return descriptor;
+
+    }
+
+    private static void closeDescriptor(ParcelFileDescriptor descriptor) {
+
+        if (descriptor != null) {
+
+            try {
+
+                descriptor.close();
+
+            } catch (IOException exception) {
+
+                /* Nothing left to release. */
+
+            }
+
+        }
+
+    }
+
+    /* Opens the first attached accessory Benson may use. Only one accessory can be attached at a time. */
+    private void open() throws IOException {
+
+        final UsbAccessory[] accessories = mUsbManager.getAccessoryList();
+
+        if (accessories == null || !mUsbManager.hasPermission(accessories[0])) {
+
+            throw new IOException("No accessory attached");
+
+        }
+
+        mDescriptor = mUsbManager.openAccessory(accessories[0]);
+
+        if (mDescriptor == null) {
+
+            throw new IOException("Accessory could not be opened");
+
+        }
+
+        mInputStream = new FileInputStream(mDescriptor.getFileDescriptor());
+        mOutputStream = new FileOutputStream(mDescriptor.getFileDescriptor());
+        mGeneration++;
+
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.diagnostics;
+
+import android.os.Debug;
+import android.util.Log;
+
+/**
+ * Counts the objects allocated by the calling thread between {@link #begin()} and {@link #end(String)}.
+ * Used to verify that a conversational turn stays allocation free. Counting slows the VM down,
+ * so it is disabled unless {@link #setEnabled(boolean)} is called, see the count_turn_allocations
+ * bool resource.
+ */
+public class AllocationCounter {
+
+    private static final String TAG = "AllocationCounter";
+
+    private static volatile boolean sEnabled;
+
+    private static int sLastCount;
+    private static int sLastSize;
+
+    private AllocationCounter() {
+
+        /* Do nothing. */
+
+    }
+
+    /**
+     * Enable or disable allocation counting.
+     *
+     * @param enabled True to count allocations on each turn.
+     */
+    public static void setEnabled(boolean enabled) {
+
+        sEnabled = enabled;
+
+    }
+
+    public static boolean isEnabled() {
+
+        return sEnabled;
+
+    }
+
+    /* Start counting allocations on the calling thread. */
+    @SuppressWarnings("deprecation")
+    public static void begin() {
+
+        if (sEnabled) {
+
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
+            Debug.startAllocCounting();
+
+        }
+
+    }
+
+    /**
+     * Stop counting allocations and log the result.
+     *
+     * @param tag Label written with the measurement.
+     */
+    @SuppressWarnings("deprecation")
+    public static void end(String tag) {
+
+        if (sEnabled) {
+
+            Debug.stopAllocCounting();
+
+            sLastCount = Debug.getThreadAllocCount();
+            sLastSize = Debug.getThreadAllocSize();
+
+            Log.d(TAG, tag + ": " + sLastCount + " allocations, " + sLastSize + " bytes");
+
+        }
+
+    }
+
+    /**
+     * Returns the number of objects allocated during the last measured turn.
+     *
+     * @return Allocation count, zero if counting is disabled.
+     */
+    public static int getLastCount() {
+
+        return sLastCount;
+
+    }
+
+    /**
+     * Returns the number of bytes allocated during the last measured turn.
+     *
+     * @return Allocated bytes, zero if counting is disabled.
+     */
+    public static int getLastSize() {
+
+        return sLastSize;
+
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, lock free histogram for latency values in the style of HdrHistogram. Each power of
+ * two range is split into eight linear sub-buckets, so any recorded value is reported within
+ * 12.5 percent. The unit of the values is up to the caller. Recording never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /* Enough buckets for any positive long. */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Record a value. Negative values are recorded as zero.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+
+        final long clamped = Math.max(0, value);
+
+        mCounts.incrementAndGet(indexOf(clamped));
+        mTotal.incrementAndGet();
+
+        long max = mMax.get();
+
+        while (clamped > max && !mMax.compareAndSet(max, clamped)) {
+
+            max = mMax.get();
+
+        }
+
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+
+        return mTotal.get();
+
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return The exact maximum.
+     */
+    public long getMax() {
+
+        return mMax.get();
+
+    }
+
+    /**
+     * Returns the value at a percentile, such as 99.0 for the tail latency.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return The highest value in the bucket holding the percentile, or zero if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        final long total = mTotal.get();
+
+        if (total == 0) {
+
+            return 0;
+
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            seen += mCounts.get(i);
+
+            if (seen >= target) {
+
+                return Math.min(highestValueAt(i), mMax.get());
+
+            }
+
+        }
+
+        return mMax.get();
+
+    }
+
+    /* Clear all recorded values. */
+    public void reset() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            mCounts.set(i, 0);
+
+        }
+
+        mTotal.set(0);
+        mMax.set(0);
+
+    }
+
+    /**
+     * Returns a one line summary of the distribution.
+     *
+     * @param unit Unit label appended to every value.
+     * @return Count and the 50th, 90th, 99th percentile and maximum values.
+     */
+    public String summary(String unit) {
+
+        return "n=" + getCount()
+                + " p50=" + getValueAtPercentile(50.0) + unit
+                + " p90=" + getValueAtPercentile(90.0) + unit
+                + " p99=" + getValueAtPercentile(99.0) + unit
+                + " max=" + getMax() + unit;
+
+    }
+
+    private static int indexOf(long value) {
+
+        if (value < SUB_BUCKETS) {
+
+            return (int) value;
+
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+
+    }
+
+    private static long highestValueAt(int index) {
+
+        if (index < SUB_BUCKETS) {
+
+            return index;
+
+        }
+
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+
+    }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.diagnostics;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Logs the time spent in each step of a startup sequence. Create one per sequence,
+ * call {@link #mark(String)} after each step and {@link #finish()} at the end.
+ */
+public class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    private final String mName;
+    private final long mStart;
+
+    private long mLast;
+
+    public StartupTrace(String name) {
+
+        this.mName = name;
+        this.mStart = SystemClock.elapsedRealtime();
+        this.mLast = mStart;
+
+    }
+
+    /**
+     * Log the time spent since the previous mark.
+     *
+     * @param step Name of the step that just finished.
+     * @return Time spent in the step, in milliseconds.
+     */
+    public long mark(String step) {
+
+        final long now = SystemClock.elapsedRealtime();
+        final long elapsed = now - mLast;
+
+        mLast = now;
+
+        Log.i(TAG, mName + ": " + step + " took " + elapsed + "ms");
+
+        return elapsed;
+
+    }
+
+    /**
+     * Log the total time since the trace was created.
+     *
+     * @return Total time, in milliseconds.
+     */
+    public long finish() {
+
+        final long total = SystemClock.elapsedRealtime() - mStart;
+
+        Log.i(TAG, mName + ": total " + total + "ms");
+
+        return total;
+
+    }
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.diagnostics;
+
+import com.github.johnpersano.benson.visualizer.FrameObserver;
+import com.github.johnpersano.benson.visualizer.RenderTiming;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects visualizer frame timing into {@link LatencyHistogram}s: whole frame draw time, capture
+ * to draw latency and time per renderer, all in microseconds, plus a count of dropped frames.
+ * Safe to read from any thread while frames are recorded.
+ */
+public class VisualizerStats implements FrameObserver {
+
+    private static final String UNIT = "us";
+
+    private final LatencyHistogram mDrawTime = new LatencyHistogram();
+    private final LatencyHistogram mCaptureLatency = new LatencyHistogram();
+
+    /* One histogram per renderer, created the first time the renderer is timed. */
+    private final ConcurrentHashMap<RenderTiming, LatencyHistogram> mRendererTimes =
+            new ConcurrentHashMap<RenderTiming, LatencyHistogram>();
+
+    private final AtomicLong mFrames = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+
+    @Override
+    public void onFrameRendered(long drawNanos, long captureLatencyNanos) {
+
+        mFrames.incrementAndGet();
+        mDrawTime.record(drawNanos / 1000);
+
+        if (captureLatencyNanos >= 0) {
+
+            mCaptureLatency.record(captureLatencyNanos / 1000);
+
+        }
+
+    }
+
+    @Override
+    public void onRendererTimed(RenderTiming timing, long nanos) {
+
+        LatencyHistogram histogram = mRendererTimes.get(timing);
+
+        if (histogram == null) {
+
+            mRendererTimes.putIfAbsent(timing, new LatencyHistogram());
+            histogram = mRendererTimes.get(timing);
+
+        }
+
+        histogram.record(nanos / 1000);
+
+    }
+
+    @Override
+    public void onFramesDropped(int frames) {
+
+        mDroppedFrames.addAndGet(frames);
+
+    }
+
+    /* Whole frame draw time in microseconds. */
+    public LatencyHistogram getDrawTime() {
+
+        return mDrawTime;
+
+    }
+
+    /* Time from capture to the end of the frame that drew it, in microseconds. */
+    public LatencyHistogram getCaptureLatency() {
+
+        return mCaptureLatency;
+
+    }
+
+    /**
+     * Returns the render time of one renderer.
+     *
+     * @param timing The renderer's timing, from the compositor.
+     * @return Render time in microseconds, or null if the renderer has not drawn yet.
+     */
+    public LatencyHistogram getRendererTime(RenderTiming timing) {
+
+        return mRendererTimes.get(timing);
+
+    }
+
+    public long getFrameCount() {
+
+        return mFrames.get();
+
+    }
+
+    public long getDroppedFrames() {
+
+        return mDroppedFrames.get();
+
+    }
+
+    public void reset() {
+
+        mDrawTime.reset();
+        mCaptureLatency.reset();
+        mRendererTimes.clear();
+        mFrames.set(0);
+        mDroppedFrames.set(0);
+
+    }
+
+    /**
+     * Returns a short multi line summary, as shown by the debug overlay.
+     *
+     * @return One line for the frame, capture latency, drops and each renderer.
+     */
+    public String summary() {
+
+        final StringBuilder builder = new StringBuilder();
+
+        builder.append("draw ").append(mDrawTime.summary(UNIT)).append('\n');
+        builder.append("capture ").append(mCaptureLatency.summary(UNIT)).append('\n');
+        builder.append("dropped ").append(mDroppedFrames.get()).append(" of ").append(mFrames.get());
+
+        for (Map.Entry<RenderTiming, LatencyHistogram> entry : mRendererTimes.entrySet()) {
+
+            builder.append('\n').append(entry.getKey().getName()).append(' ')
+                    .append(entry.getValue().summary(UNIT));
+
+        }
+
+        return builder.toString();
+
+    }
+
+    /**
+     * Write every statistic for offline analysis, for example from an activity's dump().
+     *
+     * @param prefix Prefix for every line.
+     * @param writer Destination.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+
+        writer.println(prefix + "frames=" + mFrames.get() + " dropped=" + mDroppedFrames.get());
+        writer.println(prefix + "draw " + mDrawTime.summary(UNIT));
+        writer.println(prefix + "capture-to-draw " + mCaptureLatency.summary(UNIT));
+
+        for (Map.Entry<RenderTiming, LatencyHistogram> entry : mRendererTimes.entrySet()) {
+
+            writer.println(prefix + "renderer " + entry.getKey() + " " + entry.getValue().summary(UNIT));
+
+        }
+
+    }
+
+}
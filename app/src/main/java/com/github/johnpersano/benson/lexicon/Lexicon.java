@@ -23,13 +23,58 @@ import com.github.johnpersano.benson.lexicon.modules.Time;
 import com.github.johnpersano.benson.lexicon.modules.Hello;
 import com.github.johnpersano.benson.lexicon.modules.HowAreYou;
 import com.github.johnpersano.benson.lexicon.modules.Joke;
+import com.github.johnpersano.benson.lexicon.modules.Temperature;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /* This class holds the default lexicon for Benson. If any new modules are added, be sure to add them here as well. */
 public class Lexicon {
 
-    public final List<? extends Query> lexicon = Arrays.asList(new Component(), new Hello(), new HowAreYou(), new Joke(), new Time());
+    /* Modules hold no per-turn state, so one shared instance of each serves every conversation. */
+    private static final List<? extends Query> DEFAULT_LEXICON = Collections.unmodifiableList(
+            Arrays.asList(new Component(), new Hello(), new HowAreYou(), new Joke(), new Temperature(), new Time()));
+
+    /* Compiled indexes keyed by lexicon identity. Nested lexicons are module constants so each compiles once. */
+    private static final Map<List<? extends Query>, LexiconIndex> sIndexes =
+            new IdentityHashMap<List<? extends Query>, LexiconIndex>();
+
+    public final List<? extends Query> lexicon = DEFAULT_LEXICON;
+
+    /**
+     * Returns the compiled index of the default lexicon.
+     *
+     * @return {@link com.github.johnpersano.benson.lexicon.LexiconIndex}
+     */
+    public static LexiconIndex getDefaultIndex() {
+
+        return getIndex(DEFAULT_LEXICON);
+
+    }
+
+    /**
+     * Returns the compiled index of a lexicon, compiling it on first use.
+     * Lexicons should be shared constants, a new list instance is compiled again.
+     *
+     * @param lexicon The {@link Query} items to index.
+     * @return {@link com.github.johnpersano.benson.lexicon.LexiconIndex}
+     */
+    public static synchronized LexiconIndex getIndex(List<? extends Query> lexicon) {
+
+        LexiconIndex index = sIndexes.get(lexicon);
+
+        if (index == null) {
+
+            index = new LexiconIndex(lexicon);
+            sIndexes.put(lexicon, index);
+
+        }
+
+        return index;
+
+    }
 
 }
@@ -0,0 +1,398 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.lexicon;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Precompiled matcher for a {@link Query} {@link java.util.List}. Every input phrase of every
+ * query is compiled into a single Aho-Corasick automaton so a hypothesis can be matched against
+ * the whole lexicon in one pass, regardless of how many modules or inputs the lexicon holds.
+ * <p/>
+ * Matching keeps the semantics of the original nested contains() scan: the first query in list
+ * order that has any input contained in the hypothesis wins.
+ * <p/>
+ * Several recognition alternatives can be matched together with
+ * {@link #matchBest(String[], float[], Match)}, which weighs them by confidence.
+ */
+public class LexiconIndex {
+
+    /* Query position used when no input phrase ends at a node. */
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    /* The lexicon this index was compiled from. Positions in this list are the match priority. */
+    private final List<? extends Query> mLexicon;
+
+    private final Node mRoot = new Node();
+
+    public LexiconIndex(List<? extends Query> lexicon) {
+
+        this.mLexicon = lexicon;
+
+        for (int position = 0; position < lexicon.size(); position++) {
+
+            final List<String> inputs = lexicon.get(position).getInputs();
+
+            if (inputs != null) {
+
+                for (String input : inputs) {
+
+                    addPhrase(input, position);
+
+                }
+
+            }
+
+        }
+
+        buildFailureLinks();
+
+    }
+
+    /**
+     * Returns the lexicon this index was compiled from.
+     *
+     * @return The {@link Query} items this index will match.
+     */
+    public List<? extends Query> getLexicon() {
+
+        return this.mLexicon;
+
+    }
+
+    /**
+     * Find the first {@link Query} in lexicon order that has an input contained in the hypothesis.
+     *
+     * @param hypothesis The full string containing the user's speech.
+     * @return The matching {@link Query} or null if no input was found.
+     */
+    public Query match(String hypothesis) {
+
+        final int position = matchPosition(hypothesis);
+
+        return (position == NO_MATCH) ? null : mLexicon.get(position);
+
+    }
+
+    /**
+     * Find the best {@link Query} for the alternatives of one recognition. Each alternative is matched
+     * in a single pass and votes for its query with its confidence. The query with the highest total
+     * wins, ties go to the earlier query in lexicon order. Agreeing lower ranked alternatives can
+     * outvote a top alternative that was misheard.
+     * <p/>
+     * Alternatives that match nothing are not pooled, since misheard variants of a matching phrase
+     * would outvote it. "No intent" wins only when a single unmatched alternative is more confident
+     * than the best query's total. A confident top alternative that is not in the lexicon therefore
+     * beats a weak alternative that happens to contain an input, and the caller can hand it to
+     * Wolfram Alpha instead.
+     *
+     * @param hypotheses  Recognition alternatives, best first.
+     * @param confidences Confidence of each alternative between 0 and 1.
+     * @param match       Receives the winning query and the most confident alternative that matched it.
+     * @return False if no intent won. The match then holds the most confident unmatched alternative
+     * and its confidence.
+     */
+    public boolean matchBest(String[] hypotheses, float[] confidences, Match match) {
+
+        final int count = hypotheses.length;
+
+        final int[] positions = match.positions(count);
+
+        for (int i = 0; i < count; i++) {
+
+            positions[i] = matchPosition(hypotheses[i]);
+
+        }
+
+        int best = -1;
+        float bestScore = 0;
+
+        int unmatched = -1;
+        float unmatchedScore = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            if (positions[i] == NO_MATCH) {
+
+                /* Equal confidences keep the higher ranked alternative. */
+                if (unmatched < 0 || confidences[i] > unmatchedScore) {
+
+                    unmatched = i;
+                    unmatchedScore = confidences[i];
+
+                }
+
+                continue;
+
+            }
+
+            float score = 0;
+
+            for (int j = 0; j < count; j++) {
+
+                if (positions[j] == positions[i]) {
+
+                    score += confidences[j];
+
+                }
+
+            }
+
+            /* Equal totals keep lexicon priority. Within one query the first, most confident, alternative is kept. */
+            if (best < 0 || score > bestScore || (score == bestScore && positions[i] < positions[best])) {
+
+                best = i;
+                bestScore = score;
+
+            }
+
+        }
+
+        /* The strongest unmatched alternative has to outvote the best query, equal scores keep the query. */
+        if (best < 0 || unmatchedScore > bestScore) {
+
+            match.set(null, hypotheses[Math.max(unmatched, 0)], unmatchedScore);
+
+            return false;
+
+        }
+
+        match.set(mLexicon.get(positions[best]), hypotheses[best], bestScore);
+
+        return true;
+
+    }
+
+    /* Walks the automaton once over the hypothesis and returns the lowest matching query position. */
+    private int matchPosition(String hypothesis) {
+
+        int best = mRoot.mBest;
+
+        Node node = mRoot;
+
+        for (int i = 0, length = hypothesis.length(); i < length && best != 0; i++) {
+
+            final char character = hypothesis.charAt(i);
+
+            Node next = node.get(character);
+
+            while (next == null && node != mRoot) {
+
+                node = node.mFail;
+                next = node.get(character);
+
+            }
+
+            node = (next != null) ? next : mRoot;
+
+            if (node.mBest < best) {
+
+                best = node.mBest;
+
+            }
+
+        }
+
+        return best;
+
+    }
+
+    private void addPhrase(String phrase, int position) {
+
+        Node node = mRoot;
+
+        for (int i = 0; i < phrase.length(); i++) {
+
+            final char character = phrase.charAt(i);
+
+            Node next = node.get(character);
+
+            if (next == null) {
+
+                next = node.put(character);
+
+            }
+
+            node = next;
+
+        }
+
+        /* Several queries may share a phrase, the earliest one keeps priority. */
+        if (position < node.mBest) {
+
+            node.mBest = position;
+
+        }
+
+    }
+
+    /* Breadth first pass that links every node to its longest proper suffix and folds suffix matches in. */
+    private void buildFailureLinks() {
+
+        final ArrayDeque<Node> queue = new ArrayDeque<Node>();
+
+        for (int i = 0; i < mRoot.mSize; i++) {
+
+            final Node child = mRoot.mChildren[i];
+            child.mFail = mRoot;
+            child.mBest = Math.min(child.mBest, mRoot.mBest);
+
+            queue.add(child);
+
+        }
+
+        while (!queue.isEmpty()) {
+
+            final Node node = queue.poll();
+
+            for (int i = 0; i < node.mSize; i++) {
+
+                final char character = node.mKeys[i];
+                final Node child = node.mChildren[i];
+
+                Node fail = node.mFail;
+
+                while (fail.get(character) == null && fail != mRoot) {
+
+                    fail = fail.mFail;
+
+                }
+
+                final Node target = fail.get(character);
+                child.mFail = (target != null) ? target : mRoot;
+
+                /* A phrase ending at the suffix also ends here, so inherit its priority. */
+                child.mBest = Math.min(child.mBest, child.mFail.mBest);
+
+                queue.add(child);
+
+            }
+
+        }
+
+    }
+
+    /* Result of {@link #matchBest(String[], float[], Match)}. Reusable. */
+    public static class Match {
+
+        private Query mQuery;
+        private String mHypothesis;
+        private float mScore;
+
+        /* Matched query position of every alternative. Kept so matching does not allocate once warmed up. */
+        private int[] mPositions = new int[0];
+
+        private int[] positions(int count) {
+
+            if (mPositions.length < count) {
+
+                mPositions = new int[count];
+
+            }
+
+            return mPositions;
+
+        }
+
+        private void set(Query query, String hypothesis, float score) {
+
+            this.mQuery = query;
+            this.mHypothesis = hypothesis;
+            this.mScore = score;
+
+        }
+
+        /* The winning query, or null if nothing matched. */
+        public Query getQuery() {
+
+            return mQuery;
+
+        }
+
+        /* The alternative the query should answer. */
+        public String getHypothesis() {
+
+            return mHypothesis;
+
+        }
+
+        /* Summed confidence of the alternatives that matched the query, or of the unmatched alternatives. */
+        public float getScore() {
+
+            return mScore;
+
+        }
+
+    }
+
+    /* Trie node. Fan out is small for spoken phrases so children are kept in parallel arrays. */
+    private static class Node {
+
+        private char[] mKeys = new char[2];
+        private Node[] mChildren = new Node[2];
+        private int mSize;
+
+        private Node mFail;
+        private int mBest = NO_MATCH;
+
+        private Node get(char character) {
+
+            for (int i = 0; i < mSize; i++) {
+
+                if (mKeys[i] == character) {
+
+                    return mChildren[i];
+
+                }
+
+            }
+
+            return null;
+
+        }
+
+        private Node put(char character) {
+
+            if (mSize == mKeys.length) {
+
+                final char[] keys = new char[mSize * 2];
+                final Node[] children = new Node[mSize * 2];
+
+                System.arraycopy(mKeys, 0, keys, 0, mSize);
+                System.arraycopy(mChildren, 0, children, 0, mSize);
+
+                mKeys = keys;
+                mChildren = children;
+
+            }
+
+            final Node node = new Node();
+
+            mKeys[mSize] = character;
+            mChildren[mSize] = node;
+            mSize++;
+
+            return node;
+
+        }
+
+    }
+
+}
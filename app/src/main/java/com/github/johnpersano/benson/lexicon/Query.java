@@ -20,9 +20,9 @@ package com.github.johnpersano.benson.lexicon;
 
 import android.content.Context;
 
-import java.util.List;
+import com.github.johnpersano.benson.accessory.AccessoryChannel;
 
-import me.palazzetti.adktoolkit.AdkManager;
+import java.util.List;
 
 /* All module classes should extend this class and override its methods. */
 public class Query {
@@ -43,10 +43,10 @@ public class Query {
      *
      * @param context The current Context.
      * @param hypothesis The full string containing the user's speech.
-     * @param adkManager The ADK Manager which communicates with the Arduino DUE.
+     * @param channel Sends commands to the Arduino DUE without blocking.
      * @return {@link com.github.johnpersano.benson.lexicon.Response}
      */
-    public Response getResponse(Context context,  String hypothesis, AdkManager adkManager) {
+    public Response getResponse(Context context,  String hypothesis, AccessoryChannel channel) {
 
         return null;
 
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.lexicon;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.github.johnpersano.benson.R;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+
+/**
+ * Holds every string array in arrays.xml, loaded once at startup. Modules pick replies by
+ * array resource id, so a turn never goes back to the resources to parse an array.
+ */
+public class ReplyPool {
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static final String TAG = "ReplyPool";
+
+    /* Shared random number generator. java.util.Random is thread safe, so one instance serves every caller. */
+    static final Random RANDOM = new Random();
+
+    private static volatile ReplyPool sInstance;
+
+    /* Reply arrays keyed by array resource id. Written once in the constructor and only read afterwards. */
+    private final SparseArray<String[]> mReplies;
+
+    private ReplyPool(Resources resources) {
+
+        final Field[] fields = R.array.class.getFields();
+
+        mReplies = new SparseArray<String[]>(fields.length);
+
+        for (Field field : fields) {
+
+            try {
+
+                final int id = field.getInt(null);
+                mReplies.put(id, resources.getStringArray(id));
+
+            } catch (IllegalAccessException exception) {
+
+                Log.e(TAG, exception.toString());
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns the reply pool, loading every reply array on first use.
+     *
+     * @param context The current Context.
+     * @return {@link com.github.johnpersano.benson.lexicon.ReplyPool}
+     */
+    public static ReplyPool getInstance(Context context) {
+
+        if (sInstance == null) {
+
+            synchronized (ReplyPool.class) {
+
+                if (sInstance == null) {
+
+                    sInstance = new ReplyPool(context.getApplicationContext().getResources());
+
+                }
+
+            }
+
+        }
+
+        return sInstance;
+
+    }
+
+    /**
+     * Returns every reply in an array.
+     *
+     * @param arrayId Array resource id, such as R.array.hello_default.
+     * @return The replies. Do not modify the returned array, it is shared.
+     */
+    public String[] getReplies(int arrayId) {
+
+        final String[] replies = mReplies.get(arrayId);
+
+        if (replies == null) {
+
+            throw new IllegalArgumentException("No reply array with id " + arrayId);
+
+        }
+
+        return replies;
+
+    }
+
+    /**
+     * Returns a random reply from an array.
+     *
+     * @param arrayId Array resource id, such as R.array.hello_default.
+     * @return Random {@link String} in the array.
+     */
+    public String getRandomReply(int arrayId) {
+
+        return Response.getRandomReply(getReplies(arrayId));
+
+    }
+
+    /**
+     * Returns a random reply from an array formatted with the current time.
+     *
+     * @param arrayId Array resource id, such as R.array.time_default.
+     * @return Random {@link String} in the array.
+     */
+    public String getRandomTimeReply(int arrayId) {
+
+        return Response.getRandomTimeReply(getReplies(arrayId));
+
+    }
+
+}
@@ -19,7 +19,6 @@
 package com.github.johnpersano.benson.lexicon;
 
 import java.util.List;
-import java.util.Random;
 
 public class Response {
 
@@ -95,7 +94,7 @@ public class Response {
      */
     public static String getRandomReply(String[] replies) {
 
-        return replies[new Random().nextInt(replies.length)];
+        return replies[ReplyPool.RANDOM.nextInt(replies.length)];
 
     }
 
@@ -111,7 +110,7 @@ public class Response {
         time.setToNow();
 
         /* Format is (12h:minute)AM/PM. See <http://linux.die.net/man/3/strftime> for other options. */
-        return String.format(replies[new Random().nextInt(replies.length)], time.format("%l:%M%p"));
+        return String.format(replies[ReplyPool.RANDOM.nextInt(replies.length)], time.format("%l:%M%p"));
 
     }
 
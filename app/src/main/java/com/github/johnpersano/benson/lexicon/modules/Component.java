@@ -21,14 +21,18 @@ package com.github.johnpersano.benson.lexicon.modules;
 import android.content.Context;
 
 import com.github.johnpersano.benson.R;
+import com.github.johnpersano.benson.accessory.AccessoryChannel;
+import com.github.johnpersano.benson.accessory.AccessoryProtocol;
+import com.github.johnpersano.benson.accessory.Command;
+import com.github.johnpersano.benson.accessory.DeviceStateTable;
 import com.github.johnpersano.benson.lexicon.Query;
+import com.github.johnpersano.benson.lexicon.ReplyPool;
 import com.github.johnpersano.benson.lexicon.Response;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import me.palazzetti.adktoolkit.AdkManager;
-
 
 public class Component extends Query {
 
@@ -36,81 +40,126 @@ public class Component extends Query {
     private static final String ON = " on";
     private static final String OFF = " off";
 
-    /* These values will be sent to the Arduino via serial. */
-    private static final String SERIAL_ON = "1";
-    private static final String SERIAL_OFF = "0";
+    /* Hypotheses starting with this ask about the component instead of switching it. */
+    private static final String QUESTION = "is ";
+
+    /* These commands will be sent to the Arduino. Both set the same state, so only the newest waiting one is written. */
+    private static final Command COMMAND_ON = new Command(AccessoryProtocol.DEVICE_LED, AccessoryProtocol.OP_SET, (byte) 1);
+    private static final Command COMMAND_OFF = new Command(AccessoryProtocol.DEVICE_LED, AccessoryProtocol.OP_SET, (byte) 0);
+
+    private static final List<String> INPUTS = Collections.unmodifiableList(
+            Arrays.asList("turn", "switch", "component", "exponent", "light"));
+
+    /* Clarification lexicon, shared by every response that asks what to do with the component. */
+    private static final List<? extends Query> COMPONENT_LEXICON = Collections.unmodifiableList(
+            Arrays.asList(new ComponentOn(), new ComponentOff()));
 
     @Override
     public List<String> getInputs() {
 
-        return Arrays.asList("turn", "switch", "component", "exponent");
+        return INPUTS;
 
     }
 
     @Override
-    public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+    public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
+
+        if (hypothesis.startsWith(QUESTION)) {
+
+            return getStateResponse(context, channel);
 
-        if (hypothesis.contains(ON)) {
+        } else if (hypothesis.contains(ON)) {
 
-            adkManager.write(SERIAL_ON);
+            channel.submit(COMMAND_ON);
 
             return new Response()
-                    .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.component_on_default)));
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.component_on_default));
 
         } else if (hypothesis.contains(OFF)) {
 
-            adkManager.write(SERIAL_OFF);
+            channel.submit(COMMAND_OFF);
 
             return new Response()
-                    .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.component_off_default)));
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.component_off_default));
 
         } else {
 
             return new Response()
-                    .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.component_default)))
-                    .setNestedLexicon(Arrays.asList(new ComponentOn(), new ComponentOff()));
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.component_default))
+                    .setNestedLexicon(COMPONENT_LEXICON);
 
         }
 
     }
 
-    private class ComponentOn extends Query {
+    /* Answered from the acknowledged state, the accessory is not asked. */
+    private static Response getStateResponse(Context context, AccessoryChannel channel) {
+
+        final int state = channel.getDeviceStates().getConfirmed(AccessoryProtocol.DEVICE_LED);
+
+        final int replies;
+
+        if (state == DeviceStateTable.UNKNOWN) {
+
+            replies = R.array.component_state_unknown;
+
+        } else if (state != 0) {
+
+            replies = R.array.component_state_on;
+
+        } else {
+
+            replies = R.array.component_state_off;
+
+        }
+
+        return new Response().setReply(ReplyPool.getInstance(context).getRandomReply(replies));
+
+    }
+
+    private static class ComponentOn extends Query {
+
+        private static final List<String> INPUTS = Collections.unmodifiableList(
+                Arrays.asList("on", "ron", "an", "bon"));
 
         @Override
         public List<String> getInputs() {
 
-            return Arrays.asList("on", "ron", "an", "bon");
+            return INPUTS;
 
         }
 
         @Override
-        public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+        public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
-            adkManager.write(SERIAL_ON);
+            channel.submit(COMMAND_ON);
 
             return new Response()
-                    .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.component_on_default)));
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.component_on_default));
 
         }
 
     }
 
-    private class ComponentOff extends Query {
+    private static class ComponentOff extends Query {
+
+        private static final List<String> INPUTS = Collections.unmodifiableList(
+                Arrays.asList("off", "of"));
 
         @Override
         public List<String> getInputs() {
 
-            return Arrays.asList("off", "of");
+            return INPUTS;
 
         }
 
         @Override
-        public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+        public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
-            adkManager.write(SERIAL_OFF);
+            channel.submit(COMMAND_OFF);
 
             return new Response()
-                    .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.component_off_default)));
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.component_off_default));
 
         }
 
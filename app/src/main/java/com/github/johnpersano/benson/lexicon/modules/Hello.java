@@ -21,103 +21,127 @@ package com.github.johnpersano.benson.lexicon.modules;
 import android.content.Context;
 
 import com.github.johnpersano.benson.R;
+import com.github.johnpersano.benson.accessory.AccessoryChannel;
 import com.github.johnpersano.benson.lexicon.Query;
+import com.github.johnpersano.benson.lexicon.ReplyPool;
 import com.github.johnpersano.benson.lexicon.Response;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import me.palazzetti.adktoolkit.AdkManager;
-
 public class Hello extends Query {
 
+    private static final List<String> INPUTS = Collections.unmodifiableList(
+            Arrays.asList("hello", "hey", "hi", "howdy"));
+
+    /* Status lexicon, shared by every response that asks the user how they are. */
+    private static final List<? extends Query> STATUS_LEXICON = Collections.unmodifiableList(
+            Arrays.asList(new PositiveStatus(), new NegativeStatus()));
+
+    /* Joke offer lexicon, shared by every response that offers a joke. */
+    private static final List<? extends Query> JOKE_LEXICON = Collections.unmodifiableList(
+            Arrays.asList(new YesJoke(), new NoJoke()));
+
     @Override
     public List<String> getInputs() {
 
-        return Arrays.asList("hello", "hey", "hi", "howdy");
+        return INPUTS;
 
     }
 
     @Override
-    public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+    public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
         return new Response()
-                .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.hello_default)))
-                .setNestedLexicon(Arrays.asList(new PositiveStatus(), new NegativeStatus()));
+                .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.hello_default))
+                .setNestedLexicon(STATUS_LEXICON);
 
     }
 
-    private class PositiveStatus extends Query {
+    private static class PositiveStatus extends Query {
+
+        private static final List<String> INPUTS = Collections.unmodifiableList(
+                Arrays.asList("good", "great", "excellent", "wonderful", "dandy", "super", "terrific"));
 
         @Override
         public List<String> getInputs() {
 
-            return Arrays.asList("good", "great", "excellent", "wonderful", "dandy", "super", "terrific");
+            return INPUTS;
 
         }
 
         @Override
-        public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+        public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
             return new Response()
-                    .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.hello_positive_status)));
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.hello_positive_status));
 
         }
 
     }
 
-    private class NegativeStatus extends Query {
+    private static class NegativeStatus extends Query {
+
+        private static final List<String> INPUTS = Collections.unmodifiableList(
+                Arrays.asList("not good", "bad", "terrible", "horrible"));
 
         @Override
         public List<String> getInputs() {
 
-            return Arrays.asList("not good", "bad", "terrible", "horrible");
+            return INPUTS;
 
         }
 
         @Override
-        public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+        public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
             return new Response()
-                    .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.hello_negative_status)))
-                    .setNestedLexicon(Arrays.asList(new YesJoke(), new NoJoke()));
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.hello_negative_status))
+                    .setNestedLexicon(JOKE_LEXICON);
 
         }
 
     }
 
-    private class YesJoke extends Joke {
+    private static class YesJoke extends Joke {
+
+        private static final List<String> INPUTS = Collections.unmodifiableList(
+                Arrays.asList("yes", "maybe", "okay", "sure", "certainly"));
 
         @Override
         public List<String> getInputs() {
 
-            return Arrays.asList("yes", "maybe", "okay", "sure", "certainly");
+            return INPUTS;
 
         }
 
         @Override
-        public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+        public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
-            return super.getResponse(context, hypothesis, adkManager);
+            return super.getResponse(context, hypothesis, channel);
 
         }
 
     }
 
-    private class NoJoke extends Query {
+    private static class NoJoke extends Query {
+
+        private static final List<String> INPUTS = Collections.unmodifiableList(
+                Arrays.asList("no", "not now", "not at all", "absolutely not"));
 
         @Override
         public List<String> getInputs() {
 
-            return Arrays.asList("no", "not now", "not at all", "absolutely not");
+            return INPUTS;
 
         }
 
         @Override
-        public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+        public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
             return new Response()
-                    .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.hello_no_joke)));
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.hello_no_joke));
 
         }
 
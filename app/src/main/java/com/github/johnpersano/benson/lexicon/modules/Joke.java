@@ -21,29 +21,33 @@ package com.github.johnpersano.benson.lexicon.modules;
 import android.content.Context;
 
 import com.github.johnpersano.benson.R;
+import com.github.johnpersano.benson.accessory.AccessoryChannel;
 import com.github.johnpersano.benson.lexicon.Query;
+import com.github.johnpersano.benson.lexicon.ReplyPool;
 import com.github.johnpersano.benson.lexicon.Response;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import me.palazzetti.adktoolkit.AdkManager;
-
 
 public class Joke extends Query {
 
+    private static final List<String> INPUTS = Collections.unmodifiableList(
+            Arrays.asList("a joke", "any jokes"));
+
     @Override
     public List<String> getInputs() {
 
-        return Arrays.asList("a joke", "any jokes");
+        return INPUTS;
 
     }
 
     @Override
-    public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+    public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
         return new Response()
-                .setReply(Response.getRandomReply(context.getResources().getStringArray(R.array.joke_default)));
+                .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.joke_default));
 
     }
 
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.lexicon.modules;
+
+import android.content.Context;
+
+import com.github.johnpersano.benson.R;
+import com.github.johnpersano.benson.accessory.AccessoryChannel;
+import com.github.johnpersano.benson.accessory.AccessoryProtocol;
+import com.github.johnpersano.benson.accessory.Telemetry;
+import com.github.johnpersano.benson.lexicon.Query;
+import com.github.johnpersano.benson.lexicon.ReplyPool;
+import com.github.johnpersano.benson.lexicon.Response;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+
+public class Temperature extends Query {
+
+    /* The sketch reports about once a second. Older readings mean it stopped reporting. */
+    private static final long MAX_SAMPLE_AGE = 10 * 1000;
+
+    /* Only questions about the room Benson is in. Weather anywhere else is left to Wolfram Alpha. */
+    private static final List<String> INPUTS = Collections.unmodifiableList(
+            Arrays.asList("temperature in here", "temperature in the room", "room temperature", "temperature inside",
+                    "hot in here", "cold in here", "warm in here", "hot is it in here", "cold is it in here",
+                    "warm is it in here"));
+
+    @Override
+    public List<String> getInputs() {
+
+        return INPUTS;
+
+    }
+
+    /* Answered from the mean of the recent samples, which evens out sensor noise. The accessory is not asked. */
+    @Override
+    public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
+
+        final Telemetry.Aggregate aggregate = new Telemetry.Aggregate();
+
+        if (!channel.getTelemetry().aggregate(AccessoryProtocol.SENSOR_TEMPERATURE, MAX_SAMPLE_AGE, aggregate)) {
+
+            return new Response()
+                    .setReply(ReplyPool.getInstance(context).getRandomReply(R.array.temperature_unavailable));
+
+        }
+
+        /* Samples are in hundredths of a degree. */
+        final String degrees = String.format(Locale.US, "%.1f", aggregate.getMean() / 100.0);
+
+        return new Response()
+                .setReply(String.format(ReplyPool.getInstance(context).getRandomReply(R.array.temperature_default), degrees));
+
+    }
+
+}
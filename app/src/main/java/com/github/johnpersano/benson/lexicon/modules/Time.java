@@ -21,29 +21,31 @@ package com.github.johnpersano.benson.lexicon.modules;
 import android.content.Context;
 
 import com.github.johnpersano.benson.R;
+import com.github.johnpersano.benson.accessory.AccessoryChannel;
 import com.github.johnpersano.benson.lexicon.Query;
+import com.github.johnpersano.benson.lexicon.ReplyPool;
 import com.github.johnpersano.benson.lexicon.Response;
 
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import me.palazzetti.adktoolkit.AdkManager;
-
 
 public class Time extends Query {
 
+    private static final List<String> INPUTS = Collections.singletonList("time");
+
     @Override
     public List<String> getInputs() {
 
-        return Arrays.asList("time");
+        return INPUTS;
 
     }
 
     @Override
-    public Response getResponse(Context context, String hypothesis, AdkManager adkManager) {
+    public Response getResponse(Context context, String hypothesis, AccessoryChannel channel) {
 
         return new Response()
-                .setReply(Response.getRandomTimeReply(context.getResources().getStringArray(R.array.time_default)));
+                .setReply(ReplyPool.getInstance(context).getRandomTimeReply(R.array.time_default));
 
     }
 
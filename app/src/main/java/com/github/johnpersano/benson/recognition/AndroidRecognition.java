@@ -36,7 +36,16 @@ public class AndroidRecognition implements RecognitionListener {
     /* Custom listener for speech result */
     public interface OnResultListener {
 
-        public void onSpeechResult(boolean resultOK, String hypothesis);
+        /**
+         * Speech was recognized.
+         *
+         * @param hypotheses  - Lower case alternatives, best first
+         * @param confidences - Confidence of each alternative between 0 and 1
+         */
+        public void onSpeechResults(String[] hypotheses, float[] confidences);
+
+        /* Nothing usable was recognized. The reply tells the user why. */
+        public void onSpeechError(String reply);
 
     }
 
@@ -91,13 +100,13 @@ public class AndroidRecognition implements RecognitionListener {
 
             case SpeechRecognizer.ERROR_SPEECH_TIMEOUT:
 
-                mOnResultListener.onSpeechResult(false, RESPONSE_TIMEOUT);
+                mOnResultListener.onSpeechError(RESPONSE_TIMEOUT);
 
                 break;
 
             case SpeechRecognizer.ERROR_NO_MATCH:
 
-                mOnResultListener.onSpeechResult(false, RESPONSE_BAD_SPEECH);
+                mOnResultListener.onSpeechError(RESPONSE_BAD_SPEECH);
 
                 break;
 
@@ -111,14 +120,49 @@ public class AndroidRecognition implements RecognitionListener {
         final ArrayList<String> matches = results
                 .getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
 
-        mOnResultListener.onSpeechResult(true, matches.get(0).toLowerCase());
+        if (matches == null || matches.isEmpty()) {
+
+            mOnResultListener.onSpeechError(RESPONSE_BAD_SPEECH);
+
+            return;
+
+        }
+
+        final String[] hypotheses = new String[matches.size()];
+
+        for (int i = 0; i < hypotheses.length; i++) {
+
+            hypotheses[i] = matches.get(i).toLowerCase();
+
+        }
+
+        float[] confidences = results.getFloatArray(SpeechRecognizer.CONFIDENCE_SCORES);
+
+        /* Not every recognizer scores its alternatives. Fall back to weights that halve with rank,
+         * so the top alternative outweighs all lower ranks together. */
+        if (confidences == null || confidences.length != hypotheses.length) {
+
+            confidences = new float[hypotheses.length];
+
+            float weight = 0.5f;
+
+            for (int i = 0; i < confidences.length; i++) {
+
+                confidences[i] = weight;
+                weight /= 2;
+
+            }
+
+        }
+
+        mOnResultListener.onSpeechResults(hypotheses, confidences);
 
     }
 
     @Override
     public void onPartialResults(Bundle partialResults) {
 
-        mOnResultListener.onSpeechResult(false, RESPONSE_PARTIAL_RESULTS);
+        mOnResultListener.onSpeechError(RESPONSE_PARTIAL_RESULTS);
 
     }
 
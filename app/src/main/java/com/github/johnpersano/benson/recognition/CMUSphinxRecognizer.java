@@ -19,42 +19,221 @@ package com.github.johnpersano.benson.recognition;
 
 
 import android.content.Context;
+import android.os.AsyncTask;
+
+import com.github.johnpersano.benson.R;
+import com.github.johnpersano.benson.diagnostics.StartupTrace;
 
-import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
-import edu.cmu.pocketsphinx.Assets;
 import edu.cmu.pocketsphinx.SpeechRecognizer;
 
 import static edu.cmu.pocketsphinx.SpeechRecognizerSetup.defaultSetup;
 
+/**
+ * Application scoped owner of the CMUSphinx decoder. The decoder is built once per process and
+ * kept warm across activity recreation, so a restarted activity gets a recognizer as soon as it
+ * attaches instead of reloading the models. All methods must be called from the main thread.
+ */
 public class CMUSphinxRecognizer {
 
     @SuppressWarnings("UnusedDeclaration")
     private static final String TAG = "CMUSphinxRecognizer";
 
-    private Context mContext;
+    /* CMUSphinx keyword requires a string key. For simplicity, the value is set as 'key'. */
+    public static final String RECOGNITION_KEY = "key";
+
+    /* CMUSphinx keyword. This is the only word CMUSphinx will listen for. */
+    private static final String RECOGNITION_KEYWORD = "benson";
+
+    /* Custom listener for recognizer availability. */
+    public interface OnReadyListener {
+
+        public void onRecognizerReady(SpeechRecognizer recognizer);
+
+        public void onRecognizerError(IOException exception);
+
+    }
+
+    private static CMUSphinxRecognizer sInstance;
 
-    public CMUSphinxRecognizer(Context context) {
+    private final Context mContext;
+
+    private final List<OnReadyListener> mListeners = new ArrayList<OnReadyListener>();
+
+    private SpeechRecognizer mRecognizer;
+    private IOException mException;
+    private boolean mLoading;
+
+    private CMUSphinxRecognizer(Context context) {
 
         this.mContext = context;
 
     }
 
-    /* Create speech recognizer. This should be done in an AsyncTask */
-    public SpeechRecognizer getRecognizer() throws IOException {
+    /**
+     * Returns the process wide recognizer owner.
+     *
+     * @param context Any Context, only the application context is kept.
+     * @return {@link com.github.johnpersano.benson.recognition.CMUSphinxRecognizer}
+     */
+    public static CMUSphinxRecognizer getInstance(Context context) {
+
+        if (sInstance == null) {
+
+            sInstance = new CMUSphinxRecognizer(context.getApplicationContext());
+
+        }
+
+        return sInstance;
+
+    }
+
+    /* Start building the decoder in the background if it is not built or building already. */
+    public void prepare() {
+
+        if (mRecognizer != null || mLoading) {
+
+            return;
+
+        }
+
+        mLoading = true;
+        mException = null;
+
+        new AsyncTask<Void, Void, Object>() {
+
+            @Override
+            protected Object doInBackground(Void... params) {
+
+                try {
+
+                    return createRecognizer();
+
+                } catch (IOException exception) {
+
+                    return exception;
+
+                }
+
+            }
+
+            @Override
+            protected void onPostExecute(Object result) {
+
+                mLoading = false;
+
+                if (result instanceof SpeechRecognizer) {
+
+                    mRecognizer = (SpeechRecognizer) result;
+
+                } else {
+
+                    mException = (IOException) result;
+
+                }
+
+                final List<OnReadyListener> listeners = new ArrayList<OnReadyListener>(mListeners);
 
-        final Assets assets = new Assets(mContext);
+                for (OnReadyListener listener : listeners) {
 
-        final File assetDirectory = assets.syncAssets();
-        final File modelsDirectory = new File(assetDirectory, "models");
+                    dispatch(listener);
 
-        return defaultSetup()
-                .setAcousticModel(new File(modelsDirectory, "hmm/en-us-semi"))
-                .setDictionary(new File(modelsDirectory, "dict/cmu07a.dic"))
-                .setRawLogDir(assetDirectory).setKeywordThreshold(1e-20f)
+                }
+
+            }
+
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+
+    }
+
+    /**
+     * Attach a UI to the recognizer. The listener is called right away if the decoder is warm,
+     * otherwise once it has been built.
+     *
+     * @param listener Receives the recognizer or the error that prevented it from being built.
+     */
+    public void attach(OnReadyListener listener) {
+
+        if (!mListeners.contains(listener)) {
+
+            mListeners.add(listener);
+
+        }
+
+        if (mRecognizer != null || mException != null) {
+
+            dispatch(listener);
+
+        }
+
+        /* Retry a failed build, external storage may have come back. */
+        if (mException != null) {
+
+            prepare();
+
+        }
+
+    }
+
+    /**
+     * Detach a UI. The recognizer is stopped but the decoder is kept for the next UI.
+     *
+     * @param listener The listener passed to {@link #attach(OnReadyListener)}.
+     */
+    public void detach(OnReadyListener listener) {
+
+        mListeners.remove(listener);
+
+        if (mRecognizer != null) {
+
+            mRecognizer.stop();
+
+        }
+
+    }
+
+    private void dispatch(OnReadyListener listener) {
+
+        if (mRecognizer != null) {
+
+            listener.onRecognizerReady(mRecognizer);
+
+        } else {
+
+            listener.onRecognizerError(mException);
+
+        }
+
+    }
+
+    /* Create speech recognizer. This must be done off the main thread. */
+    private SpeechRecognizer createRecognizer() throws IOException {
+
+        final StartupTrace startupTrace = new StartupTrace(TAG);
+
+        /* Assets are only copied when the APK or keywords changed, warm starts skip straight to the decoder. */
+        final SphinxAssets assets = SphinxAssets.sync(mContext,
+                mContext.getResources().getStringArray(R.array.cmusphinx_keywords));
+
+        startupTrace.mark("asset sync");
+
+        final SpeechRecognizer recognizer = defaultSetup()
+                .setAcousticModel(assets.getAcousticModel())
+                .setDictionary(assets.getDictionary())
+                .setRawLogDir(assets.getDirectory()).setKeywordThreshold(1e-20f)
                 .getRecognizer();
 
+        /* Set the CMUSphinx speech recognizer to listen for the keyword 'benson'. */
+        recognizer.addKeyphraseSearch(RECOGNITION_KEY, RECOGNITION_KEYWORD);
+
+        startupTrace.mark("decoder");
+        startupTrace.finish();
+
+        return recognizer;
+
     }
 
 }
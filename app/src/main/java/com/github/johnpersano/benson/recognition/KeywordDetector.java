@@ -0,0 +1,244 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.recognition;
+
+import android.os.SystemClock;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Detects the Benson keywords in CMUSphinx hypotheses. Keywords are loaded once into a hash set for
+ * exact matches. Hypotheses that miss the set are normalized and compared within an edit distance.
+ * Detection allocates nothing, so it is safe to run on every partial result.
+ * <p/>
+ * One keyword triggers once: after a detection, further hypotheses are ignored until {@link #reset()}
+ * is called or the debounce time has passed.
+ */
+public class KeywordDetector {
+
+    /* Longer hypotheses are never keywords and are rejected without normalizing them. */
+    private static final int MAX_HYPOTHESIS_LENGTH = 64;
+
+    private final Set<String> mKeywords = new HashSet<String>();
+    private final char[][] mKeywordCharacters;
+
+    private final int mMaxDistance;
+    private final long mDebounce;
+
+    /* Scratch space reused by every detection. */
+    private final char[] mBuffer = new char[MAX_HYPOTHESIS_LENGTH];
+    private int[] mPreviousRow;
+    private int[] mCurrentRow;
+
+    private volatile boolean mTriggered;
+    private volatile long mTriggerTime;
+
+    /**
+     * @param keywords Keywords to detect.
+     * @param maxDistance Maximum edit distance between a normalized hypothesis and a keyword. Zero for exact matches only.
+     * @param debounce Time in milliseconds after a detection during which further detections are ignored.
+     */
+    public KeywordDetector(String[] keywords, int maxDistance, long debounce) {
+
+        this.mMaxDistance = maxDistance;
+        this.mDebounce = debounce;
+
+        int longest = 0;
+
+        for (String keyword : keywords) {
+
+            mKeywords.add(keyword.trim().toLowerCase(Locale.US));
+
+        }
+
+        mKeywordCharacters = new char[mKeywords.size()][];
+
+        int i = 0;
+
+        for (String keyword : mKeywords) {
+
+            mKeywordCharacters[i++] = keyword.toCharArray();
+            longest = Math.max(longest, keyword.length());
+
+        }
+
+        mPreviousRow = new int[longest + 1];
+        mCurrentRow = new int[longest + 1];
+
+    }
+
+    /**
+     * Check a hypothesis, honoring the debounce.
+     *
+     * @param hypothesis The CMUSphinx hypothesis.
+     * @return True only for the first detection of a keyword.
+     */
+    public synchronized boolean onHypothesis(String hypothesis) {
+
+        final long now = SystemClock.uptimeMillis();
+
+        if (mTriggered && now - mTriggerTime < mDebounce) {
+
+            return false;
+
+        }
+
+        if (isKeyword(hypothesis)) {
+
+            mTriggered = true;
+            mTriggerTime = now;
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    /* Arm the detector again. Call this whenever keyword listening restarts. */
+    public void reset() {
+
+        mTriggered = false;
+
+    }
+
+    /**
+     * Check a hypothesis without debouncing.
+     *
+     * @param hypothesis The CMUSphinx hypothesis.
+     * @return True if the hypothesis is a keyword.
+     */
+    public synchronized boolean isKeyword(String hypothesis) {
+
+        if (hypothesis == null) {
+
+            return false;
+
+        }
+
+        if (mKeywords.contains(hypothesis)) {
+
+            return true;
+
+        }
+
+        final int length = normalize(hypothesis);
+
+        if (length <= 0) {
+
+            return false;
+
+        }
+
+        for (char[] keyword : mKeywordCharacters) {
+
+            if (Math.abs(keyword.length - length) <= mMaxDistance && distance(keyword, length) <= mMaxDistance) {
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /* Lowercase, drop punctuation and collapse whitespace into the buffer. Returns -1 if it does not fit. */
+    private int normalize(String hypothesis) {
+
+        int length = 0;
+        boolean space = false;
+
+        for (int i = 0; i < hypothesis.length(); i++) {
+
+            final char character = hypothesis.charAt(i);
+
+            if (Character.isLetterOrDigit(character)) {
+
+                if (space && length > 0) {
+
+                    if (length == mBuffer.length) {
+
+                        return -1;
+
+                    }
+
+                    mBuffer[length++] = ' ';
+
+                }
+
+                if (length == mBuffer.length) {
+
+                    return -1;
+
+                }
+
+                mBuffer[length++] = Character.toLowerCase(character);
+                space = false;
+
+            } else if (Character.isWhitespace(character)) {
+
+                space = true;
+
+            }
+
+        }
+
+        return length;
+
+    }
+
+    /* Levenshtein distance between a keyword and the buffer, using the preallocated rows. */
+    private int distance(char[] keyword, int length) {
+
+        int[] previous = mPreviousRow;
+        int[] current = mCurrentRow;
+
+        for (int j = 0; j <= keyword.length; j++) {
+
+            previous[j] = j;
+
+        }
+
+        for (int i = 1; i <= length; i++) {
+
+            current[0] = i;
+
+            for (int j = 1; j <= keyword.length; j++) {
+
+                final int cost = (mBuffer[i - 1] == keyword[j - 1]) ? 0 : 1;
+
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+
+            }
+
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+
+        }
+
+        return previous[keyword.length];
+
+    }
+
+}
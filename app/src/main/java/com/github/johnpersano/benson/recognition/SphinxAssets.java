@@ -0,0 +1,314 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.recognition;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import edu.cmu.pocketsphinx.Assets;
+
+/**
+ * Keeps the CMUSphinx models on external storage between launches. The assets are hashed and copied
+ * only when the installed APK or the keyword list changed since the last successful sync. Warm starts
+ * just check that the synced files are still present.
+ * <p/>
+ * A dictionary holding only the keyword pronunciations is generated during the sync, so the decoder
+ * does not have to load the full CMU dictionary.
+ */
+public class SphinxAssets {
+
+    private static final String TAG = "SphinxAssets";
+
+    private static final String PREFERENCES = "sphinx_assets";
+    private static final String KEY_MANIFEST = "manifest";
+
+    /* Paths relative to the synced asset directory. */
+    private static final String ACOUSTIC_MODEL = "models/hmm/en-us-semi";
+    private static final String FULL_DICTIONARY = "models/dict/cmu07a.dic";
+    private static final String KEYWORD_DICTIONARY = "models/dict/keywords.dic";
+
+    /* Path of the asset list inside the APK. */
+    private static final String ASSET_LIST = Assets.SYNC_DIR + "/" + Assets.ASSET_LIST_NAME;
+
+    private final Context mContext;
+    private final File mDirectory;
+
+    private SphinxAssets(Context context, File directory) {
+
+        this.mContext = context;
+        this.mDirectory = directory;
+
+    }
+
+    /**
+     * Make sure the models are on external storage. This should be done off the main thread.
+     *
+     * @param context The current Context.
+     * @param keywords Keyphrases the recognizer will listen for.
+     * @return {@link com.github.johnpersano.benson.recognition.SphinxAssets}
+     * @throws IOException If the assets could not be copied.
+     */
+    public static SphinxAssets sync(Context context, String[] keywords) throws IOException {
+
+        final Assets assets = new Assets(context);
+
+        final SphinxAssets sphinxAssets = new SphinxAssets(context, assets.getExternalDir());
+
+        final SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        final String manifest = sphinxAssets.getManifest(keywords);
+
+        if (manifest.equals(preferences.getString(KEY_MANIFEST, null)) && sphinxAssets.isComplete()) {
+
+            return sphinxAssets;
+
+        }
+
+        Log.i(TAG, "Synchronizing assets for " + manifest);
+
+        assets.syncAssets();
+
+        sphinxAssets.writeKeywordDictionary(keywords);
+
+        preferences.edit().putString(KEY_MANIFEST, manifest).commit();
+
+        return sphinxAssets;
+
+    }
+
+    /**
+     * Returns the synced asset directory.
+     *
+     * @return The directory, also used as the raw log directory.
+     */
+    public File getDirectory() {
+
+        return mDirectory;
+
+    }
+
+    /**
+     * Returns the acoustic model directory.
+     *
+     * @return The acoustic model.
+     */
+    public File getAcousticModel() {
+
+        return new File(mDirectory, ACOUSTIC_MODEL);
+
+    }
+
+    /**
+     * Returns the keyword dictionary, or the full dictionary if a keyword has no pronunciation.
+     *
+     * @return The dictionary the decoder should load.
+     */
+    public File getDictionary() {
+
+        final File keywordDictionary = new File(mDirectory, KEYWORD_DICTIONARY);
+
+        return keywordDictionary.exists() ? keywordDictionary : new File(mDirectory, FULL_DICTIONARY);
+
+    }
+
+    /* The manifest changes whenever the APK is updated or the keywords change. */
+    private String getManifest(String[] keywords) {
+
+        long versionCode = 0;
+        long lastUpdateTime = 0;
+
+        try {
+
+            final PackageInfo packageInfo = mContext.getPackageManager().getPackageInfo(mContext.getPackageName(), 0);
+
+            versionCode = packageInfo.versionCode;
+            lastUpdateTime = packageInfo.lastUpdateTime;
+
+        } catch (PackageManager.NameNotFoundException exception) {
+
+            Log.e(TAG, exception.toString());
+
+        }
+
+        return versionCode + "/" + lastUpdateTime + "/" + Arrays.toString(keywords);
+
+    }
+
+    /* Checks that every file in the asset list is still on external storage. Nothing is hashed. */
+    private boolean isComplete() {
+
+        BufferedReader reader = null;
+
+        try {
+
+            reader = new BufferedReader(new InputStreamReader(mContext.getAssets().open(ASSET_LIST)));
+
+            String item;
+
+            while ((item = reader.readLine()) != null) {
+
+                if (item.length() > 0 && !new File(mDirectory, item).isFile()) {
+
+                    return false;
+
+                }
+
+            }
+
+            return true;
+
+        } catch (IOException exception) {
+
+            return false;
+
+        } finally {
+
+            close(reader);
+
+        }
+
+    }
+
+    /* Copies the pronunciation of every keyword word out of the full dictionary. */
+    private void writeKeywordDictionary(String[] keywords) throws IOException {
+
+        final Set<String> words = new HashSet<String>();
+
+        for (String keyword : keywords) {
+
+            words.addAll(Arrays.asList(keyword.trim().toLowerCase(Locale.US).split("\\s+")));
+
+        }
+
+        final Set<String> found = new HashSet<String>();
+
+        final File keywordDictionary = new File(mDirectory, KEYWORD_DICTIONARY);
+
+        BufferedReader reader = null;
+        BufferedWriter writer = null;
+
+        try {
+
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(mDirectory, FULL_DICTIONARY))));
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(keywordDictionary)));
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+
+                final int end = firstWhitespace(line);
+
+                if (end <= 0) {
+
+                    continue;
+
+                }
+
+                /* Alternate pronunciations are written as word(2). */
+                String word = line.substring(0, end);
+
+                final int alternate = word.indexOf('(');
+
+                if (alternate > 0) {
+
+                    word = word.substring(0, alternate);
+
+                }
+
+                if (words.contains(word)) {
+
+                    writer.write(line);
+                    writer.newLine();
+
+                    found.add(word);
+
+                }
+
+            }
+
+        } finally {
+
+            close(reader);
+            close(writer);
+
+        }
+
+        if (!found.containsAll(words)) {
+
+            words.removeAll(found);
+
+            Log.w(TAG, "No pronunciation for " + words + ", using the full dictionary");
+
+            //noinspection ResultOfMethodCallIgnored
+            keywordDictionary.delete();
+
+        }
+
+    }
+
+    private static int firstWhitespace(String line) {
+
+        for (int i = 0; i < line.length(); i++) {
+
+            if (Character.isWhitespace(line.charAt(i))) {
+
+                return i;
+
+            }
+
+        }
+
+        return -1;
+
+    }
+
+    private static void close(Closeable closeable) {
+
+        if (closeable != null) {
+
+            try {
+
+                closeable.close();
+
+            } catch (IOException exception) {
+
+                /* Do nothing. */
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,489 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.speech;
+
+import android.content.Context;
+import android.os.Process;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pre-renders fixed phrases to audio files so they are played back instead of synthesized live.
+ * Files are registered with the speaking {@link TextToSpeech} through addSpeech(), so speak()
+ * plays them and utterance callbacks still fire as usual.
+ * <p/>
+ * Rendering runs on a second TextToSpeech instance, one phrase at a time, so it never shares a
+ * queue with live speech and a QUEUE_FLUSH cannot drop it. Files live in a directory per engine
+ * and locale. Phrases are given in priority order: when the cache is over its size budget the
+ * lowest priority files are evicted, and files of phrases no longer in use are deleted.
+ */
+public class PhraseCache {
+
+    private static final String TAG = "PhraseCache";
+
+    private static final String DIRECTORY = "phrases";
+    private static final String EXTENSION = ".wav";
+    private static final String PARTIAL = ".part";
+
+    private final Context mContext;
+    private final TextToSpeech mSpeaker;
+    private final long mMaxBytes;
+
+    /* Phrases waiting to be rendered, highest priority first. */
+    private final ArrayDeque<String> mPending = new ArrayDeque<String>();
+
+    private final Set<String> mCached = new HashSet<String>();
+
+    private TextToSpeech mSynthesizer;
+
+    /* Set once the synthesizer is initialized. Rendering waits for it and for the scan, which fills mPending. */
+    private boolean mSynthesizerReady;
+
+    /* Set by the scan, null until it finished. */
+    private File mDirectory;
+    private String mRendering;
+    private long mBytes;
+    private boolean mShutdown;
+
+    /**
+     * @param context  The current Context.
+     * @param speaker  TextToSpeech that speaks the phrases, already initialized with its language.
+     * @param maxBytes Size budget of the cache on disk.
+     */
+    public PhraseCache(Context context, TextToSpeech speaker, long maxBytes) {
+
+        this.mContext = context.getApplicationContext();
+        this.mSpeaker = speaker;
+        this.mMaxBytes = maxBytes;
+
+    }
+
+    /**
+     * Register every phrase already on disk and render the others in the background. The disk
+     * scan runs on its own thread, so this returns right away and phrases play live until their
+     * files are registered. Phrases with format specifiers are skipped, they change every time
+     * they are spoken.
+     *
+     * @param phrases Phrases to cache, highest priority first.
+     */
+    public void warm(final List<String> phrases) {
+
+        final Locale locale = mSpeaker.getLanguage();
+        final String engine = mSpeaker.getDefaultEngine();
+
+        final Thread scanner = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                scan(phrases, engine + "_" + locale);
+
+            }
+
+        }, TAG);
+
+        scanner.start();
+
+        mSynthesizer = new TextToSpeech(mContext, new TextToSpeech.OnInitListener() {
+
+            @Override
+            public void onInit(int status) {
+
+                if (status != TextToSpeech.SUCCESS) {
+
+                    Log.e(TAG, "Synthesizer failed to initialize");
+
+                    return;
+
+                }
+
+                mSynthesizer.setLanguage(locale);
+                mSynthesizer.setOnUtteranceProgressListener(mProgressListener);
+
+                synchronized (PhraseCache.this) {
+
+                    mSynthesizerReady = true;
+
+                }
+
+                renderNext();
+
+            }
+
+        }, engine);
+
+    }
+
+    /* Runs on the scanner thread. Touches the disk without the lock, then publishes the result under it. */
+    private void scan(List<String> phrases, String voice) {
+
+        final File root = new File(mContext.getCacheDir(), DIRECTORY);
+        final File directory = new File(root, voice);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+
+            Log.e(TAG, "Unable to create " + directory);
+
+            return;
+
+        }
+
+        /* Audio rendered by another engine or for another locale would sound wrong. */
+        deleteOtherVoices(root, voice);
+
+        final Set<String> wanted = new HashSet<String>();
+        final List<String> pending = new ArrayList<String>();
+        final Map<String, File> cached = new LinkedHashMap<String, File>();
+
+        long bytes = 0;
+
+        for (String phrase : phrases) {
+
+            if (phrase == null || phrase.indexOf('%') >= 0 || !wanted.add(fileName(phrase))) {
+
+                continue;
+
+            }
+
+            final File file = new File(directory, fileName(phrase));
+            final long length = file.length();
+
+            if (length == 0) {
+
+                /* Never rendered. Rendering stops once the budget is used up. */
+                pending.add(phrase);
+
+            } else if (bytes + length <= mMaxBytes) {
+
+                bytes += length;
+                cached.put(phrase, file);
+
+            } else {
+
+                /* Over budget, evict it so higher priority phrases keep their room. */
+                deleteQuietly(file);
+
+            }
+
+        }
+
+        deleteUnwanted(directory, wanted);
+
+        synchronized (this) {
+
+            if (mShutdown) {
+
+                return;
+
+            }
+
+            mDirectory = directory;
+            mBytes = bytes;
+            mPending.addAll(pending);
+
+            for (Map.Entry<String, File> entry : cached.entrySet()) {
+
+                register(entry.getKey(), entry.getValue());
+
+            }
+
+        }
+
+        renderNext();
+
+    }
+
+    /* True if the phrase plays from a file. */
+    public synchronized boolean isCached(String phrase) {
+
+        return mCached.contains(phrase);
+
+    }
+
+    public synchronized int size() {
+
+        return mCached.size();
+
+    }
+
+    /* Stop rendering. Files already rendered stay registered and on disk. */
+    public void shutdown() {
+
+        synchronized (this) {
+
+            mShutdown = true;
+            mPending.clear();
+
+        }
+
+        if (mSynthesizer != null) {
+
+            mSynthesizer.stop();
+            mSynthesizer.shutdown();
+
+        }
+
+    }
+
+    private void renderNext() {
+
+        final String phrase;
+        final File partial;
+
+        synchronized (this) {
+
+            if (mShutdown || !mSynthesizerReady || mRendering != null || mPending.isEmpty()) {
+
+                return;
+
+            }
+
+            phrase = mPending.poll();
+            partial = partialFor(phrase);
+
+            mRendering = phrase;
+
+        }
+
+        final HashMap<String, String> params = new HashMap<String, String>();
+        params.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, fileName(phrase));
+
+        if (mSynthesizer.synthesizeToFile(phrase, params, partial.getAbsolutePath()) != TextToSpeech.SUCCESS) {
+
+            Log.e(TAG, "Unable to queue " + phrase);
+
+            synchronized (this) {
+
+                mRendering = null;
+
+            }
+
+        }
+
+    }
+
+    private synchronized void onRendered(boolean success) {
+
+        final String phrase = mRendering;
+        mRendering = null;
+
+        if (phrase == null || mShutdown) {
+
+            return;
+
+        }
+
+        final File partial = partialFor(phrase);
+        final File file = fileFor(phrase);
+
+        if (!success || partial.length() == 0) {
+
+            Log.e(TAG, "Rendering failed for " + phrase);
+            deleteQuietly(partial);
+
+            return;
+
+        }
+
+        if (mBytes + partial.length() > mMaxBytes) {
+
+            /* Over budget, this and every lower priority phrase stay live. */
+            deleteQuietly(partial);
+            mPending.clear();
+
+            return;
+
+        }
+
+        if (!partial.renameTo(file)) {
+
+            deleteQuietly(partial);
+
+            return;
+
+        }
+
+        mBytes += file.length();
+        register(phrase, file);
+
+    }
+
+    private void register(String phrase, File file) {
+
+        mSpeaker.addSpeech(phrase, file.getAbsolutePath());
+        mCached.add(phrase);
+
+    }
+
+    private void deleteOtherVoices(File root, String voice) {
+
+        final File[] voices = root.listFiles();
+
+        if (voices == null) {
+
+            return;
+
+        }
+
+        for (File directory : voices) {
+
+            if (directory.getName().equals(voice)) {
+
+                continue;
+
+            }
+
+            final File[] files = directory.listFiles();
+
+            if (files != null) {
+
+                for (File file : files) {
+
+                    deleteQuietly(file);
+
+                }
+
+            }
+
+            deleteQuietly(directory);
+
+        }
+
+    }
+
+    /* Remove files of phrases that are no longer used, and leftovers of interrupted renders. */
+    private void deleteUnwanted(File directory, Set<String> wanted) {
+
+        final File[] files = directory.listFiles();
+
+        if (files == null) {
+
+            return;
+
+        }
+
+        for (File file : files) {
+
+            final String name = file.getName();
+
+            if (name.endsWith(PARTIAL) || !wanted.contains(name)) {
+
+                deleteQuietly(file);
+
+            }
+
+        }
+
+    }
+
+    private File fileFor(String phrase) {
+
+        return new File(mDirectory, fileName(phrase));
+
+    }
+
+    private File partialFor(String phrase) {
+
+        return new File(mDirectory, fileName(phrase) + PARTIAL);
+
+    }
+
+    /* Phrases are arbitrary text, so files are named after a digest of it. */
+    private static String fileName(String phrase) {
+
+        try {
+
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(phrase.getBytes("UTF-8"));
+            final StringBuilder builder = new StringBuilder(digest.length * 2 + EXTENSION.length());
+
+            for (byte b : digest) {
+
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+            }
+
+            return builder.append(EXTENSION).toString();
+
+        } catch (NoSuchAlgorithmException exception) {
+
+            throw new IllegalStateException(exception);
+
+        } catch (UnsupportedEncodingException exception) {
+
+            throw new IllegalStateException(exception);
+
+        }
+
+    }
+
+    private static void deleteQuietly(File file) {
+
+        if (file.exists() && !file.delete()) {
+
+            Log.w(TAG, "Unable to delete " + file);
+
+        }
+
+    }
+
+    /* Callbacks of the synthesizer only, live speech has its own listener. */
+    private final UtteranceProgressListener mProgressListener = new UtteranceProgressListener() {
+
+        @Override
+        public void onStart(String utteranceId) {
+
+            /* Do nothing. */
+
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+
+            onRendered(true);
+            renderNext();
+
+        }
+
+        @Override
+        public void onError(String utteranceId) {
+
+            onRendered(false);
+            renderNext();
+
+        }
+
+    };
+
+}
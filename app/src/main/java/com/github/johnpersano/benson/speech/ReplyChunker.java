@@ -0,0 +1,136 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.speech;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits long replies into chunks that are spoken one after another. The text to speech engine
+ * synthesizes a whole utterance before playing it, so a short first chunk is heard almost at
+ * once while the rest is synthesized behind it.
+ * <p/>
+ * Chunks end at a sentence end if one fits, otherwise at a clause break, a space, or, for a
+ * single very long word, the length limit. Replies that fit the first chunk are not split, so
+ * pre-rendered phrases are still spoken whole.
+ */
+public class ReplyChunker {
+
+    private ReplyChunker() {
+
+        /* Static methods only. */
+
+    }
+
+    /**
+     * Split a reply.
+     *
+     * @param text        - Reply to split
+     * @param firstLength - Maximum length of the first chunk. Kept short, it decides time to first audio
+     * @param maxLength   - Maximum length of every other chunk
+     * @return The chunks in speaking order. Never empty.
+     */
+    public static List<String> split(String text, int firstLength, int maxLength) {
+
+        final List<String> chunks = new ArrayList<String>();
+
+        int start = skipWhitespace(text, 0);
+        int limit = firstLength;
+
+        while (text.length() - start > limit) {
+
+            final int end = findBreak(text, start, start + limit);
+
+            chunks.add(text.substring(start, end).trim());
+
+            start = skipWhitespace(text, end);
+            limit = maxLength;
+
+        }
+
+        if (start < text.length() || chunks.isEmpty()) {
+
+            chunks.add(text.substring(start).trim());
+
+        }
+
+        return chunks;
+
+    }
+
+    /* Returns the end of the best chunk in [start, limit]. The character at limit is the first one that does not fit. */
+    private static int findBreak(String text, int start, int limit) {
+
+        int clause = -1;
+        int space = -1;
+
+        for (int i = limit; i > start; i--) {
+
+            final char previous = text.charAt(i - 1);
+
+            if (!Character.isWhitespace(text.charAt(i))) {
+
+                continue;
+
+            }
+
+            /* Sentence ends win outright. Wolfram separates facts with new lines, they count as sentences. */
+            if (previous == '.' || previous == '!' || previous == '?' || text.charAt(i) == '\n') {
+
+                return i;
+
+            }
+
+            if (clause < 0 && (previous == ',' || previous == ';' || previous == ':' || previous == '|')) {
+
+                clause = i;
+
+            }
+
+            if (space < 0) {
+
+                space = i;
+
+            }
+
+        }
+
+        if (clause > 0) {
+
+            return clause;
+
+        }
+
+        return (space > 0) ? space : limit;
+
+    }
+
+    private static int skipWhitespace(String text, int index) {
+
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+
+            index++;
+
+        }
+
+        return index;
+
+    }
+
+}
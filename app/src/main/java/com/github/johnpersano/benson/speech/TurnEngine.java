@@ -0,0 +1,278 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.speech;
+
+import com.github.johnpersano.benson.lexicon.Query;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Drives a conversation turn from text to speech progress. Every utterance gets a numeric id
+ * and typed metadata, and when the speech queue drains the engine decides which recognizer
+ * runs next from the metadata of the last utterance, never from its text.
+ * <p/>
+ * States: IDLE until anything is said, SPEAKING while utterances are queued, then KEYWORD
+ * (listening for Benson's name), ANSWER (listening for the answer to a question) or HOLD
+ * (waiting for a slow answer, only Benson's name is listened for). Progress callbacks with unknown ids, such as utterances dropped
+ * by a flush, are ignored.
+ * <p/>
+ * Not thread safe. Use from one thread and post text to speech callbacks to it. Has no Android
+ * dependencies, so it can be driven directly by tests.
+ */
+public class TurnEngine {
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_SPEAKING = 1;
+    public static final int STATE_KEYWORD = 2;
+    public static final int STATE_ANSWER = 3;
+    public static final int STATE_HOLD = 4;
+
+    /* Speaks text. Implemented over TextToSpeech. */
+    public interface Speaker {
+
+        /**
+         * @param text        - Text to speak
+         * @param utteranceId - Id progress is reported with
+         * @param flush       - True to drop everything queued before, false to queue after it
+         */
+        public void speak(String text, String utteranceId, boolean flush);
+
+    }
+
+    /* Acts on state changes, typically by starting and stopping recognizers. */
+    public interface Callbacks {
+
+        /* An utterance started playing. Recognizers should be off while Benson talks. */
+        public void onUtteranceStarted(Utterance utterance);
+
+        /* Listen for Benson's name. */
+        public void onListenForKeyword();
+
+        /* Listen for the answer to a question. */
+        public void onListenForAnswer(Utterance question);
+
+        /* Waiting for a slow answer. Only listen for Benson's name, which starts a new turn. */
+        public void onHold();
+
+    }
+
+    private final Speaker mSpeaker;
+    private final Callbacks mCallbacks;
+
+    /* Utterances given to the speaker and not finished yet, oldest first. */
+    private final ArrayDeque<Utterance> mQueued = new ArrayDeque<Utterance>();
+
+    private int mNextId = 1;
+    private int mState = STATE_IDLE;
+
+    /* The question being answered while in STATE_ANSWER. */
+    private Utterance mQuestion;
+
+    public TurnEngine(Speaker speaker, Callbacks callbacks) {
+
+        this.mSpeaker = speaker;
+        this.mCallbacks = callbacks;
+
+    }
+
+    /**
+     * Say something.
+     *
+     * @param text     Text to speak.
+     * @param type     One of the {@link Utterance} TYPE constants.
+     * @param followUp Lexicon for the answer, only used by questions. Null for the default lexicon.
+     * @param flush    True to cut off anything still being said, false to say it afterwards.
+     * @return The utterance.
+     */
+    public Utterance say(String text, int type, List<? extends Query> followUp, boolean flush) {
+
+        return enqueue(text, type, followUp, flush, false);
+
+    }
+
+    /**
+     * Say a reply split into chunks, see {@link ReplyChunker}. Chunks are queued back to back and
+     * the turn only ends after the last one, which carries the type and follow up lexicon.
+     *
+     * @param chunks   Text to speak, in order. Must not be empty.
+     * @param type     One of the {@link Utterance} TYPE constants.
+     * @param followUp Lexicon for the answer, only used by questions. Null for the default lexicon.
+     * @param flush    True to cut off anything still being said, false to say it afterwards.
+     * @return The utterance of the last chunk.
+     */
+    public Utterance say(List<String> chunks, int type, List<? extends Query> followUp, boolean flush) {
+
+        final int last = chunks.size() - 1;
+
+        for (int i = 0; i < last; i++) {
+
+            enqueue(chunks.get(i), Utterance.TYPE_STATEMENT, null, flush && i == 0, i > 0);
+
+        }
+
+        return enqueue(chunks.get(last), type, followUp, flush && last == 0, last > 0);
+
+    }
+
+    private Utterance enqueue(String text, int type, List<? extends Query> followUp, boolean flush, boolean continuation) {
+
+        final Utterance utterance = new Utterance(mNextId++, text, type, followUp, continuation);
+
+        /* Flushed utterances may never report back, forget them now. */
+        if (flush) {
+
+            mQueued.clear();
+
+        }
+
+        mQueued.add(utterance);
+        mQuestion = null;
+        mState = STATE_SPEAKING;
+
+        mSpeaker.speak(text, utterance.getUtteranceId(), flush);
+
+        return utterance;
+
+    }
+
+    public void onUtteranceStart(String utteranceId) {
+
+        final Utterance utterance = find(utteranceId);
+
+        if (utterance != null) {
+
+            mCallbacks.onUtteranceStarted(utterance);
+
+        }
+
+    }
+
+    public void onUtteranceDone(String utteranceId) {
+
+        finish(utteranceId, false);
+
+    }
+
+    /* A failed utterance ends the turn, Benson goes back to listening for his name. */
+    public void onUtteranceError(String utteranceId) {
+
+        finish(utteranceId, true);
+
+    }
+
+    public int getState() {
+
+        return mState;
+
+    }
+
+    /**
+     * Returns the lexicon the current answer should be matched against.
+     *
+     * @return The follow up lexicon of the question being answered, or null for the default lexicon.
+     */
+    public List<? extends Query> getFollowUp() {
+
+        return (mState == STATE_ANSWER && mQuestion != null) ? mQuestion.getFollowUp() : null;
+
+    }
+
+    /* Number of utterances queued and not finished. */
+    public int getQueuedCount() {
+
+        return mQueued.size();
+
+    }
+
+    private void finish(String utteranceId, boolean error) {
+
+        final Utterance utterance = find(utteranceId);
+
+        if (utterance == null) {
+
+            return;
+
+        }
+
+        /* Utterances finish in order, anything queued before this one is not coming back. */
+        while (mQueued.peek() != utterance) {
+
+            mQueued.poll();
+
+        }
+
+        mQueued.poll();
+
+        /* More is queued, the turn continues with it. */
+        if (!mQueued.isEmpty()) {
+
+            return;
+
+        }
+
+        if (error || utterance.getType() == Utterance.TYPE_STATEMENT) {
+
+            mState = STATE_KEYWORD;
+            mCallbacks.onListenForKeyword();
+
+        } else if (utterance.expectsAnswer()) {
+
+            mState = STATE_ANSWER;
+            mQuestion = utterance;
+            mCallbacks.onListenForAnswer(utterance);
+
+        } else {
+
+            mState = STATE_HOLD;
+            mCallbacks.onHold();
+
+        }
+
+    }
+
+    /* Ids are numbers, so the lookup parses instead of comparing strings. Few utterances are ever queued. */
+    private Utterance find(String utteranceId) {
+
+        final int id;
+
+        try {
+
+            id = Integer.parseInt(utteranceId);
+
+        } catch (NumberFormatException exception) {
+
+            return null;
+
+        }
+
+        for (Utterance utterance : mQueued) {
+
+            if (utterance.getId() == id) {
+
+                return utterance;
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.speech;
+
+import com.github.johnpersano.benson.lexicon.Query;
+
+import java.util.List;
+
+/**
+ * Something Benson says, with what should happen once it has been said. Created by
+ * {@link TurnEngine}, which hands out the ids.
+ */
+public class Utterance {
+
+    /* Benson says something and goes back to listening for his name. */
+    public static final int TYPE_STATEMENT = 0;
+
+    /* Benson expects an answer and listens for speech right away. */
+    public static final int TYPE_QUESTION = 1;
+
+    /* Benson asked the user to hold and only listens for his name until the answer is spoken. */
+    public static final int TYPE_HOLD = 2;
+
+    private final int mId;
+    private final String mUtteranceId;
+    private final String mText;
+    private final int mType;
+    private final List<? extends Query> mFollowUp;
+    private final boolean mContinuation;
+
+    Utterance(int id, String text, int type, List<? extends Query> followUp, boolean continuation) {
+
+        this.mId = id;
+        this.mUtteranceId = Integer.toString(id);
+        this.mText = text;
+        this.mType = type;
+        this.mFollowUp = followUp;
+        this.mContinuation = continuation;
+
+    }
+
+    /* Unique and increasing for the life of the engine. */
+    public int getId() {
+
+        return mId;
+
+    }
+
+    /* The id as given to the text to speech engine. */
+    public String getUtteranceId() {
+
+        return mUtteranceId;
+
+    }
+
+    public String getText() {
+
+        return mText;
+
+    }
+
+    public int getType() {
+
+        return mType;
+
+    }
+
+    public boolean expectsAnswer() {
+
+        return mType == TYPE_QUESTION;
+
+    }
+
+    public boolean isHold() {
+
+        return mType == TYPE_HOLD;
+
+    }
+
+    /* True for every chunk of a reply but the first. Subtitles append these instead of starting over. */
+    public boolean isContinuation() {
+
+        return mContinuation;
+
+    }
+
+    /**
+     * Returns the lexicon the answer should be matched against.
+     *
+     * @return The {@link Query} items for the answer or null to use the default lexicon.
+     */
+    public List<? extends Query> getFollowUp() {
+
+        return mFollowUp;
+
+    }
+
+}
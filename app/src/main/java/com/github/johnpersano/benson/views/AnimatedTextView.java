@@ -79,4 +79,29 @@ public class AnimatedTextView extends TextView {
 
     }
 
-}
\ No newline at end of file
+    /* Continues the current animation with more text, used as a long reply is spoken chunk by chunk. */
+    public void appendText(CharSequence text) {
+
+        if (mText == null || mText.length() == 0) {
+
+            animateText(text);
+
+            return;
+
+        }
+
+        /* The animation stops once all text is shown, restart it from where it stopped. */
+        final boolean finished = mIndex > mText.length();
+
+        mText = mText + " " + text;
+
+        if (finished) {
+
+            mIndex = mText.length() - text.length();
+            mHandler.postDelayed(characterAdder, mDelay);
+
+        }
+
+    }
+
+}
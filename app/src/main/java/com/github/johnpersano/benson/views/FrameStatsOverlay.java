@@ -0,0 +1,93 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.views;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.widget.TextView;
+
+import com.github.johnpersano.benson.diagnostics.VisualizerStats;
+
+/**
+ * Debug overlay that shows {@link VisualizerStats} and refreshes twice a second while attached.
+ */
+public class FrameStatsOverlay extends TextView {
+
+    private static final long REFRESH_INTERVAL = 500;
+
+    private VisualizerStats mStats;
+
+    @SuppressWarnings("UnusedDeclaration")
+    public FrameStatsOverlay(Context context) {
+        super(context);
+
+        /* Empty constructor. */
+
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public FrameStatsOverlay(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        /* Empty constructor. */
+
+    }
+
+    public void setStats(VisualizerStats stats) {
+
+        this.mStats = stats;
+
+        removeCallbacks(mRefresher);
+        post(mRefresher);
+
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        removeCallbacks(mRefresher);
+        post(mRefresher);
+
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        removeCallbacks(mRefresher);
+
+    }
+
+    private Runnable mRefresher = new Runnable() {
+
+        @Override
+        public void run() {
+
+            if (mStats != null) {
+
+                setText(mStats.summary());
+                postDelayed(this, REFRESH_INTERVAL);
+
+            }
+
+        }
+
+    };
+
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.wolfram;
+
+import com.wolfram.alpha.WAPlainText;
+import com.wolfram.alpha.WAPod;
+import com.wolfram.alpha.WAQuery;
+import com.wolfram.alpha.WAQueryResult;
+import com.wolfram.alpha.WASubpod;
+import com.wolfram.alpha.visitor.Visitable;
+
+import java.util.Locale;
+
+/**
+ * Picks the pod that best answers a spoken question from a Wolfram Alpha result. Pods are ranked
+ * by ID, then by title, then by position. The input interpretation pod is never spoken.
+ */
+public class PodSelector {
+
+    /* Pods requested up front. Most spoken questions are answered by one of these. */
+    private static final String[] INCLUDE_POD_IDS = {"Result", "Value", "DecimalApproximation",
+            "Definition:WordData", "InstantaneousWeather:WeatherData", "BasicInformation:PeopleData"};
+
+    /* Pod IDs in order of preference, compared without the scanner suffix after the colon. */
+    private static final String[] PREFERRED_IDS = {"Result", "Value", "Definition", "DecimalApproximation",
+            "InstantaneousWeather", "Solution", "BasicInformation", "NotableFacts"};
+
+    /* Pod titles in order of preference, used when the ID is unknown. */
+    private static final String[] PREFERRED_TITLES = {"result", "value", "definition", "decimal approximation",
+            "solution", "answer"};
+
+    private static final String INPUT_POD_ID = "Input";
+
+    private final int mMaxLength;
+
+    /**
+     * @param maxLength Maximum number of characters of an answer that will be spoken.
+     */
+    public PodSelector(int maxLength) {
+
+        this.mMaxLength = maxLength;
+
+    }
+
+    /**
+     * Restrict a query to the preferred pods so the response is smaller and faster.
+     *
+     * @param query The query to restrict.
+     */
+    public void applyFilter(WAQuery query) {
+
+        for (String id : INCLUDE_POD_IDS) {
+
+            query.addIncludePodID(id);
+
+        }
+
+    }
+
+    /**
+     * Returns the plaintext of the best pod, bounded to a spoken length.
+     *
+     * @param result A successful query result.
+     * @return The answer or null if no pod held plaintext.
+     */
+    public String select(WAQueryResult result) {
+
+        final WAPod[] pods = result.getPods();
+
+        String best = null;
+        int bestRank = Integer.MAX_VALUE;
+
+        for (int position = 0; position < pods.length; position++) {
+
+            final WAPod pod = pods[position];
+
+            if (pod.isError() || INPUT_POD_ID.equals(pod.getID())) {
+
+                continue;
+
+            }
+
+            final int rank = rank(pod, position);
+
+            if (rank < bestRank) {
+
+                final String text = getPlainText(pod);
+
+                if (text != null) {
+
+                    best = text;
+                    bestRank = rank;
+
+                }
+
+            }
+
+        }
+
+        return (best != null) ? bound(best, mMaxLength) : null;
+
+    }
+
+    /* Lower is better. Known IDs beat known titles, which beat pod position. */
+    private static int rank(WAPod pod, int position) {
+
+        final String id = pod.getID();
+
+        if (id != null) {
+
+            final int colon = id.indexOf(':');
+            final String baseId = (colon < 0) ? id : id.substring(0, colon);
+
+            for (int i = 0; i < PREFERRED_IDS.length; i++) {
+
+                if (PREFERRED_IDS[i].equals(baseId)) {
+
+                    return i;
+
+                }
+
+            }
+
+        }
+
+        final String title = pod.getTitle();
+
+        if (title != null) {
+
+            final String lowerTitle = title.toLowerCase(Locale.US);
+
+            for (int i = 0; i < PREFERRED_TITLES.length; i++) {
+
+                if (lowerTitle.startsWith(PREFERRED_TITLES[i])) {
+
+                    return PREFERRED_IDS.length + i;
+
+                }
+
+            }
+
+        }
+
+        return PREFERRED_IDS.length + PREFERRED_TITLES.length + position;
+
+    }
+
+    /* Returns the first non empty plaintext in the pod. */
+    private static String getPlainText(WAPod pod) {
+
+        for (WASubpod subpod : pod.getSubpods()) {
+
+            for (Visitable content : subpod.getContents()) {
+
+                if (content instanceof WAPlainText) {
+
+                    final String text = ((WAPlainText) content).getText();
+
+                    if (text != null && text.trim().length() > 0) {
+
+                        return text;
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Make plaintext suitable for speech and cut it at a word boundary if it is too long.
+     * Table separators are spoken as short pauses and line breaks end a sentence, so table rows
+     * are read out one at a time.
+     *
+     * @param text Pod plaintext.
+     * @param maxLength Maximum number of characters.
+     * @return The bounded text.
+     */
+    public static String bound(String text, int maxLength) {
+
+        final String spoken = text.trim()
+                .replace(" | ", ", ")
+                .replaceAll("\\s*\n\\s*", ". ")
+                .replaceAll("([.!?,;:])\\. ", "$1 ")
+                .replaceAll("\\s+", " ");
+
+        if (spoken.length() <= maxLength) {
+
+            return spoken;
+
+        }
+
+        final int space = spoken.lastIndexOf(' ', maxLength);
+
+        return spoken.substring(0, (space > 0) ? space : maxLength);
+
+    }
+
+}
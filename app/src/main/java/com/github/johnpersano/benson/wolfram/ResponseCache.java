@@ -0,0 +1,427 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.wolfram;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded LRU cache of Wolfram answers with a time to live. The cache is written through
+ * to a file so answers survive restarts. Disk writes happen outside the cache lock so lookups
+ * never wait on I/O. All methods are thread safe.
+ */
+public class ResponseCache {
+
+    private static final String TAG = "ResponseCache";
+
+    /* Bump this if the file layout changes. Files with another version are ignored. */
+    private static final int FILE_VERSION = 2;
+
+    /* Symbols that change what a question asks, such as 2+2 against 22. */
+    private static final String SYMBOLS = "+-*/^=%<>";
+
+    private final File mFile;
+    private final int mMaxEntries;
+    private final long mTimeToLive;
+
+    private final LinkedHashMap<String, Entry> mEntries;
+
+    /* Serializes file writes. Never held together with the cache lock. */
+    private final Object mFileLock = new Object();
+
+    /* Version of the newest snapshot, guarded by the cache lock. */
+    private long mVersion;
+
+    /* Version of the snapshot on disk, guarded by the file lock. */
+    private long mSavedVersion;
+
+    /**
+     * Create a cache and load any entries previously written to the file.
+     *
+     * @param file File the cache is persisted to, or null to keep the cache in memory only.
+     * @param maxEntries Maximum number of answers kept. The least recently used answer is evicted first.
+     * @param timeToLive Time in milliseconds an answer stays valid.
+     */
+    public ResponseCache(File file, int maxEntries, long timeToLive) {
+
+        this.mFile = file;
+        this.mMaxEntries = maxEntries;
+        this.mTimeToLive = timeToLive;
+
+        /* Access ordered so iteration order is least recently used first. */
+        this.mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+
+                return size() > mMaxEntries;
+
+            }
+
+        };
+
+        load();
+
+    }
+
+    /**
+     * Normalize a hypothesis into a cache key. Case, sentence punctuation and repeated whitespace
+     * do not change the meaning of a spoken question. Arithmetic symbols and decimal points do, so
+     * they are kept, without the spacing around them.
+     *
+     * @param hypothesis The full string containing the user's speech.
+     * @return The cache key.
+     */
+    public static String normalize(String hypothesis) {
+
+        final StringBuilder builder = new StringBuilder(hypothesis.length());
+
+        boolean space = false;
+        boolean symbol = false;
+
+        for (int i = 0; i < hypothesis.length(); i++) {
+
+            final char character = hypothesis.charAt(i);
+
+            if (Character.isLetterOrDigit(character)) {
+
+                if (space && !symbol && builder.length() > 0) {
+
+                    builder.append(' ');
+
+                }
+
+                builder.append(Character.toLowerCase(character));
+                space = false;
+                symbol = false;
+
+            } else if (SYMBOLS.indexOf(character) >= 0 || isDecimalPoint(hypothesis, i)) {
+
+                builder.append(character);
+                space = false;
+                symbol = true;
+
+            } else if (Character.isWhitespace(character)) {
+
+                space = true;
+
+            }
+
+        }
+
+        return builder.toString();
+
+    }
+
+    /* A '.' or ',' between two digits, as in 3.14 or 1,000. */
+    private static boolean isDecimalPoint(String hypothesis, int index) {
+
+        final char character = hypothesis.charAt(index);
+
+        return (character == '.' || character == ',') && index > 0 && index < hypothesis.length() - 1
+                && Character.isDigit(hypothesis.charAt(index - 1)) && Character.isDigit(hypothesis.charAt(index + 1));
+
+    }
+
+    /**
+     * Returns a cached answer if it exists and has not expired.
+     *
+     * @param key Normalized key, see {@link #normalize(String)}.
+     * @return The answer or null.
+     */
+    public synchronized String get(String key) {
+
+        final Entry entry = mEntries.get(key);
+
+        if (entry == null) {
+
+            return null;
+
+        }
+
+        if (System.currentTimeMillis() - entry.mTime > mTimeToLive) {
+
+            mEntries.remove(key);
+
+            return null;
+
+        }
+
+        return entry.mValue;
+
+    }
+
+    /**
+     * Cache an answer and write the cache to disk.
+     *
+     * @param key Normalized key, see {@link #normalize(String)}.
+     * @param value The answer.
+     */
+    public void put(String key, String value) {
+
+        final Snapshot snapshot;
+
+        synchronized (this) {
+
+            mEntries.put(key, new Entry(value, System.currentTimeMillis()));
+
+            snapshot = snapshot();
+
+        }
+
+        save(snapshot);
+
+    }
+
+    /* Remove all answers from memory and disk. */
+    public void clear() {
+
+        final Snapshot snapshot;
+
+        synchronized (this) {
+
+            mEntries.clear();
+
+            snapshot = snapshot();
+
+        }
+
+        save(snapshot);
+
+    }
+
+    public synchronized int size() {
+
+        return mEntries.size();
+
+    }
+
+    private void load() {
+
+        if (mFile == null || !mFile.exists()) {
+
+            return;
+
+        }
+
+        DataInputStream input = null;
+
+        try {
+
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+
+            if (input.readInt() != FILE_VERSION) {
+
+                return;
+
+            }
+
+            final long now = System.currentTimeMillis();
+
+            for (int i = input.readInt(); i > 0; i--) {
+
+                final String key = input.readUTF();
+                final long time = input.readLong();
+                final String value = input.readUTF();
+
+                /* Entries are written least recently used first, so insertion restores the order. */
+                if (now - time <= mTimeToLive) {
+
+                    mEntries.put(key, new Entry(value, time));
+
+                }
+
+            }
+
+        } catch (IOException exception) {
+
+            Log.w(TAG, "Discarding unreadable cache file", exception);
+
+            mEntries.clear();
+
+        } finally {
+
+            close(input);
+
+        }
+
+    }
+
+    /* Copy the entries so the file can be written without holding the cache lock. */
+    private Snapshot snapshot() {
+
+        if (mFile == null) {
+
+            return null;
+
+        }
+
+        final int size = mEntries.size();
+
+        final Snapshot snapshot = new Snapshot(++mVersion, size);
+
+        int index = 0;
+
+        for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+
+            snapshot.mKeys[index] = entry.getKey();
+            snapshot.mEntries[index] = entry.getValue();
+
+            index++;
+
+        }
+
+        return snapshot;
+
+    }
+
+    /**
+     * Write a snapshot to a temporary file and rename it over the cache file, so a crash
+     * mid-write never leaves a truncated cache behind. Snapshots older than the one already on
+     * disk are skipped, since a newer put finished writing first.
+     */
+    private void save(Snapshot snapshot) {
+
+        if (snapshot == null) {
+
+            return;
+
+        }
+
+        synchronized (mFileLock) {
+
+            if (snapshot.mVersion <= mSavedVersion) {
+
+                return;
+
+            }
+
+            final File temporary = new File(mFile.getPath() + ".tmp");
+
+            FileOutputStream stream = null;
+            DataOutputStream output = null;
+
+            try {
+
+                stream = new FileOutputStream(temporary);
+
+                output = new DataOutputStream(new BufferedOutputStream(stream));
+                output.writeInt(FILE_VERSION);
+                output.writeInt(snapshot.mKeys.length);
+
+                for (int i = 0; i < snapshot.mKeys.length; i++) {
+
+                    output.writeUTF(snapshot.mKeys[i]);
+                    output.writeLong(snapshot.mEntries[i].mTime);
+                    output.writeUTF(snapshot.mEntries[i].mValue);
+
+                }
+
+                output.flush();
+                stream.getFD().sync();
+
+            } catch (IOException exception) {
+
+                Log.w(TAG, "Unable to write cache file", exception);
+
+                close(output != null ? output : stream);
+                temporary.delete();
+
+                return;
+
+            }
+
+            close(output);
+
+            if (!temporary.renameTo(mFile)) {
+
+                Log.w(TAG, "Unable to replace cache file");
+
+                temporary.delete();
+
+                return;
+
+            }
+
+            mSavedVersion = snapshot.mVersion;
+
+        }
+
+    }
+
+    private static void close(Closeable closeable) {
+
+        if (closeable != null) {
+
+            try {
+
+                closeable.close();
+
+            } catch (IOException exception) {
+
+                /* Do nothing. */
+
+            }
+
+        }
+
+    }
+
+    private static class Snapshot {
+
+        private final long mVersion;
+        private final String[] mKeys;
+        private final Entry[] mEntries;
+
+        private Snapshot(long version, int size) {
+
+            this.mVersion = version;
+            this.mKeys = new String[size];
+            this.mEntries = new Entry[size];
+
+        }
+
+    }
+
+    private static class Entry {
+
+        private final String mValue;
+        private final long mTime;
+
+        private Entry(String value, long time) {
+
+            this.mValue = value;
+            this.mTime = time;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,294 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.wolfram;
+
+import android.util.Log;
+
+import com.wolfram.alpha.WAEngine;
+import com.wolfram.alpha.WAException;
+import com.wolfram.alpha.WAQuery;
+import com.wolfram.alpha.WAQueryResult;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Blocking Wolfram Alpha client. One engine is reused for every lookup, answers are served from a
+ * {@link ResponseCache} when possible and identical lookups running at the same time share a
+ * single request. Call {@link #query(String)} from a background thread.
+ */
+public class WolframClient {
+
+    private static final String TAG = "WolframClient";
+
+    private static final String FORMAT = "plaintext";
+
+    /* Longest answer Benson will read out, about a minute of speech. Replies are spoken in chunks. */
+    private static final int MAX_SPOKEN_LENGTH = 1000;
+
+    private final Fetcher mFetcher;
+    private final ResponseCache mCache;
+
+    /* Lookups currently on the network, keyed by normalized hypothesis. */
+    private final ConcurrentHashMap<String, FutureTask<Result>> mInFlight =
+            new ConcurrentHashMap<String, FutureTask<Result>>();
+
+    /**
+     * Create a client for the public Wolfram Alpha API.
+     *
+     * @param appId Wolfram Alpha app key.
+     * @param cache Cache for answers.
+     */
+    public WolframClient(String appId, ResponseCache cache) {
+
+        this(new EngineFetcher(new WAEngine(), appId), cache);
+
+    }
+
+    /**
+     * Create a client for another Wolfram Alpha compatible server, such as a local stub.
+     *
+     * @param appId Wolfram Alpha app key.
+     * @param server Server host, see {@link com.wolfram.alpha.WAEngine#WAEngine(String, String)}.
+     * @param cache Cache for answers.
+     */
+    public WolframClient(String appId, String server, ResponseCache cache) {
+
+        this(new EngineFetcher(new WAEngine(appId, server), appId), cache);
+
+    }
+
+    /* Tests look up answers without a server. */
+    WolframClient(Fetcher fetcher, ResponseCache cache) {
+
+        this.mFetcher = fetcher;
+        this.mCache = cache;
+
+    }
+
+    /**
+     * Look up a hypothesis. Blocks until the answer is cached, shared from an identical
+     * lookup or fetched from the server.
+     *
+     * @param hypothesis The full string containing the user's speech.
+     * @return {@link com.github.johnpersano.benson.wolfram.WolframClient.Result}
+     */
+    public Result query(final String hypothesis) {
+
+        final String key = ResponseCache.normalize(hypothesis);
+
+        final String cached = mCache.get(key);
+
+        if (cached != null) {
+
+            return new Result(Result.SUCCESS, cached);
+
+        }
+
+        final FutureTask<Result> task = new FutureTask<Result>(new Callable<Result>() {
+
+            @Override
+            public Result call() {
+
+                final Result result = mFetcher.fetch(hypothesis);
+
+                if (result.getStatus() == Result.SUCCESS) {
+
+                    mCache.put(key, result.getText());
+
+                }
+
+                return result;
+
+            }
+
+        });
+
+        /* Only the first caller runs the lookup, everyone else waits on its result. */
+        final FutureTask<Result> running = mInFlight.putIfAbsent(key, task);
+
+        try {
+
+            if (running != null) {
+
+                return running.get();
+
+            }
+
+            task.run();
+
+            return task.get();
+
+        } catch (InterruptedException exception) {
+
+            Thread.currentThread().interrupt();
+
+            return new Result(Result.NOT_FOUND, null);
+
+        } catch (ExecutionException exception) {
+
+            Log.e(TAG, exception.toString());
+
+            return new Result(Result.NOT_FOUND, null);
+
+        } finally {
+
+            if (running == null) {
+
+                mInFlight.remove(key, task);
+
+            }
+
+        }
+
+    }
+
+    /* Performs the network lookup for a hypothesis that is not cached. */
+    interface Fetcher {
+
+        public Result fetch(String hypothesis);
+
+    }
+
+    /* Fetches answers from a Wolfram Alpha server. One engine is reused for every lookup. */
+    private static class EngineFetcher implements Fetcher {
+
+        private final WAEngine mEngine;
+        private final PodSelector mPodSelector = new PodSelector(MAX_SPOKEN_LENGTH);
+
+        private EngineFetcher(WAEngine engine, String appId) {
+
+            this.mEngine = engine;
+            this.mEngine.setAppID(appId);
+            this.mEngine.addFormat(FORMAT);
+
+        }
+
+        @Override
+        public Result fetch(String hypothesis) {
+
+            try {
+
+                /* Ask for the answer pods only. Most questions are answered by one of them and the response is much smaller. */
+                final WAQueryResult filteredResult = mEngine.performQuery(createQuery(hypothesis, true));
+
+                if (filteredResult.isError()) {
+
+                    return new Result(Result.ERROR, filteredResult.getErrorMessage());
+
+                }
+
+                final String answer = filteredResult.isSuccess() ? mPodSelector.select(filteredResult) : null;
+
+                if (answer != null) {
+
+                    return new Result(Result.SUCCESS, answer);
+
+                }
+
+                /* None of the answer pods applied. Fetch every pod and rank them all. */
+                final WAQueryResult queryResult = mEngine.performQuery(createQuery(hypothesis, false));
+
+                if (queryResult.isError()) {
+
+                    return new Result(Result.ERROR, queryResult.getErrorMessage());
+
+                } else if (!queryResult.isSuccess()) {
+
+                    return new Result(Result.BAD_QUERY, null);
+
+                }
+
+                final String fallbackAnswer = mPodSelector.select(queryResult);
+
+                if (fallbackAnswer != null) {
+
+                    return new Result(Result.SUCCESS, fallbackAnswer);
+
+                }
+
+            } catch (WAException exception) {
+
+                Log.e(TAG, exception.toString());
+
+            }
+
+            return new Result(Result.NOT_FOUND, null);
+
+        }
+
+        private WAQuery createQuery(String hypothesis, boolean filtered) {
+
+            final WAQuery query = mEngine.createQuery();
+            query.setInput(hypothesis);
+
+            if (filtered) {
+
+                mPodSelector.applyFilter(query);
+
+            }
+
+            return query;
+
+        }
+
+    }
+
+    /* Outcome of a lookup. Only successful answers carry text that should be spoken as is. */
+    public static class Result {
+
+        /* Wolfram Alpha found an answer. */
+        public static final int SUCCESS = 0;
+
+        /* Wolfram Alpha did not understand the query. */
+        public static final int BAD_QUERY = 1;
+
+        /* Wolfram Alpha returned an error, the text holds the error message. */
+        public static final int ERROR = 2;
+
+        /* The lookup failed or the result held no answer. */
+        public static final int NOT_FOUND = 3;
+
+        private final int mStatus;
+        private final String mText;
+
+        public Result(int status, String text) {
+
+            this.mStatus = status;
+            this.mText = text;
+
+        }
+
+        public int getStatus() {
+
+            return this.mStatus;
+
+        }
+
+        public String getText() {
+
+            return this.mText;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.wolfram;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.github.johnpersano.benson.diagnostics.LatencyHistogram;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs Wolfram lookups on a small dedicated thread pool. Only the latest turn is ever answered:
+ * submitting a new lookup or calling {@link #cancel()} drops the result of the previous one, and a
+ * lookup that misses its deadline reports {@link Callback#onDeadline(boolean)} once and is then ignored.
+ * <p/>
+ * The lookup starts before anything is said. {@link Callback#onHold()} is only called if the answer
+ * has not arrived by the hold delay, so fast answers are spoken without a hold phrase.
+ * Callbacks run on the main thread. All public methods must be called from the main thread.
+ */
+public class WolframDispatcher {
+
+    private static final String TAG = "WolframDispatcher";
+
+    /* Lookups are network bound. Two threads let a new turn start while a stale one finishes. */
+    private static final int THREADS = 2;
+
+    /* Waiting lookups beyond this are stale turns, the oldest is discarded. */
+    private static final int QUEUE_CAPACITY = 4;
+
+    /* Custom listener for lookup results. */
+    public interface Callback {
+
+        /* The answer is slow. Tell the user to hold on. */
+        public void onHold();
+
+        /* The answer arrived. Held is true if onHold() was called, so the answer should queue behind it. */
+        public void onAnswer(WolframClient.Result result, boolean held);
+
+        /* No answer arrived in time. Held is true if onHold() was called. */
+        public void onDeadline(boolean held);
+
+    }
+
+    private final WolframClient mClient;
+
+    private final ThreadPoolExecutor mExecutor;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /* Time from submission to answer, in milliseconds. Includes cache hits and queueing. */
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+
+    private Ticket mCurrentTicket;
+
+    public WolframDispatcher(WolframClient client) {
+
+        this.mClient = client;
+
+        this.mExecutor = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+
+                return new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+
+                    }
+
+                }, TAG);
+
+            }
+
+        }, new ThreadPoolExecutor.DiscardOldestPolicy());
+
+    }
+
+    /**
+     * Start a lookup for a new turn. Any lookup still running for a previous turn is cancelled.
+     *
+     * @param hypothesis The full string containing the user's speech.
+     * @param holdDelay Time in milliseconds to wait for the answer before {@link Callback#onHold()} is called.
+     * @param deadline Time in milliseconds to wait before {@link Callback#onDeadline(boolean)} is called.
+     * @param callback Receives either the answer or the deadline, never both.
+     */
+    public void submit(String hypothesis, long holdDelay, long deadline, Callback callback) {
+
+        cancel();
+
+        final Ticket ticket = new Ticket(hypothesis, callback);
+
+        mCurrentTicket = ticket;
+        ticket.mFuture = mExecutor.submit(ticket);
+
+        mHandler.postDelayed(ticket.mHold, holdDelay);
+        mHandler.postDelayed(ticket.mDeadline, deadline);
+
+    }
+
+    /* Cancel the current lookup. Its result, if one still arrives, is dropped. */
+    public void cancel() {
+
+        if (mCurrentTicket != null) {
+
+            mCurrentTicket.cancel();
+            mCurrentTicket = null;
+
+        }
+
+    }
+
+    /**
+     * Returns the number of lookups running or waiting to run.
+     *
+     * @return The queue depth.
+     */
+    public int getQueueDepth() {
+
+        return mExecutor.getActiveCount() + mExecutor.getQueue().size();
+
+    }
+
+    /**
+     * Returns the lookup latency histogram, in milliseconds.
+     *
+     * @return {@link com.github.johnpersano.benson.diagnostics.LatencyHistogram}
+     */
+    public LatencyHistogram getLatency() {
+
+        return mLatency;
+
+    }
+
+    /* Cancel everything and stop the worker threads. */
+    public void shutdown() {
+
+        cancel();
+
+        mExecutor.shutdownNow();
+
+    }
+
+    /* One lookup for one turn. The worker runs it, the main thread settles it exactly once. */
+    private class Ticket implements Runnable {
+
+        private final String mHypothesis;
+        private final Callback mCallback;
+        private final long mSubmitTime = SystemClock.elapsedRealtime();
+
+        private volatile boolean mCancelled;
+
+        /* Only touched on the main thread. */
+        private boolean mSettled;
+        private boolean mHeld;
+
+        private Future<?> mFuture;
+
+        private final Runnable mHold = new Runnable() {
+
+            @Override
+            public void run() {
+
+                if (!mSettled && !mCancelled) {
+
+                    mHeld = true;
+
+                    mCallback.onHold();
+
+                }
+
+            }
+
+        };
+
+        private final Runnable mDeadline = new Runnable() {
+
+            @Override
+            public void run() {
+
+                if (!mSettled && !mCancelled) {
+
+                    mSettled = true;
+
+                    Log.w(TAG, "Lookup missed its deadline, queue depth " + getQueueDepth());
+
+                    mCallback.onDeadline(mHeld);
+
+                }
+
+            }
+
+        };
+
+        private Ticket(String hypothesis, Callback callback) {
+
+            this.mHypothesis = hypothesis;
+            this.mCallback = callback;
+
+        }
+
+        @Override
+        public void run() {
+
+            /* Turn was abandoned while queued, do not spend a round trip on it. */
+            if (mCancelled) {
+
+                return;
+
+            }
+
+            /* The client caches the answer even if this turn is dropped, so a late answer still helps next time. */
+            final WolframClient.Result result = mClient.query(mHypothesis);
+
+            mLatency.record(SystemClock.elapsedRealtime() - mSubmitTime);
+
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+
+                Log.d(TAG, "Lookup latency " + mLatency.summary("ms") + ", queue depth " + getQueueDepth());
+
+            }
+
+            mHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    if (!mSettled && !mCancelled) {
+
+                        mSettled = true;
+                        mHandler.removeCallbacks(mHold);
+                        mHandler.removeCallbacks(mDeadline);
+
+                        mCallback.onAnswer(result, mHeld);
+
+                    }
+
+                }
+
+            });
+
+        }
+
+        private void cancel() {
+
+            mCancelled = true;
+
+            mHandler.removeCallbacks(mHold);
+            mHandler.removeCallbacks(mDeadline);
+
+            if (mFuture != null) {
+
+                mFuture.cancel(false);
+                mExecutor.purge();
+
+            }
+
+        }
+
+    }
+
+}
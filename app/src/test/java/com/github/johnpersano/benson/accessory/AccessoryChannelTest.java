@@ -0,0 +1,694 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives an {@link AccessoryChannel} against an in memory accessory that decodes every transfer
+ * and may hold writes back or acknowledge them like the sketch does.
+ */
+public class AccessoryChannelTest {
+
+    /* Long enough that no heartbeat or retry interferes unless a test asks for one. */
+    private static final long NEVER = 60 * 1000;
+
+    /* Short reply timeout, long enough for a test to act before it passes. */
+    private static final long ACK_TIMEOUT = 200;
+
+    private static final int LED = AccessoryProtocol.DEVICE_LED;
+    private static final int FAN = 2;
+    private static final int PUMP = 3;
+
+    private final FakeAccessory mAccessory = new FakeAccessory();
+
+    private AccessoryChannel mChannel;
+
+    @After
+    public void tearDown() {
+
+        mAccessory.open();
+
+        if (mChannel != null) {
+
+            mChannel.shutdown();
+
+        }
+
+    }
+
+    @Test
+    public void waitingCommandsForOneKeyCoalesce() throws Exception {
+
+        mChannel = createChannel(16, NEVER, NEVER, NEVER);
+
+        /* The first command occupies the accessory while the rest wait. */
+        mAccessory.hold();
+        mChannel.submit(set(FAN, 1));
+        mAccessory.awaitWriteStarted();
+
+        mChannel.submit(set(LED, 1));
+        mChannel.submit(set(LED, 1));
+        mChannel.submit(set(LED, 0));
+
+        assertEquals(1, mChannel.getQueueDepth());
+        assertEquals(2, mChannel.getCoalescedCount());
+
+        mAccessory.open();
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getWrittenCount() == 2;
+
+            }
+
+        });
+
+        final List<int[]> frames = mAccessory.getFrames();
+
+        assertEquals(2, frames.size());
+        assertFrame(frames.get(0), FAN, AccessoryProtocol.OP_SET, 1);
+        assertFrame(frames.get(1), LED, AccessoryProtocol.OP_SET, 0);
+
+        assertEquals(0, mChannel.getDroppedCount());
+
+    }
+
+    @Test
+    public void burstIsPackedIntoOneTransfer() throws Exception {
+
+        mChannel = createChannel(16, NEVER, NEVER, NEVER);
+
+        mAccessory.hold();
+        mChannel.submit(set(PUMP, 1));
+        mAccessory.awaitWriteStarted();
+
+        mChannel.submit(set(LED, 1));
+        mChannel.submit(set(FAN, 1));
+
+        mAccessory.open();
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getWrittenCount() == 3;
+
+            }
+
+        });
+
+        assertEquals(3, mAccessory.getFrames().size());
+        assertEquals(2, mAccessory.getTransferCount());
+
+    }
+
+    @Test
+    public void oldestCommandIsDroppedWhenFull() throws Exception {
+
+        mChannel = createChannel(2, NEVER, NEVER, NEVER);
+
+        mAccessory.hold();
+        mChannel.submit(set(PUMP, 1));
+        mAccessory.awaitWriteStarted();
+
+        mChannel.submit(set(LED, 1));
+        mChannel.submit(set(FAN, 1));
+        mChannel.submit(set(PUMP, 0));
+
+        assertEquals(2, mChannel.getQueueDepth());
+        assertEquals(1, mChannel.getDroppedCount());
+
+        mAccessory.open();
+
+        awaitFrames(3);
+        Thread.sleep(50);
+
+        final List<int[]> frames = mAccessory.getFrames();
+
+        assertEquals(3, frames.size());
+        assertFrame(frames.get(1), FAN, AccessoryProtocol.OP_SET, 1);
+        assertFrame(frames.get(2), PUMP, AccessoryProtocol.OP_SET, 0);
+
+    }
+
+    @Test
+    public void stalledWriteTimesOutAndWaitingCommandsExpire() throws Exception {
+
+        final long writeTimeout = 100;
+
+        mChannel = createChannel(16, writeTimeout, NEVER, NEVER);
+
+        mAccessory.hold();
+        mChannel.submit(set(LED, 1));
+        mAccessory.awaitWriteStarted();
+
+        /* Waits behind the stalled write until its own deadline has passed. */
+        mChannel.submit(set(FAN, 1));
+
+        Thread.sleep(writeTimeout * 3);
+
+        assertEquals(1, mChannel.getTimedOutCount());
+
+        mAccessory.open();
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getDroppedCount() == 1;
+
+            }
+
+        });
+
+        assertEquals(1, mAccessory.getFrames().size());
+        assertEquals(0, mChannel.getWrittenCount());
+
+        /* The channel keeps going once the stalled write returns. */
+        mChannel.submit(set(FAN, 0));
+
+        awaitFrames(2);
+
+        assertFrame(mAccessory.getFrames().get(1), FAN, AccessoryProtocol.OP_SET, 0);
+
+    }
+
+    @Test
+    public void failedWriteIsCounted() throws Exception {
+
+        mChannel = createChannel(16, NEVER, NEVER, NEVER);
+
+        mAccessory.mFailWrites = true;
+
+        mChannel.submit(set(LED, 1));
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getFailedCount() == 1;
+
+            }
+
+        });
+
+        assertEquals(0, mChannel.getWrittenCount());
+
+    }
+
+    @Test
+    public void nothingIsAcceptedAfterShutdown() {
+
+        mChannel = createChannel(16, NEVER, NEVER, NEVER);
+
+        mChannel.shutdown();
+
+        assertTrue(!mChannel.submit(set(LED, 1)));
+        assertEquals(0, mChannel.getQueueDepth());
+
+    }
+
+    @Test
+    public void acknowledgedCommandIsConfirmedAndNotRetried() throws Exception {
+
+        mChannel = createChannel(16, NEVER, 30, NEVER);
+
+        mAccessory.mAcknowledgeFrom = 0;
+
+        mChannel.submit(set(LED, 1));
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getAcknowledgedCount() == 1;
+
+            }
+
+        });
+
+        Thread.sleep(150);
+
+        assertEquals(1, mAccessory.getFrames().size());
+        assertEquals(0, mChannel.getRetriedCount());
+        assertEquals(1, mChannel.getDeviceStates().getConfirmed(LED));
+        assertEquals(1, mChannel.getConnectCount());
+        assertTrue(mChannel.isLinkUp());
+
+    }
+
+    /* Losing a command closes the link, so the next write reopens the accessory. */
+    @Test
+    public void unansweredCommandIsRetriedThenLost() throws Exception {
+
+        mChannel = createChannel(16, NEVER, 30, NEVER);
+
+        mChannel.submit(set(LED, 1));
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getLostCount() == 1 && mAccessory.getCloseCount() > 0;
+
+            }
+
+        });
+
+        final List<int[]> frames = mAccessory.getFrames();
+
+        assertEquals(AccessoryChannel.MAX_ATTEMPTS, frames.size());
+
+        for (int i = 0; i < frames.size(); i++) {
+
+            assertFrame(frames.get(i), LED, AccessoryProtocol.OP_SET, 1);
+
+            /* Every transmission has its own sequence number, so a late reply cannot be mistaken. */
+            if (i > 0) {
+
+                assertTrue(frames.get(i)[2] != frames.get(i - 1)[2]);
+
+            }
+
+        }
+
+        assertEquals(AccessoryChannel.MAX_ATTEMPTS - 1, mChannel.getRetriedCount());
+        assertEquals(DeviceStateTable.UNKNOWN, mChannel.getDeviceStates().getConfirmed(LED));
+
+    }
+
+    @Test
+    public void retryStopsOnceAcknowledged() throws Exception {
+
+        mChannel = createChannel(16, NEVER, 30, NEVER);
+
+        /* The first transmission goes unanswered. */
+        mAccessory.mAcknowledgeFrom = 1;
+
+        mChannel.submit(set(LED, 1));
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getAcknowledgedCount() == 1;
+
+            }
+
+        });
+
+        Thread.sleep(150);
+
+        assertEquals(2, mAccessory.getFrames().size());
+        assertEquals(1, mChannel.getRetriedCount());
+        assertEquals(0, mChannel.getLostCount());
+        assertEquals(1, mChannel.getDeviceStates().getConfirmed(LED));
+
+    }
+
+    @Test
+    public void newerCommandSupersedesRetry() throws Exception {
+
+        mChannel = createChannel(16, NEVER, ACK_TIMEOUT, NEVER);
+
+        mChannel.submit(set(LED, 1));
+
+        awaitFrames(1);
+
+        /* Answered, while the unanswered on would otherwise be sent again. */
+        mAccessory.mAcknowledgeFrom = 1;
+        mChannel.submit(set(LED, 0));
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getAcknowledgedCount() == 1;
+
+            }
+
+        });
+
+        /* Past the point the on would have been sent again. */
+        Thread.sleep(ACK_TIMEOUT * 2);
+
+        final List<int[]> frames = mAccessory.getFrames();
+
+        assertEquals(2, frames.size());
+        assertFrame(frames.get(1), LED, AccessoryProtocol.OP_SET, 0);
+        assertEquals(0, mChannel.getRetriedCount());
+        assertEquals(0, mChannel.getDeviceStates().getConfirmed(LED));
+
+    }
+
+    @Test
+    public void heartbeatIsSentWhileIdle() throws Exception {
+
+        mChannel = createChannel(16, NEVER, 30, 50);
+
+        mAccessory.mAcknowledgeFrom = 0;
+
+        awaitFrames(3);
+
+        for (int[] frame : mAccessory.getFrames()) {
+
+            assertEquals(AccessoryProtocol.DEVICE_SYSTEM, frame[0]);
+            assertEquals(AccessoryProtocol.OP_PING, frame[1]);
+
+        }
+
+        assertTrue(mChannel.isLinkUp());
+        assertEquals(0, mChannel.getRetriedCount());
+
+    }
+
+    @Test
+    public void devicesAreRestoredWhenTheLinkReturns() throws Exception {
+
+        mChannel = createChannel(16, NEVER, 30, 100);
+
+        mChannel.submit(set(LED, 1));
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getLostCount() == 1;
+
+            }
+
+        });
+
+        /* The sketch comes back and answers the next heartbeat. */
+        final int answeredFrom = mAccessory.getFrames().size();
+
+        mAccessory.mAcknowledgeFrom = answeredFrom;
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getDeviceStates().getConfirmed(LED) == 1;
+
+            }
+
+        });
+
+        final List<int[]> frames = mAccessory.getFrames();
+
+        assertEquals(AccessoryProtocol.OP_PING, frames.get(answeredFrom)[1]);
+        assertFrame(frames.get(answeredFrom + 1), LED, AccessoryProtocol.OP_SET, 1);
+        assertTrue(mChannel.isLinkUp());
+        assertEquals(1, mChannel.getConnectCount());
+
+    }
+
+    @Test(timeout = 10000)
+    public void fullByteValueIsConfirmedAndRestored() throws Exception {
+
+        mChannel = createChannel(16, NEVER, NEVER, 100);
+
+        mAccessory.mAcknowledgeFrom = 0;
+
+        mChannel.submit(set(LED, 0xFF));
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getDeviceStates().isConfirmed(LED);
+
+            }
+
+        });
+
+        assertEquals(0xFF, mChannel.getDeviceStates().getConfirmed(LED));
+
+        /* The accessory comes back reset, the next heartbeat reply restores the value. */
+        mChannel.onLinkLost();
+
+        final int restoredFrom = mAccessory.getFrames().size();
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mChannel.getDeviceStates().isConfirmed(LED);
+
+            }
+
+        });
+
+        final List<int[]> frames = mAccessory.getFrames();
+
+        assertEquals(AccessoryProtocol.OP_PING, frames.get(restoredFrom)[1]);
+        assertFrame(frames.get(restoredFrom + 1), LED, AccessoryProtocol.OP_SET, 0xFF);
+
+    }
+
+    private AccessoryChannel createChannel(int capacity, long writeTimeout, long ackTimeout, long heartbeatInterval) {
+
+        final AccessoryChannel channel = new AccessoryChannel(mAccessory, capacity, writeTimeout, ackTimeout, heartbeatInterval);
+
+        mAccessory.mChannel = channel;
+
+        return channel;
+
+    }
+
+    private static Command set(int device, int value) {
+
+        return new Command(device, AccessoryProtocol.OP_SET, (byte) value);
+
+    }
+
+    private static void assertFrame(int[] frame, int device, int opcode, int value) {
+
+        assertEquals(device, frame[0]);
+        assertEquals(opcode, frame[1]);
+        assertEquals(value, frame[3]);
+
+    }
+
+    private void awaitFrames(final int count) throws InterruptedException {
+
+        awaitCondition(new Condition() {
+
+            @Override
+            boolean isMet() {
+
+                return mAccessory.getFrames().size() >= count;
+
+            }
+
+        });
+
+    }
+
+    private static void awaitCondition(Condition condition) throws InterruptedException {
+
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (!condition.isMet()) {
+
+            assertTrue("Timed out", System.nanoTime() < end);
+
+            Thread.sleep(5);
+
+        }
+
+    }
+
+    private static abstract class Condition {
+
+        abstract boolean isMet();
+
+    }
+
+    /**
+     * Decodes every transfer into frames of device, opcode, sequence and payload. Writes can be
+     * held back to simulate a busy accessory, and the sketch's acknowledgements can be simulated.
+     */
+    private static class FakeAccessory implements AccessoryStream, AccessoryProtocol.FrameListener {
+
+        private final AccessoryProtocol.Decoder mDecoder = new AccessoryProtocol.Decoder();
+
+        private final List<int[]> mFrames = new ArrayList<int[]>();
+
+        private volatile AccessoryChannel mChannel;
+
+        private volatile CountDownLatch mGate = new CountDownLatch(0);
+        private volatile CountDownLatch mWriteStarted = new CountDownLatch(1);
+
+        private volatile boolean mFailWrites;
+
+        /* Frames from this index on are acknowledged. Integer.MAX_VALUE acknowledges nothing. */
+        private volatile int mAcknowledgeFrom = Integer.MAX_VALUE;
+
+        private int mTransfers;
+        private int mCloses;
+
+        /* Hold the next writes until open() is called. */
+        void hold() {
+
+            mWriteStarted = new CountDownLatch(1);
+            mGate = new CountDownLatch(1);
+
+        }
+
+        void open() {
+
+            mGate.countDown();
+
+        }
+
+        void awaitWriteStarted() throws InterruptedException {
+
+            assertTrue("No write started", mWriteStarted.await(5, TimeUnit.SECONDS));
+
+        }
+
+        synchronized List<int[]> getFrames() {
+
+            return new ArrayList<int[]>(mFrames);
+
+        }
+
+        synchronized int getTransferCount() {
+
+            return mTransfers;
+
+        }
+
+        synchronized int getCloseCount() {
+
+            return mCloses;
+
+        }
+
+        @Override
+        public void write(byte[] buffer, int length) throws IOException {
+
+            mWriteStarted.countDown();
+
+            try {
+
+                mGate.await();
+
+            } catch (InterruptedException exception) {
+
+                throw new IOException("Interrupted");
+
+            }
+
+            if (mFailWrites) {
+
+                throw new IOException("Accessory gone");
+
+            }
+
+            final int first;
+            final int end;
+
+            synchronized (this) {
+
+                mTransfers++;
+
+                first = mFrames.size();
+
+                mDecoder.feed(buffer, 0, length, this);
+
+                end = mFrames.size();
+
+            }
+
+            /* Replies arrive on another thread in the app, the channel must accept them during the write. */
+            for (int i = Math.max(first, mAcknowledgeFrom); i < end; i++) {
+
+                final int[] frame = mFrames.get(i);
+
+                final byte[] payload = {(byte) ((frame.length > 3) ? frame[3] : 0)};
+
+                mChannel.onFrame(frame[0], AccessoryProtocol.OP_ACK, frame[2], payload, 1);
+
+            }
+
+        }
+
+        @Override
+        public int read(byte[] buffer) throws IOException {
+
+            throw new IOException("Not used");
+
+        }
+
+        @Override
+        public synchronized void close() {
+
+            mCloses++;
+
+        }
+
+        @Override
+        public void onFrame(int device, int opcode, int sequence, byte[] payload, int length) {
+
+            final int[] frame = new int[3 + length];
+
+            frame[0] = device;
+            frame[1] = opcode;
+            frame[2] = sequence;
+
+            for (int i = 0; i < length; i++) {
+
+                frame[3 + i] = payload[i] & 0xFF;
+
+            }
+
+            mFrames.add(frame);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,428 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips through {@link AccessoryProtocol} and checks the decoder against the test vectors
+ * in sketches/protocol_vectors.txt, which the sketch's parser is checked against as well.
+ */
+public class AccessoryProtocolTest {
+
+    /* Unit tests run from the module directory, look in the repository root as well. */
+    private static final String[] VECTOR_PATHS = {"../sketches/protocol_vectors.txt", "sketches/protocol_vectors.txt"};
+
+    @Test
+    public void encodeThenDecode() {
+
+        final Command command = new Command(AccessoryProtocol.DEVICE_LED, AccessoryProtocol.OP_SET, (byte) 1);
+
+        final byte[] buffer = new byte[AccessoryProtocol.frameLength(command)];
+
+        assertEquals(buffer.length, AccessoryProtocol.encode(command, 7, buffer, 0));
+        assertArrayEquals(bytes("A5 01 01 07 01 01 70"), buffer);
+
+        final Recorder recorder = new Recorder();
+
+        new AccessoryProtocol.Decoder().feed(buffer, 0, buffer.length, recorder);
+
+        assertEquals(1, recorder.mFrames.size());
+        assertArrayEquals(bytes("01 01 07 01"), recorder.mFrames.get(0));
+
+    }
+
+    @Test
+    public void maxLengthPayloadRoundTrips() {
+
+        final byte[] payload = new byte[AccessoryProtocol.MAX_PAYLOAD];
+
+        for (int i = 0; i < payload.length; i++) {
+
+            payload[i] = (byte) (AccessoryProtocol.SYNC + i);
+
+        }
+
+        final Command command = new Command(2, AccessoryProtocol.OP_SET, payload);
+
+        final byte[] buffer = new byte[AccessoryProtocol.frameLength(command)];
+
+        assertEquals(AccessoryProtocol.OVERHEAD + AccessoryProtocol.MAX_PAYLOAD, buffer.length);
+
+        AccessoryProtocol.encode(command, 0x1FF, buffer, 0);
+
+        final Recorder recorder = new Recorder();
+        final AccessoryProtocol.Decoder decoder = new AccessoryProtocol.Decoder();
+
+        decoder.feed(buffer, 0, buffer.length, recorder);
+
+        assertEquals(1, recorder.mFrames.size());
+        assertEquals(0, decoder.getCorruptCount());
+
+        final byte[] frame = recorder.mFrames.get(0);
+
+        assertEquals(2, frame[0]);
+        assertEquals(AccessoryProtocol.OP_SET, frame[1]);
+        assertEquals((byte) 0xFF, frame[2]);
+        assertEquals(3 + AccessoryProtocol.MAX_PAYLOAD, frame.length);
+
+        for (int i = 0; i < payload.length; i++) {
+
+            assertEquals(payload[i], frame[3 + i]);
+
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void payloadOverMaxLengthIsRejected() {
+
+        new Command(AccessoryProtocol.DEVICE_LED, AccessoryProtocol.OP_SET, new byte[AccessoryProtocol.MAX_PAYLOAD + 1]);
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deviceOverOneByteIsRejected() {
+
+        new Command(256, AccessoryProtocol.OP_SET, (byte) 1);
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setWithoutValueIsRejected() {
+
+        new Command(AccessoryProtocol.DEVICE_LED, AccessoryProtocol.OP_SET);
+
+    }
+
+    @Test
+    public void payloadIsCopied() {
+
+        final byte[] payload = {1, 2};
+
+        final Command command = new Command(AccessoryProtocol.DEVICE_LED, AccessoryProtocol.OP_SET, payload);
+
+        payload[0] = 9;
+        command.getPayload()[1] = 9;
+
+        assertArrayEquals(new byte[]{1, 2}, command.getPayload());
+
+    }
+
+    @Test
+    public void fullTransferOfFramesRoundTrips() {
+
+        final byte[] transfer = new byte[AccessoryProtocol.MAX_TRANSFER];
+
+        int end = 0;
+        int sequence = 0;
+
+        final Command command = new Command(AccessoryProtocol.DEVICE_LED, AccessoryProtocol.OP_SET, (byte) 0);
+
+        while (end + AccessoryProtocol.frameLength(command) <= transfer.length) {
+
+            end = AccessoryProtocol.encode(command, sequence++, transfer, end);
+
+        }
+
+        final Recorder recorder = new Recorder();
+
+        new AccessoryProtocol.Decoder().feed(transfer, 0, end, recorder);
+
+        assertEquals(sequence, recorder.mFrames.size());
+
+        for (int i = 0; i < sequence; i++) {
+
+            assertEquals((byte) i, recorder.mFrames.get(i)[2]);
+
+        }
+
+    }
+
+    @Test
+    public void vectorsDecodeInOneFeed() throws IOException {
+
+        for (Vector vector : loadVectors()) {
+
+            final Recorder recorder = new Recorder();
+            final AccessoryProtocol.Decoder decoder = new AccessoryProtocol.Decoder();
+
+            decoder.feed(vector.mInput, 0, vector.mInput.length, recorder);
+
+            vector.check(recorder, decoder);
+
+        }
+
+    }
+
+    @Test
+    public void vectorsDecodeSplitAtEveryByte() throws IOException {
+
+        for (Vector vector : loadVectors()) {
+
+            for (int split = 0; split <= vector.mInput.length; split++) {
+
+                final Recorder recorder = new Recorder();
+                final AccessoryProtocol.Decoder decoder = new AccessoryProtocol.Decoder();
+
+                decoder.feed(vector.mInput, 0, split, recorder);
+                decoder.feed(vector.mInput, split, vector.mInput.length - split, recorder);
+
+                vector.check(recorder, decoder);
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void vectorsDecodeOneByteAtATime() throws IOException {
+
+        for (Vector vector : loadVectors()) {
+
+            final Recorder recorder = new Recorder();
+            final AccessoryProtocol.Decoder decoder = new AccessoryProtocol.Decoder();
+
+            for (int i = 0; i < vector.mInput.length; i++) {
+
+                decoder.feed(vector.mInput, i, 1, recorder);
+
+            }
+
+            vector.check(recorder, decoder);
+
+        }
+
+    }
+
+    @Test
+    public void vectorsDecodeBackToBackInPartialTransfers() throws IOException {
+
+        final List<Vector> vectors = loadVectors();
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final List<byte[]> expected = new ArrayList<byte[]>();
+
+        long corrupt = 0;
+
+        for (Vector vector : vectors) {
+
+            stream.write(vector.mInput, 0, vector.mInput.length);
+            expected.addAll(vector.mFrames);
+            corrupt += vector.mCorrupt;
+
+        }
+
+        final byte[] input = stream.toByteArray();
+
+        /* Transfer sizes that do not line up with frames. */
+        for (int chunk = 1; chunk <= 13; chunk += 3) {
+
+            final Recorder recorder = new Recorder();
+            final AccessoryProtocol.Decoder decoder = new AccessoryProtocol.Decoder();
+
+            for (int offset = 0; offset < input.length; offset += chunk) {
+
+                decoder.feed(input, offset, Math.min(chunk, input.length - offset), recorder);
+
+            }
+
+            assertEquals(expected.size(), recorder.mFrames.size());
+            assertEquals(corrupt, decoder.getCorruptCount());
+
+            for (int i = 0; i < expected.size(); i++) {
+
+                assertArrayEquals(expected.get(i), recorder.mFrames.get(i));
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void everySingleBitErrorIsCaught() {
+
+        final byte[] frame = bytes("A5 01 01 07 01 01 70");
+
+        /* Flips in the SYNC byte lose the frame without counting it, any other flip must fail the CRC or length. */
+        for (int bit = 8; bit < frame.length * 8; bit++) {
+
+            final byte[] corrupted = frame.clone();
+            corrupted[bit / 8] ^= 1 << (bit % 8);
+
+            final Recorder recorder = new Recorder();
+            final AccessoryProtocol.Decoder decoder = new AccessoryProtocol.Decoder();
+
+            decoder.feed(corrupted, 0, corrupted.length, recorder);
+
+            assertTrue("bit " + bit, recorder.mFrames.isEmpty());
+
+        }
+
+    }
+
+    private static List<Vector> loadVectors() throws IOException {
+
+        File file = null;
+
+        for (String path : VECTOR_PATHS) {
+
+            if (new File(path).isFile()) {
+
+                file = new File(path);
+
+            }
+
+        }
+
+        assertTrue("protocol_vectors.txt not found", file != null);
+
+        final List<Vector> vectors = new ArrayList<Vector>();
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+
+        try {
+
+            Vector vector = null;
+            ByteArrayOutputStream input = null;
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+
+                if (line.startsWith("vector ")) {
+
+                    vector = new Vector(line.substring(7).trim());
+                    input = new ByteArrayOutputStream();
+
+                } else if (line.startsWith("in ")) {
+
+                    final byte[] bytes = bytes(line.substring(3));
+                    input.write(bytes, 0, bytes.length);
+
+                } else if (line.startsWith("frame ")) {
+
+                    vector.mFrames.add(bytes(line.substring(6)));
+
+                } else if (line.startsWith("corrupt ")) {
+
+                    vector.mCorrupt = Integer.parseInt(line.substring(8).trim());
+
+                } else if (line.startsWith("end")) {
+
+                    vector.mInput = input.toByteArray();
+                    vectors.add(vector);
+
+                }
+
+            }
+
+        } finally {
+
+            reader.close();
+
+        }
+
+        assertFalse(vectors.isEmpty());
+
+        return vectors;
+
+    }
+
+    private static byte[] bytes(String hex) {
+
+        final String[] tokens = hex.trim().split("\\s+");
+        final byte[] bytes = new byte[tokens.length];
+
+        for (int i = 0; i < tokens.length; i++) {
+
+            bytes[i] = (byte) Integer.parseInt(tokens[i], 16);
+
+        }
+
+        return bytes;
+
+    }
+
+    /* Keeps every decoded frame as device, opcode, sequence and payload. */
+    private static class Recorder implements AccessoryProtocol.FrameListener {
+
+        private final List<byte[]> mFrames = new ArrayList<byte[]>();
+
+        @Override
+        public void onFrame(int device, int opcode, int sequence, byte[] payload, int length) {
+
+            final byte[] frame = new byte[3 + length];
+
+            frame[0] = (byte) device;
+            frame[1] = (byte) opcode;
+            frame[2] = (byte) sequence;
+
+            System.arraycopy(payload, 0, frame, 3, length);
+
+            mFrames.add(frame);
+
+        }
+
+    }
+
+    private static class Vector {
+
+        private final String mName;
+        private final List<byte[]> mFrames = new ArrayList<byte[]>();
+
+        private byte[] mInput;
+        private long mCorrupt;
+
+        private Vector(String name) {
+
+            this.mName = name;
+
+        }
+
+        private void check(Recorder recorder, AccessoryProtocol.Decoder decoder) {
+
+            assertEquals(mName, mFrames.size(), recorder.mFrames.size());
+            assertEquals(mName, mCorrupt, decoder.getCorruptCount());
+
+            for (int i = 0; i < mFrames.size(); i++) {
+
+                assertArrayEquals(mName, mFrames.get(i), recorder.mFrames.get(i));
+
+            }
+
+        }
+
+    }
+
+}
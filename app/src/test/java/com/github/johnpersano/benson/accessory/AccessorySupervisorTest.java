@@ -0,0 +1,197 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives an {@link AccessorySupervisor} against an accessory whose reads, like the USB accessory,
+ * are not woken by closing the stream or interrupting the reader.
+ */
+public class AccessorySupervisorTest {
+
+    private static final long NEVER = 60 * 1000;
+
+    private static final int SENSOR = AccessoryProtocol.SENSOR_TEMPERATURE;
+
+    private final StuckAccessory mAccessory = new StuckAccessory();
+    private final AccessoryChannel mChannel = new AccessoryChannel(mAccessory, 8, NEVER, NEVER, NEVER);
+
+    private AccessorySupervisor mSupervisor;
+
+    @After
+    public void tearDown() throws InterruptedException {
+
+        if (mSupervisor != null) {
+
+            mSupervisor.shutdown();
+
+        }
+
+        /* Wake every reader that may still be blocked so no thread outlives the test. */
+        for (int i = 0; i < 4; i++) {
+
+            mAccessory.mReads.offer(new byte[0]);
+
+        }
+
+    }
+
+    @Test(timeout = 10000)
+    public void detachAndAttachDoNotWaitForABlockedReader() throws InterruptedException {
+
+        mSupervisor = new AccessorySupervisor(mAccessory, mChannel);
+
+        mAccessory.awaitReads(1);
+
+        final long start = System.nanoTime();
+
+        mSupervisor.onAccessoryDetached();
+        mSupervisor.onAccessoryAttached();
+        mSupervisor.shutdown();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+
+    }
+
+    @Test(timeout = 10000)
+    public void abandonedReaderNeverFeedsTheChannel() throws InterruptedException {
+
+        mSupervisor = new AccessorySupervisor(mAccessory, mChannel);
+
+        mAccessory.awaitReads(1);
+
+        /* The first reader stays blocked past the join timeout and is abandoned for a new one. */
+        mSupervisor.onAccessoryAttached();
+
+        mAccessory.awaitReads(2);
+
+        /* Whichever reader takes this sample, only the new one may feed it. */
+        mAccessory.mReads.put(sample(111));
+        mAccessory.mReads.put(sample(222));
+
+        final Telemetry.Aggregate aggregate = new Telemetry.Aggregate();
+
+        while (mChannel.getTelemetry().getLatest(SENSOR, NEVER) == Telemetry.NO_SAMPLE) {
+
+            Thread.sleep(10);
+
+        }
+
+        /* Give a wrongly fed second sample time to show up. */
+        Thread.sleep(100);
+
+        assertTrue(mChannel.getTelemetry().aggregate(SENSOR, NEVER, aggregate));
+        assertEquals(1, aggregate.getCount());
+
+    }
+
+    private static byte[] sample(int value) {
+
+        final Command command = new Command(SENSOR, AccessoryProtocol.OP_SAMPLE, (byte) (value >> 8), (byte) value);
+
+        final byte[] frame = new byte[AccessoryProtocol.frameLength(command)];
+
+        AccessoryProtocol.encode(command, 0, frame, 0);
+
+        return frame;
+
+    }
+
+    private static class StuckAccessory implements AccessoryStream {
+
+        private final BlockingQueue<byte[]> mReads = new ArrayBlockingQueue<byte[]>(16);
+
+        private int mReadCount;
+
+        @Override
+        public void write(byte[] buffer, int length) {
+
+            /* Accept and ignore pings. */
+
+        }
+
+        @Override
+        public int read(byte[] buffer) throws IOException {
+
+            synchronized (this) {
+
+                mReadCount++;
+                notifyAll();
+
+            }
+
+            byte[] bytes = null;
+
+            /* Ignores interrupts, only data wakes it. */
+            while (bytes == null) {
+
+                try {
+
+                    bytes = mReads.take();
+
+                } catch (InterruptedException exception) {
+
+                    /* Keep blocking. */
+
+                }
+
+            }
+
+            if (bytes.length == 0) {
+
+                throw new IOException("Test finished");
+
+            }
+
+            System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+
+            return bytes.length;
+
+        }
+
+        @Override
+        public void close() {
+
+            /* Does not wake a blocked read. */
+
+        }
+
+        private synchronized void awaitReads(int count) throws InterruptedException {
+
+            while (mReadCount < count) {
+
+                wait();
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.accessory;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TelemetryTest {
+
+    private static final int SENSOR = AccessoryProtocol.SENSOR_TEMPERATURE;
+    private static final int OTHER_SENSOR = SENSOR + 1;
+
+    private final FakeClock mClock = new FakeClock();
+    private final Telemetry mTelemetry = new Telemetry(mClock);
+    private final Telemetry.Aggregate mAggregate = new Telemetry.Aggregate();
+
+    @Test
+    public void sensorThatNeverReportedHasNoSample() {
+
+        assertEquals(Telemetry.NO_SAMPLE, mTelemetry.getLatest(SENSOR, Long.MAX_VALUE));
+        assertFalse(mTelemetry.aggregate(SENSOR, 1000, mAggregate));
+        assertEquals(0, mAggregate.getCount());
+
+    }
+
+    @Test
+    public void latestSampleIsReturnedWhileRecent() {
+
+        mTelemetry.record(SENSOR, 2150);
+        mTelemetry.record(SENSOR, -320);
+
+        assertEquals(-320, mTelemetry.getLatest(SENSOR, 1000));
+
+        mClock.advance(1000);
+
+        assertEquals(-320, mTelemetry.getLatest(SENSOR, 1000));
+
+        mClock.advance(1);
+
+        assertEquals(Telemetry.NO_SAMPLE, mTelemetry.getLatest(SENSOR, 1000));
+
+    }
+
+    @Test
+    public void aggregateCoversOneSensorInTheWindow() {
+
+        mTelemetry.record(SENSOR, 100);
+
+        mClock.advance(5000);
+
+        mTelemetry.record(SENSOR, 2000);
+        mTelemetry.record(OTHER_SENSOR, 9999);
+        mTelemetry.record(SENSOR, 1000);
+        mTelemetry.record(SENSOR, 3000);
+
+        assertTrue(mTelemetry.aggregate(SENSOR, 1000, mAggregate));
+        assertEquals(3, mAggregate.getCount());
+        assertEquals(1000, mAggregate.getMin());
+        assertEquals(3000, mAggregate.getMax());
+        assertEquals(2000.0, mAggregate.getMean(), 0.0001);
+
+        /* A wider window reaches the first sample as well. */
+        assertTrue(mTelemetry.aggregate(SENSOR, 5000, mAggregate));
+        assertEquals(4, mAggregate.getCount());
+        assertEquals(100, mAggregate.getMin());
+
+    }
+
+    @Test
+    public void aggregateIsEmptyOnceTheWindowPassed() {
+
+        mTelemetry.record(SENSOR, 100);
+
+        mClock.advance(1001);
+
+        assertFalse(mTelemetry.aggregate(SENSOR, 1000, mAggregate));
+
+    }
+
+    @Test
+    public void ringWrapsAroundToTheNewestSamples() {
+
+        final int total = Telemetry.CAPACITY * 2 + 10;
+
+        for (int i = 0; i < total; i++) {
+
+            mTelemetry.record(SENSOR, i);
+
+        }
+
+        /* The oldest slot is the one the writer fills next, so one sample less than capacity is readable. */
+        assertTrue(mTelemetry.aggregate(SENSOR, 1000, mAggregate));
+        assertEquals(Telemetry.CAPACITY - 1, mAggregate.getCount());
+        assertEquals(total - Telemetry.CAPACITY + 1, mAggregate.getMin());
+        assertEquals(total - 1, mAggregate.getMax());
+        assertEquals(total - 1, mTelemetry.getLatest(SENSOR, 1000));
+
+    }
+
+    @Test(timeout = 10000)
+    public void readerNeverSeesAnotherSensorsSample() throws InterruptedException {
+
+        final AtomicBoolean stop = new AtomicBoolean();
+
+        /* Each sensor reports values in its own range, so a mixed up slot shows up in the minimum or maximum. */
+        final Thread writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                for (int i = 0; !stop.get(); i++) {
+
+                    mTelemetry.record(SENSOR, i & 0xFF);
+                    mTelemetry.record(OTHER_SENSOR, 1000 + (i & 0xFF));
+
+                }
+
+            }
+
+        });
+
+        writer.start();
+
+        try {
+
+            for (int i = 0; i < 20000; i++) {
+
+                if (mTelemetry.aggregate(SENSOR, 1000, mAggregate)) {
+
+                    assertTrue(mAggregate.getMin() >= 0);
+                    assertTrue(mAggregate.getMax() <= 0xFF);
+
+                }
+
+            }
+
+        } finally {
+
+            stop.set(true);
+            writer.join();
+
+        }
+
+    }
+
+    private static class FakeClock implements Telemetry.Clock {
+
+        private volatile long mNow = 1000;
+
+        private void advance(long milliseconds) {
+
+            mNow += milliseconds;
+
+        }
+
+        @Override
+        public long now() {
+
+            return mNow;
+
+        }
+
+    }
+
+}
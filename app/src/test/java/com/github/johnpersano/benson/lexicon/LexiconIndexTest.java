@@ -0,0 +1,171 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.lexicon;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LexiconIndexTest {
+
+    private final Query mTime = new TestQuery("what time", "the time");
+    private final Query mJoke = new TestQuery("joke", "funny");
+    private final Query mLight = new TestQuery("light", "lamp");
+
+    private final LexiconIndex mIndex = new LexiconIndex(Arrays.asList(mTime, mJoke, mLight));
+
+    private final LexiconIndex.Match mMatch = new LexiconIndex.Match();
+
+    @Test
+    public void matchKeepsLexiconOrder() {
+
+        assertSame(mTime, mIndex.match("tell me a joke about the time"));
+        assertSame(mJoke, mIndex.match("a funny light"));
+        assertNull(mIndex.match("how tall is the eiffel tower"));
+
+    }
+
+    @Test
+    public void matchFindsPhrasesAcrossFailureLinks() {
+
+        assertSame(mLight, mIndex.match("turn on the llllamp"));
+        assertSame(mTime, mIndex.match("what what time is it"));
+
+    }
+
+    @Test
+    public void topAlternativeWinsWhenAllMatch() {
+
+        assertTrue(mIndex.matchBest(new String[]{"tell me a joke", "turn on the light"},
+                new float[]{0.8f, 0.1f}, mMatch));
+
+        assertSame(mJoke, mMatch.getQuery());
+        assertEquals("tell me a joke", mMatch.getHypothesis());
+        assertEquals(0.8f, mMatch.getScore(), 0.0001f);
+
+    }
+
+    @Test
+    public void agreeingAlternativesOutvoteTheTop() {
+
+        assertTrue(mIndex.matchBest(new String[]{"tell me a choke", "turn on the light", "turn on the lamp"},
+                new float[]{0.4f, 0.3f, 0.3f}, mMatch));
+
+        assertSame(mLight, mMatch.getQuery());
+        assertEquals("turn on the light", mMatch.getHypothesis());
+        assertEquals(0.6f, mMatch.getScore(), 0.0001f);
+
+    }
+
+    @Test
+    public void equalScoresKeepLexiconOrder() {
+
+        assertTrue(mIndex.matchBest(new String[]{"turn on the light", "tell me a joke"},
+                new float[]{0.5f, 0.5f}, mMatch));
+
+        assertSame(mJoke, mMatch.getQuery());
+
+    }
+
+    @Test
+    public void confidentUnmatchedTopFallsThroughToWolfram() {
+
+        final boolean matched = mIndex.matchBest(new String[]{"how tall is the eiffel tower",
+                        "how tall is the eiffel light", "how tall is the eiffel lamp"},
+                new float[]{0.9f, 0.05f, 0.05f}, mMatch);
+
+        assertFalse(matched);
+        assertNull(mMatch.getQuery());
+        assertEquals("how tall is the eiffel tower", mMatch.getHypothesis());
+        assertEquals(0.9f, mMatch.getScore(), 0.0001f);
+
+    }
+
+    @Test
+    public void unmatchedAlternativesDoNotAddUp() {
+
+        assertTrue(mIndex.matchBest(new String[]{"turn on the light", "turn on the lied", "turn on the lie"},
+                new float[]{0.4f, 0.3f, 0.3f}, mMatch));
+
+        assertSame(mLight, mMatch.getQuery());
+
+    }
+
+    @Test
+    public void onlyTheTopAlternativeMatches() {
+
+        /* Five alternatives with the rank weights used when the recognizer gives no scores. */
+        assertTrue(mIndex.matchBest(new String[]{"what time is it", "what dime is it", "what tim is it",
+                        "what time isn't", "watt time is it"},
+                new float[]{0.5f, 0.25f, 0.125f, 0.0625f, 0.03125f}, mMatch));
+
+        assertSame(mTime, mMatch.getQuery());
+        assertEquals("what time is it", mMatch.getHypothesis());
+
+    }
+
+    @Test
+    public void strongestUnmatchedAlternativeIsReported() {
+
+        assertFalse(mIndex.matchBest(new String[]{"how tall is the eiffel tower", "how tall is the eiffel power",
+                        "turn on the light"},
+                new float[]{0.3f, 0.5f, 0.2f}, mMatch));
+
+        assertEquals("how tall is the eiffel power", mMatch.getHypothesis());
+        assertEquals(0.5f, mMatch.getScore(), 0.0001f);
+
+    }
+
+    @Test
+    public void nothingMatchedReturnsTopAlternative() {
+
+        assertFalse(mIndex.matchBest(new String[]{"how tall is the eiffel tower", "how tall is the eiffel power"},
+                new float[]{0.5f, 0.5f}, mMatch));
+
+        assertEquals("how tall is the eiffel tower", mMatch.getHypothesis());
+
+    }
+
+    private static class TestQuery extends Query {
+
+        private final List<String> mInputs;
+
+        private TestQuery(String... inputs) {
+
+            this.mInputs = Arrays.asList(inputs);
+
+        }
+
+        @Override
+        public List<String> getInputs() {
+
+            return mInputs;
+
+        }
+
+    }
+
+}
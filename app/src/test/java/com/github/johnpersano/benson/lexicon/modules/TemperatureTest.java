@@ -0,0 +1,56 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.lexicon.modules;
+
+import com.github.johnpersano.benson.lexicon.LexiconIndex;
+import com.github.johnpersano.benson.lexicon.Query;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TemperatureTest {
+
+    private final Query mTemperature = new Temperature();
+
+    private final LexiconIndex mIndex = new LexiconIndex(Collections.singletonList(mTemperature));
+
+    @Test
+    public void questionsAboutTheRoomMatch() {
+
+        assertSame(mTemperature, mIndex.match("what is the temperature in here"));
+        assertSame(mTemperature, mIndex.match("how cold is it in here"));
+        assertSame(mTemperature, mIndex.match("is it warm in here"));
+        assertSame(mTemperature, mIndex.match("what is the room temperature"));
+
+    }
+
+    @Test
+    public void weatherElsewhereGoesToWolfram() {
+
+        assertNull(mIndex.match("how cold is it in chicago"));
+        assertNull(mIndex.match("what is the temperature in paris"));
+        assertNull(mIndex.match("how hot is the sun"));
+
+    }
+
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.speech;
+
+import com.github.johnpersano.benson.lexicon.Query;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TurnEngineTest {
+
+    private static final List<Query> FOLLOW_UP = Collections.singletonList(new Query());
+
+    private final Recorder mRecorder = new Recorder();
+
+    private final TurnEngine mEngine = new TurnEngine(mRecorder, mRecorder);
+
+    @Test
+    public void startsIdle() {
+
+        assertEquals(TurnEngine.STATE_IDLE, mEngine.getState());
+        assertEquals(0, mEngine.getQueuedCount());
+
+    }
+
+    @Test
+    public void statementEndsListeningForKeyword() {
+
+        final Utterance utterance = mEngine.say("Good evening", Utterance.TYPE_STATEMENT, null, true);
+
+        assertEquals(TurnEngine.STATE_SPEAKING, mEngine.getState());
+        assertEquals(Arrays.asList("speak Good evening flush"), mRecorder.mEvents);
+
+        mEngine.onUtteranceStart(utterance.getUtteranceId());
+        mEngine.onUtteranceDone(utterance.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_KEYWORD, mEngine.getState());
+        assertEquals(Arrays.asList("speak Good evening flush", "started Good evening", "keyword"), mRecorder.mEvents);
+        assertEquals(0, mEngine.getQueuedCount());
+
+    }
+
+    @Test
+    public void questionEndsListeningForAnswer() {
+
+        final Utterance question = mEngine.say("Sir?", Utterance.TYPE_QUESTION, FOLLOW_UP, true);
+
+        assertNull(mEngine.getFollowUp());
+
+        mEngine.onUtteranceDone(question.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_ANSWER, mEngine.getState());
+        assertSame(question, mRecorder.mQuestion);
+        assertSame(FOLLOW_UP, mEngine.getFollowUp());
+
+    }
+
+    @Test
+    public void holdEndsWaiting() {
+
+        final Utterance hold = mEngine.say("One moment", Utterance.TYPE_HOLD, null, true);
+
+        assertTrue(hold.isHold());
+
+        mEngine.onUtteranceDone(hold.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_HOLD, mEngine.getState());
+        assertEquals("hold", mRecorder.last());
+
+    }
+
+    @Test
+    public void lastQueuedUtteranceDecidesTheTurn() {
+
+        final Utterance statement = mEngine.say("Good evening", Utterance.TYPE_STATEMENT, null, true);
+        final Utterance question = mEngine.say("Anything else?", Utterance.TYPE_QUESTION, null, false);
+
+        assertEquals(2, mEngine.getQueuedCount());
+
+        mEngine.onUtteranceDone(statement.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_SPEAKING, mEngine.getState());
+        assertEquals(1, mEngine.getQueuedCount());
+
+        mEngine.onUtteranceDone(question.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_ANSWER, mEngine.getState());
+        assertSame(question, mRecorder.mQuestion);
+
+    }
+
+    @Test
+    public void flushForgetsEverythingQueued() {
+
+        final Utterance first = mEngine.say("First", Utterance.TYPE_QUESTION, null, true);
+        final Utterance second = mEngine.say("Second", Utterance.TYPE_QUESTION, null, false);
+        final Utterance third = mEngine.say("Third", Utterance.TYPE_STATEMENT, null, true);
+
+        assertEquals(1, mEngine.getQueuedCount());
+        assertEquals("speak Third flush", mRecorder.last());
+
+        /* Flushed utterances may still report back, they must not end the turn. */
+        mEngine.onUtteranceStart(first.getUtteranceId());
+        mEngine.onUtteranceDone(first.getUtteranceId());
+        mEngine.onUtteranceError(second.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_SPEAKING, mEngine.getState());
+        assertEquals("speak Third flush", mRecorder.last());
+
+        mEngine.onUtteranceDone(third.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_KEYWORD, mEngine.getState());
+
+    }
+
+    @Test
+    public void errorEndsListeningForKeyword() {
+
+        final Utterance question = mEngine.say("Sir?", Utterance.TYPE_QUESTION, FOLLOW_UP, true);
+
+        mEngine.onUtteranceError(question.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_KEYWORD, mEngine.getState());
+        assertNull(mEngine.getFollowUp());
+
+    }
+
+    @Test
+    public void laterUtteranceFinishingSkipsEarlierOnes() {
+
+        mEngine.say("First", Utterance.TYPE_STATEMENT, null, true);
+
+        final Utterance second = mEngine.say("Second", Utterance.TYPE_HOLD, null, false);
+
+        mEngine.onUtteranceDone(second.getUtteranceId());
+
+        assertEquals(TurnEngine.STATE_HOLD, mEngine.getState());
+        assertEquals(0, mEngine.getQueuedCount());
+
+    }
+
+    @Test
+    public void unknownIdsAreIgnored() {
+
+        mEngine.say("Good evening", Utterance.TYPE_STATEMENT, null, true);
+
+        mEngine.onUtteranceStart("benson");
+        mEngine.onUtteranceDone("999");
+        mEngine.onUtteranceError(null);
+
+        assertEquals(TurnEngine.STATE_SPEAKING, mEngine.getState());
+        assertEquals(1, mRecorder.mEvents.size());
+
+    }
+
+    @Test
+    public void sayingAgainEndsTheAnswer() {
+
+        final Utterance question = mEngine.say("Sir?", Utterance.TYPE_QUESTION, FOLLOW_UP, true);
+
+        mEngine.onUtteranceDone(question.getUtteranceId());
+        mEngine.say("Sir?", Utterance.TYPE_QUESTION, null, true);
+
+        assertEquals(TurnEngine.STATE_SPEAKING, mEngine.getState());
+        assertNull(mEngine.getFollowUp());
+
+    }
+
+    @Test
+    public void onlyTheFirstChunkFlushes() {
+
+        mEngine.say("Before", Utterance.TYPE_STATEMENT, null, true);
+
+        final Utterance last = mEngine.say(Arrays.asList("One.", "Two.", "Three?"), Utterance.TYPE_QUESTION,
+                FOLLOW_UP, true);
+
+        assertEquals(Arrays.asList("speak Before flush", "speak One. flush", "speak Two. queue", "speak Three? queue"),
+                mRecorder.mEvents);
+        assertEquals(3, mEngine.getQueuedCount());
+
+        assertEquals("Three?", last.getText());
+        assertEquals(Utterance.TYPE_QUESTION, last.getType());
+        assertSame(FOLLOW_UP, last.getFollowUp());
+
+    }
+
+    @Test
+    public void queuedChunksNeverFlush() {
+
+        mEngine.say("Before", Utterance.TYPE_STATEMENT, null, true);
+        mEngine.say(Arrays.asList("One.", "Two."), Utterance.TYPE_STATEMENT, null, false);
+
+        assertEquals(Arrays.asList("speak Before flush", "speak One. queue", "speak Two. queue"), mRecorder.mEvents);
+        assertEquals(3, mEngine.getQueuedCount());
+
+    }
+
+    @Test
+    public void turnEndsAfterTheLastChunk() {
+
+        final List<String> ids = new ArrayList<String>();
+
+        mRecorder.mIds = ids;
+
+        final Utterance last = mEngine.say(Arrays.asList("One.", "Two.", "Three?"), Utterance.TYPE_QUESTION,
+                FOLLOW_UP, true);
+
+        assertEquals(3, ids.size());
+
+        for (int i = 0; i < 2; i++) {
+
+            mEngine.onUtteranceStart(ids.get(i));
+            mEngine.onUtteranceDone(ids.get(i));
+
+            assertEquals(TurnEngine.STATE_SPEAKING, mEngine.getState());
+
+        }
+
+        mEngine.onUtteranceStart(ids.get(2));
+        mEngine.onUtteranceDone(ids.get(2));
+
+        assertEquals(TurnEngine.STATE_ANSWER, mEngine.getState());
+        assertSame(last, mRecorder.mQuestion);
+        assertSame(FOLLOW_UP, mEngine.getFollowUp());
+
+        /* Only the first chunk replaces the subtitle, the rest are appended to it. */
+        assertEquals(Arrays.asList(false, true, true), mRecorder.mContinuations);
+
+    }
+
+    @Test
+    public void singleChunkIsAPlainUtterance() {
+
+        final Utterance utterance = mEngine.say(Collections.singletonList("Only."), Utterance.TYPE_STATEMENT, null, true);
+
+        assertFalse(utterance.isContinuation());
+        assertEquals("speak Only. flush", mRecorder.last());
+
+    }
+
+    /* Records speech and callbacks as readable events. */
+    private static class Recorder implements TurnEngine.Speaker, TurnEngine.Callbacks {
+
+        private final List<String> mEvents = new ArrayList<String>();
+        private final List<Boolean> mContinuations = new ArrayList<Boolean>();
+
+        private List<String> mIds;
+        private Utterance mQuestion;
+
+        @Override
+        public void speak(String text, String utteranceId, boolean flush) {
+
+            mEvents.add("speak " + text + (flush ? " flush" : " queue"));
+
+            if (mIds != null) {
+
+                mIds.add(utteranceId);
+
+            }
+
+        }
+
+        @Override
+        public void onUtteranceStarted(Utterance utterance) {
+
+            mEvents.add("started " + utterance.getText());
+            mContinuations.add(utterance.isContinuation());
+
+        }
+
+        @Override
+        public void onListenForKeyword() {
+
+            mEvents.add("keyword");
+
+        }
+
+        @Override
+        public void onListenForAnswer(Utterance question) {
+
+            mEvents.add("answer");
+            mQuestion = question;
+
+        }
+
+        @Override
+        public void onHold() {
+
+            mEvents.add("hold");
+
+        }
+
+        private String last() {
+
+            return mEvents.get(mEvents.size() - 1);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.wolfram;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PodSelectorTest {
+
+    @Test
+    public void lineBreaksEndASentence() {
+
+        assertEquals("population: 2.1 million. area: 105 square kilometers",
+                PodSelector.bound("population: 2.1 million\narea: 105 square kilometers", 100));
+
+    }
+
+    @Test
+    public void lineBreaksAfterPunctuationDoNotDoubleIt() {
+
+        assertEquals("first. second! third, fourth",
+                PodSelector.bound("first.\nsecond!\n\nthird,\n  fourth\n", 100));
+
+    }
+
+    @Test
+    public void tableSeparatorsBecomeCommas() {
+
+        assertEquals("x, 1. y, 2", PodSelector.bound("x | 1\ny | 2", 100));
+
+    }
+
+    @Test
+    public void longTextIsCutAtAWordBoundary() {
+
+        assertEquals("one two", PodSelector.bound("one two three", 10));
+        assertEquals("abcdefghij", PodSelector.bound("abcdefghijklmnop", 10));
+
+    }
+
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.wolfram;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ResponseCacheTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+
+        mFile = File.createTempFile("response_cache", ".bin");
+        mFile.delete();
+
+    }
+
+    @After
+    public void tearDown() {
+
+        mFile.delete();
+        temporaryFile().delete();
+
+    }
+
+    @Test
+    public void normalizeIgnoresCasePunctuationAndSpacing() {
+
+        assertEquals("how tall is the eiffel tower", ResponseCache.normalize("  How tall is the Eiffel Tower?"));
+        assertEquals("what is 3.14 squared", ResponseCache.normalize("What is 3.14 squared?"));
+        assertEquals("", ResponseCache.normalize("?!"));
+
+    }
+
+    @Test
+    public void normalizeKeepsSymbolsThatChangeTheQuestion() {
+
+        assertEquals("what is 2+2", ResponseCache.normalize("What is 2+2?"));
+        assertEquals("what is 2*2", ResponseCache.normalize("what is 2 * 2"));
+        assertEquals("what is 22", ResponseCache.normalize("what is 22."));
+        assertEquals("what is 2^10", ResponseCache.normalize("what is 2^10"));
+
+    }
+
+    @Test
+    public void leastRecentlyUsedAnswerIsEvicted() {
+
+        final ResponseCache cache = new ResponseCache(null, 2, DAY);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        /* Reading a makes b the least recently used. */
+        assertEquals("1", cache.get("a"));
+
+        cache.put("c", "3");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+
+    }
+
+    @Test
+    public void replacingAnAnswerDoesNotEvict() {
+
+        final ResponseCache cache = new ResponseCache(null, 2, DAY);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("a", "3");
+
+        assertEquals(2, cache.size());
+        assertEquals("3", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+
+    }
+
+    @Test
+    public void expiredAnswerIsDropped() throws InterruptedException {
+
+        final ResponseCache cache = new ResponseCache(null, 2, 50);
+
+        cache.put("a", "1");
+
+        assertEquals("1", cache.get("a"));
+
+        Thread.sleep(100);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+
+    }
+
+    @Test
+    public void answersSurviveARestart() {
+
+        final ResponseCache cache = new ResponseCache(mFile, 3, DAY);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        cache.put("a", "1");
+
+        final ResponseCache restored = new ResponseCache(mFile, 3, DAY);
+
+        assertEquals(3, restored.size());
+
+        /* The recency order is restored as well, b is evicted first. */
+        restored.put("d", "4");
+
+        assertNull(restored.get("b"));
+        assertEquals("1", restored.get("a"));
+        assertEquals("3", restored.get("c"));
+
+    }
+
+    @Test
+    public void expiredAnswersAreNotRestored() throws InterruptedException {
+
+        final ResponseCache cache = new ResponseCache(mFile, 2, 50);
+
+        cache.put("a", "1");
+
+        Thread.sleep(100);
+
+        assertEquals(0, new ResponseCache(mFile, 2, 50).size());
+
+    }
+
+    @Test
+    public void unreadableFileIsIgnored() throws IOException {
+
+        final FileOutputStream output = new FileOutputStream(mFile);
+
+        try {
+
+            output.write(new byte[]{0, 0, 0, 2, 0, 0, 0, 9, 1});
+
+        } finally {
+
+            output.close();
+
+        }
+
+        final ResponseCache cache = new ResponseCache(mFile, 2, DAY);
+
+        assertEquals(0, cache.size());
+
+        cache.put("a", "1");
+
+        assertEquals("1", new ResponseCache(mFile, 2, DAY).get("a"));
+
+    }
+
+    @Test
+    public void clearRemovesAnswersFromDisk() {
+
+        final ResponseCache cache = new ResponseCache(mFile, 2, DAY);
+
+        cache.put("a", "1");
+        cache.clear();
+
+        assertEquals(0, new ResponseCache(mFile, 2, DAY).size());
+
+    }
+
+    @Test
+    public void saveReplacesTheFileAndLeavesNoTemporaryFile() {
+
+        final ResponseCache cache = new ResponseCache(mFile, 2, DAY);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        assertFalse(temporaryFile().exists());
+        assertEquals(2, new ResponseCache(mFile, 2, DAY).size());
+
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentPutsLeaveTheNewestAnswersOnDisk() throws InterruptedException {
+
+        final ResponseCache cache = new ResponseCache(mFile, 64, DAY);
+        final Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+
+            final int thread = i;
+
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    for (int j = 0; j < 50; j++) {
+
+                        cache.put(thread + ":" + j, String.valueOf(j));
+
+                    }
+
+                }
+
+            });
+
+            threads[i].start();
+
+        }
+
+        for (Thread thread : threads) {
+
+            thread.join();
+
+        }
+
+        /* 200 puts into 64 slots, the file must hold exactly what is in memory. */
+        final ResponseCache restored = new ResponseCache(mFile, 64, DAY);
+
+        assertEquals(cache.size(), restored.size());
+        assertFalse(temporaryFile().exists());
+
+        for (int i = 0; i < threads.length; i++) {
+
+            for (int j = 0; j < 50; j++) {
+
+                assertEquals(cache.get(i + ":" + j), restored.get(i + ":" + j));
+
+            }
+
+        }
+
+    }
+
+    private File temporaryFile() {
+
+        return new File(mFile.getPath() + ".tmp");
+
+    }
+
+}
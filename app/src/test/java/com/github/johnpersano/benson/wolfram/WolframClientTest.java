@@ -0,0 +1,229 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.wolfram;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WolframClientTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    private final StubFetcher mFetcher = new StubFetcher();
+
+    private final WolframClient mClient = new WolframClient(mFetcher, new ResponseCache(null, 8, DAY));
+
+    /* A failed test must not leave lookups blocked. */
+    @After
+    public void tearDown() {
+
+        mFetcher.release();
+
+    }
+
+    @Test
+    public void identicalConcurrentLookupsShareOneFetch() throws Exception {
+
+        mFetcher.hold();
+
+        final String[] hypotheses = {"What is pi", "what is pi?", "What  is Pi", "WHAT IS PI"};
+        final List<Lookup> lookups = new ArrayList<Lookup>();
+
+        for (String hypothesis : hypotheses) {
+
+            lookups.add(new Lookup(mClient, hypothesis));
+
+        }
+
+        mFetcher.awaitFetchStarted();
+
+        /* Give the others time to find the running lookup before it completes. */
+        Thread.sleep(100);
+
+        mFetcher.release();
+
+        for (Lookup lookup : lookups) {
+
+            lookup.mThread.join(5000);
+
+            assertEquals(WolframClient.Result.SUCCESS, lookup.mResult.getStatus());
+            assertEquals("answer 1", lookup.mResult.getText());
+
+        }
+
+        assertEquals(1, mFetcher.mCount.get());
+
+    }
+
+    @Test
+    public void successfulAnswerIsServedFromCache() {
+
+        final WolframClient.Result first = mClient.query("How tall is the Eiffel Tower?");
+        final WolframClient.Result second = mClient.query("how tall is the eiffel tower");
+
+        assertEquals(1, mFetcher.mCount.get());
+        assertEquals(first.getText(), second.getText());
+
+    }
+
+    @Test
+    public void failedLookupIsNotCached() {
+
+        mFetcher.mStatus = WolframClient.Result.NOT_FOUND;
+
+        mClient.query("what is pi");
+        mClient.query("what is pi");
+
+        assertEquals(2, mFetcher.mCount.get());
+
+    }
+
+    @Test
+    public void differentLookupsRunAtTheSameTime() throws Exception {
+
+        mFetcher.hold();
+
+        final Lookup pi = new Lookup(mClient, "what is pi");
+        final Lookup e = new Lookup(mClient, "what is e");
+
+        /* Both have to be fetching at once, or the wait runs out. */
+        assertTrue(mFetcher.awaitConcurrent());
+
+        mFetcher.release();
+
+        pi.mThread.join(5000);
+        e.mThread.join(5000);
+
+        assertEquals(2, mFetcher.mCount.get());
+
+    }
+
+    @Test
+    public void nextLookupFetchesAgainOnceTheFirstFinished() {
+
+        mFetcher.mStatus = WolframClient.Result.ERROR;
+
+        final WolframClient.Result first = mClient.query("what is pi");
+
+        mFetcher.mStatus = WolframClient.Result.SUCCESS;
+
+        final WolframClient.Result second = mClient.query("what is pi");
+
+        assertEquals(WolframClient.Result.ERROR, first.getStatus());
+        assertEquals(WolframClient.Result.SUCCESS, second.getStatus());
+        assertSame(second.getText(), mClient.query("what is pi").getText());
+
+    }
+
+    /* Runs one lookup on its own thread. */
+    private static class Lookup {
+
+        private final Thread mThread;
+
+        private volatile WolframClient.Result mResult;
+
+        private Lookup(final WolframClient client, final String hypothesis) {
+
+            mThread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    mResult = client.query(hypothesis);
+
+                }
+
+            });
+
+            mThread.start();
+
+        }
+
+    }
+
+    /* Answers every lookup with a numbered answer. Can hold fetches until released. */
+    private static class StubFetcher implements WolframClient.Fetcher {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        private volatile int mStatus = WolframClient.Result.SUCCESS;
+
+        private volatile CountDownLatch mGate = new CountDownLatch(0);
+        private volatile CountDownLatch mStarted = new CountDownLatch(1);
+        private volatile CountDownLatch mConcurrent = new CountDownLatch(2);
+
+        void hold() {
+
+            mGate = new CountDownLatch(1);
+
+        }
+
+        void release() {
+
+            mGate.countDown();
+
+        }
+
+        void awaitFetchStarted() throws InterruptedException {
+
+            assertTrue(mStarted.await(5, TimeUnit.SECONDS));
+
+        }
+
+        boolean awaitConcurrent() throws InterruptedException {
+
+            return mConcurrent.await(5, TimeUnit.SECONDS);
+
+        }
+
+        @Override
+        public WolframClient.Result fetch(String hypothesis) {
+
+            final int count = mCount.incrementAndGet();
+
+            mStarted.countDown();
+            mConcurrent.countDown();
+
+            try {
+
+                mGate.await();
+
+            } catch (InterruptedException exception) {
+
+                Thread.currentThread().interrupt();
+
+            }
+
+            return new WolframClient.Result(mStatus, (mStatus == WolframClient.Result.NOT_FOUND) ? null : "answer " + count);
+
+        }
+
+    }
+
+}
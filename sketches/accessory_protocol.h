@@ -0,0 +1,133 @@
+// Frame format and parser shared by simple_sketch.ino and the host test in sketches/test.
+// Keep in step with AccessoryProtocol.java:
+// SYNC | device | opcode | sequence | length | payload (length bytes) | CRC-8 over device..payload
+// Several frames may arrive in one transfer.
+#ifndef ACCESSORY_PROTOCOL_H
+#define ACCESSORY_PROTOCOL_H
+
+#include <stdint.h>
+
+#define SYNC         0xA5
+#define MAX_PAYLOAD  16
+
+// Bytes around the payload: SYNC, device, opcode, sequence, length and CRC.
+#define OVERHEAD     6
+
+// Set a device to the first payload byte, zero is off.
+#define OP_SET       0x01
+// Heartbeat to the system device.
+#define OP_PING      0x02
+// Replies echo the device and sequence. ACK to OP_SET carries the device value, NACK carries an error.
+#define OP_ACK       0x80
+#define OP_NACK      0x81
+// Sensor reading, sent once a second. Payload is a signed 16 bit big endian fixed point value.
+#define OP_SAMPLE    0x90
+
+#define ERROR_UNKNOWN_DEVICE 1
+#define ERROR_UNKNOWN_OPCODE 2
+#define ERROR_BAD_PAYLOAD    3
+
+#define DEVICE_SYSTEM 0
+
+// Sensors. Temperature is in hundredths of a degree Celsius, light in hundredths of a percent.
+#define SENSOR_TEMPERATURE 16
+#define SENSOR_LIGHT       17
+
+// CRC-8, polynomial 0x07, zero initial value. Same as AccessoryProtocol.crc8().
+static inline uint8_t crc8(uint8_t crc, uint8_t value) {
+  crc ^= value;
+  for (uint8_t bit = 0; bit < 8; bit++) {
+    crc = (crc & 0x80) ? (uint8_t) ((crc << 1) ^ 0x07) : (uint8_t) (crc << 1);
+  }
+  return crc;
+}
+
+enum ParseState { WAIT_SYNC, READ_DEVICE, READ_OPCODE, READ_SEQUENCE, READ_LENGTH, READ_PAYLOAD, READ_CRC };
+
+// Parser state, kept across transfers so a frame may be split between them.
+struct FrameParser {
+  ParseState state;
+  uint8_t device, opcode, sequence, length, position, crc;
+  uint8_t payload[MAX_PAYLOAD];
+  uint32_t corrupt;
+};
+
+// Drop any partial frame and wait for the next SYNC.
+static inline void resetParser(FrameParser *parser) {
+  parser->state = WAIT_SYNC;
+}
+
+// Feed one received byte to the parser. Returns true when it completes a frame with a good CRC,
+// the frame is then in the parser's fields until the next byte. A bad length or CRC drops the
+// frame, counts it as corrupt and waits for the next SYNC.
+static inline bool parseByte(FrameParser *parser, uint8_t value) {
+  if (parser->state != WAIT_SYNC && parser->state != READ_CRC) {
+    parser->crc = crc8(parser->crc, value);
+  }
+
+  switch (parser->state) {
+    case WAIT_SYNC:
+      if (value == SYNC) {
+        parser->crc = 0;
+        parser->state = READ_DEVICE;
+      }
+      break;
+    case READ_DEVICE:
+      parser->device = value;
+      parser->state = READ_OPCODE;
+      break;
+    case READ_OPCODE:
+      parser->opcode = value;
+      parser->state = READ_SEQUENCE;
+      break;
+    case READ_SEQUENCE:
+      parser->sequence = value;
+      parser->state = READ_LENGTH;
+      break;
+    case READ_LENGTH:
+      if (value > MAX_PAYLOAD) {
+        parser->corrupt++;
+        parser->state = WAIT_SYNC;
+      } else {
+        parser->length = value;
+        parser->position = 0;
+        parser->state = (value == 0) ? READ_CRC : READ_PAYLOAD;
+      }
+      break;
+    case READ_PAYLOAD:
+      parser->payload[parser->position++] = value;
+      if (parser->position == parser->length) {
+        parser->state = READ_CRC;
+      }
+      break;
+    case READ_CRC:
+      parser->state = WAIT_SYNC;
+      if (value == parser->crc) {
+        return true;
+      }
+      parser->corrupt++;
+      break;
+  }
+  return false;
+}
+
+// Write a frame to buffer, which must hold length + OVERHEAD bytes. Returns the frame size.
+static inline uint8_t encodeFrame(uint8_t *frame, uint8_t device, uint8_t opcode, uint8_t sequence,
+                                  const uint8_t *payload, uint8_t length) {
+  frame[0] = SYNC;
+  frame[1] = device;
+  frame[2] = opcode;
+  frame[3] = sequence;
+  frame[4] = length;
+  for (uint8_t i = 0; i < length; i++) {
+    frame[5 + i] = payload[i];
+  }
+  uint8_t crc = 0;
+  for (uint8_t i = 1; i < 5 + length; i++) {
+    crc = crc8(crc, frame[i]);
+  }
+  frame[5 + length] = crc;
+  return length + OVERHEAD;
+}
+
+#endif
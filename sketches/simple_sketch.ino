@@ -1,6 +1,7 @@
 #include "variant.h"
 #include <stdio.h>
 #include <adk.h>
+#include "accessory_protocol.h"
 
 #define  LED_PIN  13
 
@@ -21,10 +22,35 @@ ADK adk(&Usb, manufacturerName, modelName, descriptionName, versionNumber, url,
 uint8_t buf[RCVSIZE];
 uint32_t bytesRead = 0;
 
+// Sensors. Temperature is a TMP36 on A0, light is a photoresistor divider on A1.
+#define TEMPERATURE_PIN    A0
+#define LIGHT_PIN          A1
+#define SAMPLE_INTERVAL    1000
+
+// Device ids and the pins they drive. Device ids start at 1.
+#define DEVICE_COUNT 1
+const uint8_t devicePins[DEVICE_COUNT + 1] = { 0, LED_PIN };
+
+// Frame parser, see accessory_protocol.h. The frame being handled is in its fields.
+FrameParser frame;
+
+// Replies to one transfer are sent together in one transfer. Frames with a one byte payload are 7 bytes.
+uint8_t replyBuf[RCVSIZE];
+uint32_t replyLength = 0;
+
+// Last value written to each device, reported in ACKs.
+uint8_t deviceValues[DEVICE_COUNT + 1];
+
+// Sensor frames are sent on their own, with their own sequence numbers.
+unsigned long lastSample = 0;
+uint8_t sampleSequence = 0;
+
 void setup()
 {
     Serial.begin(115200);   
-    pinMode(LED_PIN, OUTPUT);
+    for (uint8_t device = 1; device <= DEVICE_COUNT; device++) {
+      pinMode(devicePins[device], OUTPUT);
+    }
     delay(500);
     Serial.println("UDOO ADK demo start...");
 }
@@ -35,23 +61,81 @@ void loop()
      
     if (adk.isReady()) {
       adk.read(&bytesRead, RCVSIZE, buf);// read data into buf variable
-      if (bytesRead > 0) {
-        if (parseCommand(buf[0]) == 1) {// compare received data
-          // Received "1" - turn on LED
-          digitalWrite(LED_PIN, HIGH);
-        } else if (parseCommand(buf[0]) == 0) {
-          // Received "0" - turn off LED
-          digitalWrite(LED_PIN, LOW); 
-        }  
+      for (uint32_t i = 0; i < bytesRead; i++) {
+        if (parseByte(&frame, buf[i])) {
+          handleFrame();
+        }
+      }
+      if (millis() - lastSample >= SAMPLE_INTERVAL) {
+        lastSample = millis();
+        sendSamples();
+      }
+      if (replyLength > 0) {
+        adk.write(replyLength, replyBuf);
+        replyLength = 0;
       }
     } else {
-      digitalWrite(LED_PIN , LOW); // turn off light
+      // accessory gone, turn everything off and drop any partial frame
+      for (uint8_t device = 1; device <= DEVICE_COUNT; device++) {
+        digitalWrite(devicePins[device], LOW);
+        deviceValues[device] = 0;
+      }
+      resetParser(&frame);
     }  
     
     delay(10);
 }
 
-// the characters sent to Arduino are interpreted as ASCII, we decrease 48 to return to ASCII range.
-uint8_t parseCommand(uint8_t received) {
-  return received - 48;
+// Queue an outgoing frame with a payload of one or two bytes. Frames that do not fit are dropped,
+// the host retries unanswered commands and the next sample follows a second later.
+void queueFrame(uint8_t device, uint8_t opcode, uint8_t sequence, const uint8_t *payload, uint8_t length) {
+  if (replyLength + length + OVERHEAD > RCVSIZE) {
+    return;
+  }
+  replyLength += encodeFrame(replyBuf + replyLength, device, opcode, sequence, payload, length);
+}
+
+// Answer the frame being handled.
+void reply(uint8_t opcode, uint8_t value) {
+  queueFrame(frame.device, opcode, frame.sequence, &value, 1);
+}
+
+void sendSample(uint8_t sensor, int16_t value) {
+  uint8_t payload[2] = { (uint8_t) (value >> 8), (uint8_t) value };
+  queueFrame(sensor, OP_SAMPLE, sampleSequence++, payload, 2);
+}
+
+// Read every sensor. The Due's ADC is 10 bit by default with a 3.3V reference.
+void sendSamples() {
+  int32_t millivolts = analogRead(TEMPERATURE_PIN) * 3300L / 1023;
+  sendSample(SENSOR_TEMPERATURE, (int16_t) ((millivolts - 500) * 10));
+  sendSample(SENSOR_LIGHT, (int16_t) (analogRead(LIGHT_PIN) * 10000L / 1023));
+}
+
+// Act on a complete frame and answer it.
+void handleFrame() {
+  if (frame.opcode == OP_PING) {
+    reply(OP_ACK, 0);
+    return;
+  }
+
+  if (frame.device < 1 || frame.device > DEVICE_COUNT) {
+    reply(OP_NACK, ERROR_UNKNOWN_DEVICE);
+    return;
+  }
+
+  switch (frame.opcode) {
+    case OP_SET:
+      if (frame.length < 1) {
+        reply(OP_NACK, ERROR_BAD_PAYLOAD);
+        return;
+      }
+      deviceValues[frame.device] = frame.payload[0] ? 1 : 0;
+      digitalWrite(devicePins[frame.device], deviceValues[frame.device] ? HIGH : LOW);
+      reply(OP_ACK, deviceValues[frame.device]);
+      break;
+    default:
+      reply(OP_NACK, ERROR_UNKNOWN_OPCODE);
+      break;
+  }
 }
@@ -0,0 +1,108 @@
+// Host test for the sketch's frame parser. Feeds every vector in protocol_vectors.txt to
+// accessory_protocol.h one byte at a time, as the sketch does, and checks the frames it reports.
+//
+//   g++ -Wall -o protocol_test protocol_test.cpp && ./protocol_test ../protocol_vectors.txt
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+#include "../accessory_protocol.h"
+
+#define MAX_BYTES  512
+#define MAX_FRAMES 16
+
+struct Frame {
+  uint8_t bytes[OVERHEAD + MAX_PAYLOAD];
+  int length;
+};
+
+struct Vector {
+  char name[64];
+  uint8_t in[MAX_BYTES];
+  int inLength;
+  Frame frames[MAX_FRAMES];
+  int frameCount;
+  uint32_t corrupt;
+};
+
+// Parse the hex bytes after a keyword. Returns the number of bytes read.
+static int readHex(const char *text, uint8_t *bytes, int capacity) {
+  int count = 0;
+  unsigned int value;
+  int consumed;
+  while (count < capacity && sscanf(text, " %2x%n", &value, &consumed) == 1) {
+    bytes[count++] = (uint8_t) value;
+    text += consumed;
+  }
+  return count;
+}
+
+// Feed a vector to a fresh parser. Reported frames are kept as device, opcode, sequence and payload.
+static bool check(const Vector *vector) {
+  FrameParser parser;
+  memset(&parser, 0, sizeof(parser));
+  resetParser(&parser);
+
+  Frame frames[MAX_FRAMES];
+  int frameCount = 0;
+
+  for (int i = 0; i < vector->inLength; i++) {
+    if (parseByte(&parser, vector->in[i]) && frameCount < MAX_FRAMES) {
+      Frame *frame = &frames[frameCount++];
+      frame->bytes[0] = parser.device;
+      frame->bytes[1] = parser.opcode;
+      frame->bytes[2] = parser.sequence;
+      memcpy(frame->bytes + 3, parser.payload, parser.length);
+      frame->length = 3 + parser.length;
+    }
+  }
+
+  bool passed = frameCount == vector->frameCount && parser.corrupt == vector->corrupt
+      && parser.state == WAIT_SYNC;
+  for (int i = 0; passed && i < frameCount; i++) {
+    passed = frames[i].length == vector->frames[i].length
+        && memcmp(frames[i].bytes, vector->frames[i].bytes, frames[i].length) == 0;
+  }
+
+  if (!passed) {
+    printf("FAIL %s: %d frames, %u corrupt, expected %d frames, %u corrupt\n", vector->name,
+           frameCount, (unsigned) parser.corrupt, vector->frameCount, (unsigned) vector->corrupt);
+  }
+  return passed;
+}
+
+int main(int argc, char **argv) {
+  FILE *file = fopen(argc > 1 ? argv[1] : "../protocol_vectors.txt", "r");
+  if (file == NULL) {
+    perror("protocol_vectors.txt");
+    return 2;
+  }
+
+  static Vector vector;
+  char line[256];
+  int total = 0;
+  int failed = 0;
+
+  while (fgets(line, sizeof(line), file) != NULL) {
+    if (strncmp(line, "vector ", 7) == 0) {
+      memset(&vector, 0, sizeof(vector));
+      sscanf(line + 7, "%63s", vector.name);
+    } else if (strncmp(line, "in ", 3) == 0) {
+      vector.inLength += readHex(line + 3, vector.in + vector.inLength, MAX_BYTES - vector.inLength);
+    } else if (strncmp(line, "frame ", 6) == 0 && vector.frameCount < MAX_FRAMES) {
+      Frame *frame = &vector.frames[vector.frameCount++];
+      frame->length = readHex(line + 6, frame->bytes, sizeof(frame->bytes));
+    } else if (strncmp(line, "corrupt ", 8) == 0) {
+      vector.corrupt = (uint32_t) strtoul(line + 8, NULL, 10);
+    } else if (strncmp(line, "end", 3) == 0) {
+      total++;
+      if (!check(&vector)) {
+        failed++;
+      }
+    }
+  }
+  fclose(file);
+
+  printf("%d vectors, %d failed\n", total, failed);
+  return (failed == 0 && total > 0) ? 0 : 1;
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.github.johnpersano.benson.visualizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per frame cost of {@link SpectrumRenderer#updateLevels(byte[])} at every capture size the
+ * Visualizer hands out. Run with gradle :visualizer:jmh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectrumRendererBenchmark {
+
+    /* Distinct captures cycled through so levels keep rising and falling like real audio. */
+    private static final int CAPTURE_COUNT = 64;
+
+    @Param({"128", "256", "512", "1024"})
+    public int captureSize;
+
+    private SpectrumRenderer mRenderer;
+    private byte[][] mCaptures;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+
+        final Random random = new Random(42);
+
+        mCaptures = new byte[CAPTURE_COUNT][captureSize];
+
+        for (byte[] capture : mCaptures) {
+
+            random.nextBytes(capture);
+
+        }
+
+        mRenderer = new SpectrumRenderer();
+
+        /* Build the bands up front, a size change is not part of the steady state. */
+        mRenderer.updateLevels(mCaptures[0]);
+
+    }
+
+    @Benchmark
+    public float[] updateLevels() {
+
+        mIndex = (mIndex + 1) % CAPTURE_COUNT;
+
+        return mRenderer.updateLevels(mCaptures[mIndex]);
+
+    }
+
+}
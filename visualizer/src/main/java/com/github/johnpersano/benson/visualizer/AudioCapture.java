@@ -0,0 +1,350 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.media.audiofx.Visualizer;
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Owns the {@link android.media.audiofx.Visualizer} attached to the output mix. Captures are
+ * copied into {@link CaptureBuffer}s, the render side picks up the latest one once per frame.
+ * Shared by every visualizer backend so capture setup lives in one place.
+ * <p/>
+ * Only the streams, size and rate the attached {@link CaptureConsumer}s ask for are captured.
+ * While inactive the Visualizer is disabled and silence is published at the capture rate
+ * instead, so renderers keep animating without the audio effect running.
+ * <p/>
+ * Must be used from one looper thread, the Visualizer delivers captures on that thread too.
+ */
+public class AudioCapture {
+
+    /* Keep capturing this long after going inactive, so back to back utterances do not toggle it. */
+    private static final long IDLE_DELAY = 1000;
+
+    /* Unsigned 8 bit PCM silence. */
+    private static final byte SILENCE = (byte) 128;
+
+    private final CaptureBuffer mWaveform = new CaptureBuffer();
+    private final CaptureBuffer mFFT = new CaptureBuffer();
+
+    private final List<CaptureConsumer> mConsumers = new ArrayList<CaptureConsumer>();
+
+    private final Handler mHandler = new Handler();
+
+    private Visualizer mVisualizer;
+
+    /* Union of the consumer requirements. */
+    private boolean mCaptureWaveform;
+    private boolean mCaptureFFT;
+    private int mCaptureSize;
+    private int mCaptureRate;
+
+    private boolean mActive = true;
+    private boolean mEnabled;
+
+    private byte[] mSilence;
+    private byte[] mSilentFFT;
+
+    public AudioCapture() {
+
+        /* Do nothing. */
+
+    }
+
+    /* Attach to the output mix and start capturing. */
+    public void create() {
+
+        mVisualizer = new Visualizer(0);
+        mVisualizer.setEnabled(false); // Illegal state exception fix
+
+        configure();
+
+    }
+
+    /* Capture what this consumer needs, on top of what is already captured. */
+    public void addConsumer(CaptureConsumer consumer) {
+
+        if (!mConsumers.contains(consumer)) {
+
+            mConsumers.add(consumer);
+            configure();
+
+        }
+
+    }
+
+    public void removeConsumer(CaptureConsumer consumer) {
+
+        if (mConsumers.remove(consumer)) {
+
+            configure();
+
+        }
+
+    }
+
+    public void clearConsumers() {
+
+        mConsumers.clear();
+        configure();
+
+    }
+
+    /**
+     * Start or stop capturing, for example while nothing is being spoken. Stopping takes effect
+     * after a short delay and is cancelled if capturing is requested again in the meantime.
+     *
+     * @param active - True to capture the output mix
+     */
+    public void setActive(boolean active) {
+
+        mHandler.removeCallbacks(mIdleRunnable);
+
+        if (active) {
+
+            if (!mActive) {
+
+                mActive = true;
+                configure();
+
+            }
+
+        } else if (mActive) {
+
+            mHandler.postDelayed(mIdleRunnable, IDLE_DELAY);
+
+        }
+
+    }
+
+    public CaptureBuffer getWaveform() {
+
+        return mWaveform;
+
+    }
+
+    public CaptureBuffer getFFT() {
+
+        return mFFT;
+
+    }
+
+    /**
+     * Take the latest capture of both streams for drawing. Render thread only.
+     *
+     * @param audioData - Receives the latest waveform, null if there is none
+     * @param fftData   - Receives the latest FFT, null if there is none
+     * @return System.nanoTime() of the newest capture not drawn before, or 0 if nothing is new.
+     */
+    public long acquire(AudioData audioData, FFTData fftData) {
+
+        final boolean waveformUpdated = mWaveform.hasUpdate();
+        final boolean fftUpdated = mFFT.hasUpdate();
+
+        audioData.bytes = mWaveform.acquire();
+        fftData.bytes = mFFT.acquire();
+
+        long captureTime = 0;
+
+        if (waveformUpdated) {
+
+            captureTime = mWaveform.getCaptureTime();
+
+        }
+
+        if (fftUpdated) {
+
+            captureTime = Math.max(captureTime, mFFT.getCaptureTime());
+
+        }
+
+        return captureTime;
+
+    }
+
+    /* True if either stream has a capture that was not drawn yet. */
+    public boolean hasUpdate() {
+
+        return mWaveform.hasUpdate() || mFFT.hasUpdate();
+
+    }
+
+    /* Stop capturing and release the Visualizer. */
+    public void release() {
+
+        mHandler.removeCallbacks(mIdleRunnable);
+        mHandler.removeCallbacks(mSilenceRunnable);
+
+        if (mVisualizer != null) {
+
+            mVisualizer.release();
+            mVisualizer = null;
+
+        }
+
+    }
+
+    /* Reduce the consumers to one Visualizer configuration and apply it. */
+    private void configure() {
+
+        final int[] sizeRange = Visualizer.getCaptureSizeRange();
+        final int maxRate = Visualizer.getMaxCaptureRate();
+
+        boolean captureWaveform = false;
+        boolean captureFFT = false;
+        int captureSize = sizeRange[0];
+        int captureRate = 0;
+
+        for (int i = 0; i < mConsumers.size(); i++) {
+
+            final CaptureConsumer consumer = mConsumers.get(i);
+
+            captureWaveform |= consumer.needsWaveform();
+            captureFFT |= consumer.needsFFT();
+
+            final int size = (consumer.getCaptureSize() == CaptureConsumer.DEFAULT)
+                    ? sizeRange[1] : consumer.getCaptureSize();
+            final int rate = (consumer.getCaptureRate() == CaptureConsumer.DEFAULT)
+                    ? maxRate / 2 : consumer.getCaptureRate();
+
+            captureSize = Math.max(captureSize, Math.min(size, sizeRange[1]));
+            captureRate = Math.max(captureRate, Math.min(rate, maxRate));
+
+        }
+
+        mCaptureWaveform = captureWaveform;
+        mCaptureFFT = captureFFT;
+        mCaptureSize = captureSize;
+        mCaptureRate = captureRate;
+
+        apply();
+
+    }
+
+    private void apply() {
+
+        mHandler.removeCallbacks(mSilenceRunnable);
+
+        if (mVisualizer == null) {
+
+            return;
+
+        }
+
+        /* Size and listener can only be changed while disabled. */
+        if (mEnabled) {
+
+            mVisualizer.setEnabled(false);
+            mEnabled = false;
+
+        }
+
+        if (!mCaptureWaveform && !mCaptureFFT) {
+
+            return;
+
+        }
+
+        if (!mActive) {
+
+            mHandler.post(mSilenceRunnable);
+
+            return;
+
+        }
+
+        mVisualizer.setCaptureSize(mCaptureSize);
+        mVisualizer.setDataCaptureListener(mCaptureListener, mCaptureRate, mCaptureWaveform, mCaptureFFT);
+
+        // Enabled Visualizer and disable when we're done with the stream
+        mVisualizer.setEnabled(true);
+        mEnabled = true;
+
+    }
+
+    // Copy Visualizer data, it is only valid for the duration of the callback
+    private final Visualizer.OnDataCaptureListener mCaptureListener = new Visualizer.OnDataCaptureListener() {
+
+        @Override
+        public void onWaveFormDataCapture(Visualizer visualizer, byte[] bytes, int samplingRate) {
+
+            mWaveform.write(bytes);
+
+        }
+
+        @Override
+        public void onFftDataCapture(Visualizer visualizer, byte[] bytes, int samplingRate) {
+
+            mFFT.write(bytes);
+
+        }
+
+    };
+
+    private final Runnable mIdleRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+
+            mActive = false;
+            apply();
+
+        }
+
+    };
+
+    /* Publishes silence at the capture rate while inactive. */
+    private final Runnable mSilenceRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+
+            if (mSilence == null || mSilence.length != mCaptureSize) {
+
+                mSilence = new byte[mCaptureSize];
+                Arrays.fill(mSilence, SILENCE);
+
+                /* The spectrum of silence is all zeros. */
+                mSilentFFT = new byte[mCaptureSize];
+
+            }
+
+            if (mCaptureWaveform) {
+
+                mWaveform.write(mSilence);
+
+            }
+
+            if (mCaptureFFT) {
+
+                mFFT.write(mSilentFFT);
+
+            }
+
+            /* Capture rate is in milliHertz. */
+            mHandler.postDelayed(this, 1000L * 1000L / mCaptureRate);
+
+        }
+
+    };
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer that hands captures from the Visualizer thread to the render thread.
+ * The writer copies into its own buffer and publishes it by swapping it with the shared middle
+ * slot. The reader takes the middle slot only when it holds something new. Neither side ever
+ * sees a buffer the other side is writing, and nothing is allocated unless the capture size changes.
+ * <p/>
+ * One writer thread and one reader thread.
+ */
+public class CaptureBuffer {
+
+    /* Set on the middle index when it holds a capture the reader has not taken yet. */
+    private static final int DIRTY = 0x4;
+    private static final int INDEX = 0x3;
+
+    private final byte[][] mBuffers = new byte[3][];
+
+    /* System.nanoTime() at which each buffer was written. Travels with its buffer. */
+    private final long[] mTimes = new long[3];
+
+    /* Index of the middle buffer plus the DIRTY flag. */
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+
+    /* Owned by the writer. */
+    private int mWrite = 2;
+
+    /* Owned by the reader. */
+    private int mRead = 0;
+
+    /**
+     * Copy a capture in and publish it. Called on the capture thread.
+     *
+     * @param bytes - Captured data, not kept after this call
+     */
+    public void write(byte[] bytes) {
+
+        byte[] buffer = mBuffers[mWrite];
+
+        /* Only the write slot is replaced, the reader may still hold the others. */
+        if (buffer == null || buffer.length != bytes.length) {
+
+            buffer = new byte[bytes.length];
+            mBuffers[mWrite] = buffer;
+
+        }
+
+        System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+        mTimes[mWrite] = System.nanoTime();
+
+        mWrite = mMiddle.getAndSet(mWrite | DIRTY) & INDEX;
+
+    }
+
+    /* True if a capture was published since the last acquire(). Safe from any thread. */
+    public boolean hasUpdate() {
+
+        return (mMiddle.get() & DIRTY) != 0;
+
+    }
+
+    /**
+     * Take the latest capture. Called on the render thread. The returned array stays untouched
+     * by the writer until the next call.
+     *
+     * @return The latest capture or null if nothing was captured yet.
+     */
+    public byte[] acquire() {
+
+        if (hasUpdate()) {
+
+            mRead = mMiddle.getAndSet(mRead) & INDEX;
+
+        }
+
+        return mBuffers[mRead];
+
+    }
+
+    /* System.nanoTime() at which the buffer returned by the last acquire() was captured. Render thread only. */
+    public long getCaptureTime() {
+
+        return mTimes[mRead];
+
+    }
+
+}
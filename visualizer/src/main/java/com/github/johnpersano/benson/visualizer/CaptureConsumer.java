@@ -0,0 +1,39 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+/**
+ * Declares which Visualizer streams a renderer reads. {@link AudioCapture} configures the
+ * Visualizer to the union of every attached consumer, so streams nobody draws are never captured.
+ */
+public interface CaptureConsumer {
+
+    /* Capture size or rate of zero means the default. */
+    public static final int DEFAULT = 0;
+
+    public boolean needsWaveform();
+
+    public boolean needsFFT();
+
+    /* Preferred capture size in samples, a power of two. Clamped to the supported range. */
+    public int getCaptureSize();
+
+    /* Preferred capture rate in milliHertz. Clamped to the maximum supported rate. */
+    public int getCaptureRate();
+
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2011, Felix Palmer
+ *
+ * Licensed under the MIT license:
+ * http://creativecommons.org/licenses/MIT/
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.opengl.GLES20;
+
+
+public class CircleRenderer extends Renderer implements GLRenderable {
+
+    /* How far the waveform pushes the circle out, as a fraction of the radius. */
+    private static final float AGGRESSIVE = 0.30f;
+
+    /* Distance in pixels added to every point so the circle never collapses. */
+    private static final float RADIUS_OFFSET = 25f;
+
+    /* Pulse advance per frame. */
+    private static final float MODULATION_STEP = 0.045f;
+
+    /* Color cycle advance per frame. */
+    private static final float COLOR_STEP = 0.03f;
+
+    private Paint mPaint;
+    private boolean mCycleColor;
+    private float modulation = 0;
+    private float colorCounter = 0;
+
+    /* GL path. One vertex per sample, drawn as a line strip. */
+    private float[] mStrip;
+    private GLLines mLines;
+
+    /* Sine and cosine of every sample angle. Rebuilt only when the capture size changes. */
+    private float[] mSin;
+    private float[] mCos;
+
+    /**
+     * Renders the audio data onto a pulsing circle
+     */
+    public CircleRenderer() {
+
+        this(false);
+
+    }
+
+    /**
+     * Renders the audio data onto a pulsing circle
+     *
+     * @param cycleColor - If true the color will change on each frame
+     */
+    public CircleRenderer(boolean cycleColor) {
+        super();
+
+        this.mPaint = new Paint();
+        this.mPaint.setStrokeWidth(3f);
+        this.mPaint.setAntiAlias(true);
+        this.mPaint.setColor(Color.argb(255, 222, 92, 143));
+
+        this.mCycleColor = cycleColor;
+
+    }
+
+    @Override
+    public void onRender(Canvas canvas, AudioData data, Rect rect) {
+
+        final int count = data.bytes.length;
+
+        if (count < 2) {
+
+            return;
+
+        }
+
+        project(data.bytes, rect, mPoints, true);
+
+        canvas.drawLines(mPoints, 0, (count - 1) * 4, mPaint);
+
+        advance();
+
+    }
+
+    /* Only the waveform is drawn, so FFT is never captured for this renderer. */
+    @Override
+    public boolean needsFFT() {
+
+        return false;
+
+    }
+
+    @Override
+    public void onRender(Canvas canvas, FFTData data, Rect rect) {
+
+        /* Do nothing, we only display audio data */
+
+    }
+
+    @Override
+    public void onGLSurfaceCreated() {
+
+        mLines = new GLLines();
+
+    }
+
+    @Override
+    public void onGLRender(AudioData data, Rect rect) {
+
+        final int count = data.bytes.length;
+
+        if (count < 2) {
+
+            return;
+
+        }
+
+        if (mStrip == null || mStrip.length != count * 2) {
+
+            mStrip = new float[count * 2];
+
+        }
+
+        project(data.bytes, rect, mStrip, false);
+
+        mLines.draw(GLES20.GL_LINE_STRIP, mStrip, count, rect, mPaint.getColor(), mPaint.getStrokeWidth());
+
+        advance();
+
+    }
+
+    @Override
+    public void onGLRender(FFTData data, Rect rect) {
+
+        /* Do nothing, we only display audio data */
+
+    }
+
+    public void changeColor(int color) {
+
+        mPaint.setColor(color);
+
+    }
+
+    /* Move the pulse, and the color if it cycles, on to the next frame. */
+    private void advance() {
+
+        // Controls the pulsing rate
+        modulation += MODULATION_STEP;
+
+        if (mCycleColor) {
+
+            final int r = (int) Math.floor(128 * (Math.sin(colorCounter) + 1));
+            final int g = (int) Math.floor(128 * (Math.sin(colorCounter + 2) + 1));
+            final int b = (int) Math.floor(128 * (Math.sin(colorCounter + 4) + 1));
+
+            mPaint.setColor(Color.argb(128, r, g, b));
+
+            colorCounter += COLOR_STEP;
+
+        }
+
+    }
+
+    /**
+     * Place every sample on the circle. Each point is computed once. As segments it is written as the
+     * end of one segment and the start of the next, for drawLines. Otherwise as one vertex of a strip.
+     */
+    private void project(byte[] bytes, Rect rect, float[] points, boolean segments) {
+
+        final int count = bytes.length;
+
+        if (mSin == null || mSin.length != count) {
+
+            buildTables(count);
+
+        }
+
+        final int halfHeight = rect.height() / 2;
+        final int halfWidth = rect.width() / 2;
+
+        /* Everything but the sample itself is constant for the frame. */
+        final float pulse = (float) ((1.2 + Math.sin(modulation)) / 2.2);
+        final float base = halfWidth * (1 - AGGRESSIVE);
+
+        for (int i = 0; i < count; i++) {
+
+            final int y = halfHeight + ((byte) (bytes[i] + 128)) * halfHeight / 128;
+            final float radius = (base + AGGRESSIVE * y / 2) * pulse + RADIUS_OFFSET;
+
+            final float x = halfWidth + radius * mSin[i];
+            final float yPolar = halfHeight + radius * mCos[i];
+
+            if (!segments) {
+
+                points[i * 2] = x;
+                points[i * 2 + 1] = yPolar;
+
+                continue;
+
+            }
+
+            if (i < count - 1) {
+
+                points[i * 4] = x;
+                points[i * 4 + 1] = yPolar;
+
+            }
+
+            if (i > 0) {
+
+                points[i * 4 - 2] = x;
+                points[i * 4 - 1] = yPolar;
+
+            }
+
+        }
+
+    }
+
+    /* Sample i sits at angle 2 * PI * i / (count - 1), so the first and last samples meet. */
+    private void buildTables(int count) {
+
+        mSin = new float[count];
+        mCos = new float[count];
+
+        for (int i = 0; i < count; i++) {
+
+            final double angle = (double) i / (count - 1) * 2 * Math.PI;
+
+            mSin[i] = (float) Math.sin(angle);
+            mCos[i] = (float) Math.cos(angle);
+
+        }
+
+    }
+
+}
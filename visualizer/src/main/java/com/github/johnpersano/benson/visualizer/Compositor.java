@@ -0,0 +1,287 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * Ordered renderer pipeline shared by the visualizer backends. Renderers are drawn by ascending
+ * order, renderers with the same order in the order they were added, so the result is the same
+ * every frame. Each renderer is timed and its {@link RenderTiming} kept for inspection.
+ * <p/>
+ * The layer list is copy on write: it can be changed from the UI thread while the render
+ * thread draws from the previous snapshot.
+ */
+public class Compositor {
+
+    /* Order used by {@link #add(Renderer)}. Lower orders are drawn first, underneath. */
+    public static final int DEFAULT_ORDER = 0;
+
+    private static final Layer[] EMPTY = new Layer[0];
+
+    private volatile Layer[] mLayers = EMPTY;
+
+    private volatile FrameObserver mFrameObserver;
+
+    public void add(Renderer renderer) {
+
+        add(renderer, DEFAULT_ORDER);
+
+    }
+
+    /**
+     * Add a renderer. Adding a renderer that is already in the pipeline does nothing.
+     *
+     * @param renderer - Renderer to draw
+     * @param order    - Position in the pipeline, lower is drawn first
+     * @return True if the renderer was added.
+     */
+    public synchronized boolean add(Renderer renderer, int order) {
+
+        final Layer[] layers = mLayers;
+
+        if (indexOf(layers, renderer) >= 0) {
+
+            return false;
+
+        }
+
+        final Layer layer = new Layer(renderer, order);
+
+        /* Insert after every layer with a lower or equal order, so equal orders keep insertion order. */
+        int position = 0;
+
+        while (position < layers.length && layers[position].mOrder <= order) {
+
+            position++;
+
+        }
+
+        final Layer[] updated = new Layer[layers.length + 1];
+        System.arraycopy(layers, 0, updated, 0, position);
+        updated[position] = layer;
+        System.arraycopy(layers, position, updated, position + 1, layers.length - position);
+
+        mLayers = updated;
+
+        return true;
+
+    }
+
+    public synchronized boolean remove(Renderer renderer) {
+
+        final Layer[] layers = mLayers;
+        final int position = indexOf(layers, renderer);
+
+        if (position < 0) {
+
+            return false;
+
+        }
+
+        final Layer[] updated = new Layer[layers.length - 1];
+        System.arraycopy(layers, 0, updated, 0, position);
+        System.arraycopy(layers, position + 1, updated, position, layers.length - position - 1);
+
+        mLayers = updated;
+
+        return true;
+
+    }
+
+    public synchronized void clear() {
+
+        mLayers = EMPTY;
+
+    }
+
+    /* Receives each renderer's frame time, or null to stop. */
+    public void setFrameObserver(FrameObserver frameObserver) {
+
+        mFrameObserver = frameObserver;
+
+    }
+
+    public int size() {
+
+        return mLayers.length;
+
+    }
+
+    /* Renderer at a position in drawing order. */
+    public Renderer get(int position) {
+
+        return mLayers[position].mRenderer;
+
+    }
+
+    /* Timing of the renderer at a position in drawing order. */
+    public RenderTiming getTiming(int position) {
+
+        return mLayers[position].mTiming;
+
+    }
+
+    /**
+     * Draw every renderer onto a canvas. Renderers are skipped for streams they did not ask for.
+     *
+     * @param canvas    - Canvas to draw on
+     * @param audioData - Waveform, or null bytes if there is none
+     * @param fftData   - FFT, or null bytes if there is none
+     * @param rect      - Rect to render into
+     */
+    public void render(Canvas canvas, AudioData audioData, FFTData fftData, Rect rect) {
+
+        final Layer[] layers = mLayers;
+
+        for (int i = 0; i < layers.length; i++) {
+
+            final Renderer renderer = layers[i].mRenderer;
+            final long start = System.nanoTime();
+
+            if (audioData.bytes != null && renderer.needsWaveform()) {
+
+                renderer.render(canvas, audioData, rect);
+
+            }
+
+            if (fftData.bytes != null && renderer.needsFFT()) {
+
+                renderer.render(canvas, fftData, rect);
+
+            }
+
+            record(layers[i], System.nanoTime() - start);
+
+        }
+
+    }
+
+    /**
+     * Draw every {@link GLRenderable} renderer into the bound framebuffer. Called on the GL thread.
+     * Renderers without a GL path are skipped.
+     */
+    public void renderGL(AudioData audioData, FFTData fftData, Rect rect) {
+
+        final Layer[] layers = mLayers;
+
+        for (int i = 0; i < layers.length; i++) {
+
+            final Layer layer = layers[i];
+
+            if (layer.mGLRenderable == null) {
+
+                continue;
+
+            }
+
+            final GLRenderable renderer = layer.mGLRenderable;
+            final long start = System.nanoTime();
+
+            /* Lazily create GL objects, for renderers added after the surface or after a context loss. */
+            if (!layer.mGLReady) {
+
+                renderer.onGLSurfaceCreated();
+                layer.mGLReady = true;
+
+            }
+
+            if (audioData.bytes != null && renderer.needsWaveform()) {
+
+                renderer.onGLRender(audioData, rect);
+
+            }
+
+            if (fftData.bytes != null && renderer.needsFFT()) {
+
+                renderer.onGLRender(fftData, rect);
+
+            }
+
+            record(layer, System.nanoTime() - start);
+
+        }
+
+    }
+
+    /* The GL context was (re)created, every renderer has to create its GL objects again. Called on the GL thread. */
+    public void onGLSurfaceCreated() {
+
+        final Layer[] layers = mLayers;
+
+        for (int i = 0; i < layers.length; i++) {
+
+            layers[i].mGLReady = false;
+
+        }
+
+    }
+
+    private void record(Layer layer, long nanos) {
+
+        layer.mTiming.record(nanos);
+
+        final FrameObserver frameObserver = mFrameObserver;
+
+        if (frameObserver != null) {
+
+            frameObserver.onRendererTimed(layer.mTiming, nanos);
+
+        }
+
+    }
+
+    private static int indexOf(Layer[] layers, Renderer renderer) {
+
+        for (int i = 0; i < layers.length; i++) {
+
+            if (layers[i].mRenderer == renderer) {
+
+                return i;
+
+            }
+
+        }
+
+        return -1;
+
+    }
+
+    private static class Layer {
+
+        private final Renderer mRenderer;
+        private final GLRenderable mGLRenderable;
+        private final int mOrder;
+        private final RenderTiming mTiming;
+
+        /* Touched only on the GL thread. */
+        private boolean mGLReady;
+
+        private Layer(Renderer renderer, int order) {
+
+            this.mRenderer = renderer;
+            this.mGLRenderable = (renderer instanceof GLRenderable) ? (GLRenderable) renderer : null;
+            this.mOrder = order;
+            this.mTiming = new RenderTiming(renderer.getClass().getSimpleName());
+
+        }
+
+    }
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+/**
+ * Receives frame timing from a visualizer backend, for example to feed histograms or a debug
+ * overlay. Called on the render thread, except {@link #onFramesDropped(int)} which is called on
+ * the thread that paces frames. Implementations must be cheap and must not allocate.
+ */
+public interface FrameObserver {
+
+    /**
+     * A frame was drawn.
+     *
+     * @param drawNanos           - Time spent drawing the whole frame
+     * @param captureLatencyNanos - Time from the newest capture to the end of the draw, -1 if
+     *                            the frame drew no new capture
+     */
+    public void onFrameRendered(long drawNanos, long captureLatencyNanos);
+
+    /**
+     * A renderer finished its part of a frame.
+     *
+     * @param timing - Accounting of the renderer, stable for as long as it stays in the pipeline
+     * @param nanos  - Time the renderer took
+     */
+    public void onRendererTimed(RenderTiming timing, long nanos);
+
+    /**
+     * Vsyncs went by without a frame callback, the UI thread was busy.
+     *
+     * @param frames - Number of frames missed
+     */
+    public void onFramesDropped(int frames);
+
+}
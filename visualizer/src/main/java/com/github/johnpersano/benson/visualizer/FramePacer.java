@@ -0,0 +1,127 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.view.Choreographer;
+
+/**
+ * Calls back once per vsync on the thread that started it, which must be a looper thread.
+ * The visualizer backends use it to draw at most once per display frame, however fast
+ * captures arrive.
+ */
+public class FramePacer implements Choreographer.FrameCallback {
+
+    public interface OnFrameListener {
+
+        /**
+         * Called once per vsync.
+         *
+         * @param frameTimeNanos - Vsync time of this frame
+         * @param droppedFrames  - Vsyncs missed since the previous callback
+         */
+        public void onFrame(long frameTimeNanos, int droppedFrames);
+
+    }
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private final OnFrameListener mOnFrameListener;
+
+    private Choreographer mChoreographer;
+    private boolean mRunning;
+
+    private long mFramePeriod = (long) (1000000000L / DEFAULT_REFRESH_RATE);
+    private long mLastFrameTime;
+
+    public FramePacer(OnFrameListener onFrameListener) {
+
+        this.mOnFrameListener = onFrameListener;
+
+    }
+
+    /* Display refresh rate in frames per second, used to count missed vsyncs. */
+    public void setRefreshRate(float refreshRate) {
+
+        if (refreshRate > 0) {
+
+            mFramePeriod = (long) (1000000000L / refreshRate);
+
+        }
+
+    }
+
+    public void start() {
+
+        if (mRunning) {
+
+            return;
+
+        }
+
+        if (mChoreographer == null) {
+
+            mChoreographer = Choreographer.getInstance();
+
+        }
+
+        mRunning = true;
+        mLastFrameTime = 0;
+        mChoreographer.postFrameCallback(this);
+
+    }
+
+    public void stop() {
+
+        if (!mRunning) {
+
+            return;
+
+        }
+
+        mRunning = false;
+        mChoreographer.removeFrameCallback(this);
+
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+
+        if (!mRunning) {
+
+            return;
+
+        }
+
+        mChoreographer.postFrameCallback(this);
+
+        /* Whole periods between callbacks, minus the one expected. Half a period of slack for jitter. */
+        int droppedFrames = 0;
+
+        if (mLastFrameTime != 0) {
+
+            droppedFrames = (int) Math.max(0, (frameTimeNanos - mLastFrameTime + mFramePeriod / 2) / mFramePeriod - 1);
+
+        }
+
+        mLastFrameTime = frameTimeNanos;
+
+        mOnFrameListener.onFrame(frameTimeNanos, droppedFrames);
+
+    }
+
+}
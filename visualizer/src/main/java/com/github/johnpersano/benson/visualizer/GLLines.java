@@ -0,0 +1,121 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Draws solid colored lines given in pixel coordinates with a top left origin, the same
+ * coordinates a {@link android.graphics.Canvas} uses. Vertices are streamed through one VBO
+ * that only grows. Create on, and call from, the GL thread.
+ */
+public class GLLines {
+
+    /* Maps pixel coordinates with a top left origin to clip space. */
+    private static final String VERTEX_SHADER =
+            "attribute vec2 a_position;\n" +
+            "uniform vec2 u_resolution;\n" +
+            "void main() {\n" +
+            "    vec2 clip = a_position / u_resolution * 2.0 - 1.0;\n" +
+            "    gl_Position = vec4(clip.x, -clip.y, 0.0, 1.0);\n" +
+            "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform vec4 u_color;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = u_color;\n" +
+            "}\n";
+
+    private final int mProgram;
+    private final int mPositionHandle;
+    private final int mResolutionHandle;
+    private final int mColorHandle;
+    private final int mVertexBuffer;
+
+    private FloatBuffer mClientBuffer;
+    private int mCapacity;
+
+    public GLLines() {
+
+        mProgram = GLPrograms.createProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        mPositionHandle = GLES20.glGetAttribLocation(mProgram, "a_position");
+        mResolutionHandle = GLES20.glGetUniformLocation(mProgram, "u_resolution");
+        mColorHandle = GLES20.glGetUniformLocation(mProgram, "u_color");
+
+        final int[] buffers = new int[1];
+        GLES20.glGenBuffers(1, buffers, 0);
+        mVertexBuffer = buffers[0];
+
+    }
+
+    /**
+     * Draw vertices as lines into the currently bound framebuffer.
+     *
+     * @param mode   - GL_LINES or GL_LINE_STRIP
+     * @param points - x and y of every vertex
+     * @param count  - Number of vertices
+     * @param rect   - Rect the coordinates are relative to
+     * @param color  - Color int, as given to a Paint
+     * @param width  - Line width in pixels
+     */
+    public void draw(int mode, float[] points, int count, Rect rect, int color, float width) {
+
+        final int floats = count * 2;
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBuffer);
+
+        if (floats > mCapacity) {
+
+            mClientBuffer = ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            mCapacity = floats;
+
+            mClientBuffer.put(points, 0, floats).position(0);
+            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, floats * 4, mClientBuffer, GLES20.GL_DYNAMIC_DRAW);
+
+        } else {
+
+            mClientBuffer.position(0);
+            mClientBuffer.put(points, 0, floats).position(0);
+            GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, floats * 4, mClientBuffer);
+
+        }
+
+        GLES20.glUseProgram(mProgram);
+        GLES20.glUniform2f(mResolutionHandle, rect.width(), rect.height());
+        GLES20.glUniform4f(mColorHandle, Color.red(color) / 255f, Color.green(color) / 255f,
+                Color.blue(color) / 255f, Color.alpha(color) / 255f);
+
+        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        GLES20.glVertexAttribPointer(mPositionHandle, 2, GLES20.GL_FLOAT, false, 0, 0);
+
+        GLES20.glLineWidth(width);
+        GLES20.glDrawArrays(mode, 0, count);
+
+        GLES20.glDisableVertexAttribArray(mPositionHandle);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+    }
+
+}
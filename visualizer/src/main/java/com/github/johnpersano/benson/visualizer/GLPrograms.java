@@ -0,0 +1,99 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+/* Shader compile and link helpers shared by the GL backend and GL renderers. Must be used on the GL thread. */
+final class GLPrograms {
+
+    private static final String TAG = "GLPrograms";
+
+    private GLPrograms() {
+
+        /* Do nothing. */
+
+    }
+
+    /**
+     * Compile and link a program.
+     *
+     * @param vertexSource   - Vertex shader source
+     * @param fragmentSource - Fragment shader source
+     * @return The program handle or 0 if compiling or linking failed.
+     */
+    static int createProgram(String vertexSource, String fragmentSource) {
+
+        final int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        final int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+
+        if (vertexShader == 0 || fragmentShader == 0) {
+
+            return 0;
+
+        }
+
+        final int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+
+        /* The program keeps the shaders alive for as long as it needs them. */
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+
+        final int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+
+        if (status[0] != GLES20.GL_TRUE) {
+
+            Log.e(TAG, "Link failed: " + GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+
+            return 0;
+
+        }
+
+        return program;
+
+    }
+
+    private static int compileShader(int type, String source) {
+
+        final int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+
+        final int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+
+        if (status[0] != GLES20.GL_TRUE) {
+
+            Log.e(TAG, "Compile failed: " + GLES20.glGetShaderInfoLog(shader));
+            GLES20.glDeleteShader(shader);
+
+            return 0;
+
+        }
+
+        return shader;
+
+    }
+
+}
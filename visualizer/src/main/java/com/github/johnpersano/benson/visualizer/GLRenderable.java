@@ -0,0 +1,47 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.graphics.Rect;
+
+/**
+ * Implemented by a {@link Renderer} that can also draw with OpenGL ES 2.0 in a {@link GLVisualizerView}.
+ * All methods are called on the GL thread.
+ */
+public interface GLRenderable extends CaptureConsumer {
+
+    /* Create programs and buffers. Called whenever the GL context is (re)created. */
+    public void onGLSurfaceCreated();
+
+    /**
+     * Draw the audio data into the currently bound framebuffer.
+     *
+     * @param data - Data to render
+     * @param rect - Rect to render into, in pixels
+     */
+    public void onGLRender(AudioData data, Rect rect);
+
+    /**
+     * Draw the FFT data into the currently bound framebuffer.
+     *
+     * @param data - Data to render
+     * @param rect - Rect to render into, in pixels
+     */
+    public void onGLRender(FFTData data, Rect rect);
+
+}
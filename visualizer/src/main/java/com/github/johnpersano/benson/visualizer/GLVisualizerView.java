@@ -0,0 +1,412 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.WindowManager;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * GPU backend for the visualizer. Trails are kept in two framebuffer textures that are ping-ponged
+ * every frame: the previous frame is faded into the next one by a shader pass, renderers draw on
+ * top, and the result is copied to the screen. This replaces the full screen Bitmap, MULTIPLY
+ * paint and blit that {@link VisualizerView} does on the CPU.
+ * <p/>
+ * Only renderers implementing {@link GLRenderable} are drawn, the rest are skipped.
+ */
+public class GLVisualizerView extends GLSurfaceView implements VisualizerHost, GLSurfaceView.Renderer {
+
+    private static final String TAG = "GLVisualizerView";
+
+    /* Same rate as the software fade paint, applied per frame. */
+    private static final float FADE = 238f / 255f;
+
+    /* Subtracted after the fade so trails reach black instead of stalling on rounding. */
+    private static final float FADE_FLOOR = 1f / 255f;
+
+    private static final String QUAD_VERTEX_SHADER =
+            "attribute vec2 a_position;\n" +
+            "varying vec2 v_uv;\n" +
+            "void main() {\n" +
+            "    v_uv = a_position * 0.5 + 0.5;\n" +
+            "    gl_Position = vec4(a_position, 0.0, 1.0);\n" +
+            "}\n";
+
+    private static final String FADE_FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform sampler2D u_texture;\n" +
+            "uniform float u_fade;\n" +
+            "uniform float u_floor;\n" +
+            "varying vec2 v_uv;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = max(texture2D(u_texture, v_uv) * u_fade - u_floor, 0.0);\n" +
+            "}\n";
+
+    private static final String COPY_FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform sampler2D u_texture;\n" +
+            "varying vec2 v_uv;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(u_texture, v_uv);\n" +
+            "}\n";
+
+    /* Full screen quad as a triangle strip in clip space. */
+    private static final float[] QUAD = {-1f, -1f, 1f, -1f, -1f, 1f, 1f, 1f};
+
+    private final AudioCapture mAudioCapture;
+
+    /* Changed on the UI thread, drawn from a snapshot on the GL thread. */
+    private final Compositor mCompositor = new Compositor();
+
+    private volatile FrameObserver mFrameObserver;
+
+    private final Rect mRect = new Rect();
+
+    /* Reused for every frame, only the byte references change. */
+    private final AudioData mAudioData = new AudioData(null);
+    private final FFTData mFFTData = new FFTData(null);
+
+    private final FramePacer mFramePacer;
+    private boolean mCreated;
+
+    private int mFadeProgram;
+    private int mFadePosition;
+    private int mFadeTexture;
+    private int mFadeAmount;
+    private int mFadeFloor;
+
+    private int mCopyProgram;
+    private int mCopyPosition;
+    private int mCopyTexture;
+
+    private int mQuadBuffer;
+
+    /* Trail textures and their framebuffers. mCurrent is the one holding the last frame. */
+    private final int[] mTextures = new int[2];
+    private final int[] mFramebuffers = new int[2];
+    private int mCurrent;
+
+    public GLVisualizerView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        setEGLContextClientVersion(2);
+        setEGLConfigChooser(8, 8, 8, 8, 0, 0);
+        setPreserveEGLContextOnPause(true);
+        setRenderer(this);
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
+
+        mAudioCapture = new AudioCapture();
+
+        /* Request at most one render per vsync, and only when a new capture arrived. */
+        mFramePacer = new FramePacer(new FramePacer.OnFrameListener() {
+
+            @Override
+            public void onFrame(long frameTimeNanos, int droppedFrames) {
+
+                final FrameObserver frameObserver = mFrameObserver;
+
+                if (droppedFrames > 0 && frameObserver != null) {
+
+                    frameObserver.onFramesDropped(droppedFrames);
+
+                }
+
+                if (mAudioCapture.hasUpdate()) {
+
+                    requestRender();
+
+                }
+
+            }
+
+        });
+
+        /* Used to count missed vsyncs. */
+        final WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        mFramePacer.setRefreshRate(windowManager.getDefaultDisplay().getRefreshRate());
+
+    }
+
+    public GLVisualizerView(Context context) {
+
+        this(context, null);
+
+    }
+
+    @Override
+    public void create() {
+
+        mAudioCapture.create();
+        mFramePacer.start();
+        mCreated = true;
+
+    }
+
+    /* GLSurfaceView.Renderer hides the visualizer Renderer here, hence the qualified names. */
+    @Override
+    public void addRenderer(com.github.johnpersano.benson.visualizer.Renderer renderer) {
+
+        addRenderer(renderer, Compositor.DEFAULT_ORDER);
+
+    }
+
+    @Override
+    public void addRenderer(com.github.johnpersano.benson.visualizer.Renderer renderer, int order) {
+
+        if (renderer == null) {
+
+            return;
+
+        }
+
+        if (!(renderer instanceof GLRenderable)) {
+
+            Log.w(TAG, renderer.getClass().getSimpleName() + " has no GL path and will not be drawn.");
+
+            return;
+
+        }
+
+        if (mCompositor.add(renderer, order)) {
+
+            mAudioCapture.addConsumer(renderer);
+
+        }
+
+    }
+
+    @Override
+    public void removeRenderer(com.github.johnpersano.benson.visualizer.Renderer renderer) {
+
+        if (mCompositor.remove(renderer)) {
+
+            mAudioCapture.removeConsumer(renderer);
+
+        }
+
+    }
+
+    @Override
+    public void clearRenderers() {
+
+        mCompositor.clear();
+        mAudioCapture.clearConsumers();
+
+    }
+
+    @Override
+    public Compositor getCompositor() {
+
+        return mCompositor;
+
+    }
+
+    @Override
+    public void setFrameObserver(FrameObserver frameObserver) {
+
+        mFrameObserver = frameObserver;
+        mCompositor.setFrameObserver(frameObserver);
+
+    }
+
+    @Override
+    public void setCapturing(boolean capturing) {
+
+        mAudioCapture.setActive(capturing);
+
+    }
+
+    @Override
+    public void release() {
+
+        mCreated = false;
+        mFramePacer.stop();
+        mAudioCapture.release();
+
+    }
+
+    @Override
+    public void onPause() {
+
+        mFramePacer.stop();
+        super.onPause();
+
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        if (mCreated) {
+
+            mFramePacer.start();
+
+        }
+
+    }
+
+    @Override
+    public void onSurfaceCreated(GL10 unused, EGLConfig config) {
+
+        mFadeProgram = GLPrograms.createProgram(QUAD_VERTEX_SHADER, FADE_FRAGMENT_SHADER);
+        mFadePosition = GLES20.glGetAttribLocation(mFadeProgram, "a_position");
+        mFadeTexture = GLES20.glGetUniformLocation(mFadeProgram, "u_texture");
+        mFadeAmount = GLES20.glGetUniformLocation(mFadeProgram, "u_fade");
+        mFadeFloor = GLES20.glGetUniformLocation(mFadeProgram, "u_floor");
+
+        mCopyProgram = GLPrograms.createProgram(QUAD_VERTEX_SHADER, COPY_FRAGMENT_SHADER);
+        mCopyPosition = GLES20.glGetAttribLocation(mCopyProgram, "a_position");
+        mCopyTexture = GLES20.glGetUniformLocation(mCopyProgram, "u_texture");
+
+        final FloatBuffer quad = ByteBuffer.allocateDirect(QUAD.length * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        quad.put(QUAD).position(0);
+
+        final int[] buffers = new int[1];
+        GLES20.glGenBuffers(1, buffers, 0);
+        mQuadBuffer = buffers[0];
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mQuadBuffer);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, QUAD.length * 4, quad, GLES20.GL_STATIC_DRAW);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        /* Textures are sized in onSurfaceChanged. */
+        mTextures[0] = 0;
+        mTextures[1] = 0;
+
+        mCompositor.onGLSurfaceCreated();
+
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 unused, int width, int height) {
+
+        mRect.set(0, 0, width, height);
+
+        if (mTextures[0] != 0) {
+
+            GLES20.glDeleteFramebuffers(2, mFramebuffers, 0);
+            GLES20.glDeleteTextures(2, mTextures, 0);
+
+        }
+
+        GLES20.glGenTextures(2, mTextures, 0);
+        GLES20.glGenFramebuffers(2, mFramebuffers, 0);
+
+        for (int i = 0; i < 2; i++) {
+
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[i]);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                    GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebuffers[i]);
+            GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                    GLES20.GL_TEXTURE_2D, mTextures[i], 0);
+
+            /* Start both trails from transparent black. */
+            GLES20.glClearColor(0f, 0f, 0f, 0f);
+            GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        }
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+        GLES20.glViewport(0, 0, width, height);
+
+    }
+
+    @Override
+    public void onDrawFrame(GL10 unused) {
+
+        final long start = System.nanoTime();
+
+        if (mTextures[0] == 0) {
+
+            return;
+
+        }
+
+        final int next = 1 - mCurrent;
+
+        /* Fade the last frame into the other texture. This is the whole trail effect. */
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebuffers[next]);
+
+        GLES20.glUseProgram(mFadeProgram);
+        GLES20.glUniform1f(mFadeAmount, FADE);
+        GLES20.glUniform1f(mFadeFloor, FADE_FLOOR);
+        drawQuad(mFadePosition, mFadeTexture, mTextures[mCurrent]);
+
+        /* Renderers draw on top of the faded trail. */
+        // Latest captures, the capture thread cannot touch these until the next acquire
+        final long captureTime = mAudioCapture.acquire(mAudioData, mFFTData);
+
+        mCompositor.renderGL(mAudioData, mFFTData, mRect);
+
+        /* Present the new frame. */
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+        GLES20.glUseProgram(mCopyProgram);
+        drawQuad(mCopyPosition, mCopyTexture, mTextures[next]);
+
+        mCurrent = next;
+
+        final FrameObserver frameObserver = mFrameObserver;
+
+        if (frameObserver != null) {
+
+            final long end = System.nanoTime();
+            frameObserver.onFrameRendered(end - start, (captureTime == 0) ? -1 : end - captureTime);
+
+        }
+
+    }
+
+    private void drawQuad(int position, int sampler, int texture) {
+
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glUniform1i(sampler, 0);
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mQuadBuffer);
+        GLES20.glEnableVertexAttribArray(position);
+        GLES20.glVertexAttribPointer(position, 2, GLES20.GL_FLOAT, false, 0, 0);
+
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+        GLES20.glDisableVertexAttribArray(position);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+    }
+
+}
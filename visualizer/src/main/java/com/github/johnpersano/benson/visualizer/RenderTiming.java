@@ -0,0 +1,100 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+/**
+ * Frame time accounting for one renderer in a {@link Compositor}. Written by the render thread,
+ * readable from any thread.
+ */
+public class RenderTiming {
+
+    private final String mName;
+
+    private volatile long mFrameCount;
+    private volatile long mTotalNanos;
+    private volatile long mMaxNanos;
+    private volatile long mLastNanos;
+
+    RenderTiming(String name) {
+
+        this.mName = name;
+
+    }
+
+    /* Only called by the render thread, so plain read-modify-write is safe. */
+    void record(long nanos) {
+
+        mLastNanos = nanos;
+        mTotalNanos += nanos;
+        mFrameCount++;
+
+        if (nanos > mMaxNanos) {
+
+            mMaxNanos = nanos;
+
+        }
+
+    }
+
+    public String getName() {
+
+        return mName;
+
+    }
+
+    public long getFrameCount() {
+
+        return mFrameCount;
+
+    }
+
+    public long getTotalNanos() {
+
+        return mTotalNanos;
+
+    }
+
+    public long getMaxNanos() {
+
+        return mMaxNanos;
+
+    }
+
+    public long getLastNanos() {
+
+        return mLastNanos;
+
+    }
+
+    public long getAverageNanos() {
+
+        final long count = mFrameCount;
+
+        return (count == 0) ? 0 : mTotalNanos / count;
+
+    }
+
+    @Override
+    public String toString() {
+
+        return mName + " frames=" + mFrameCount + " avg=" + getAverageNanos() / 1000 + "us max="
+                + mMaxNanos / 1000 + "us";
+
+    }
+
+}
@@ -5,13 +5,13 @@
  * http://creativecommons.org/licenses/MIT/
  */
 
-package com.github.johnpersano.benson.views.visualizer;
+package com.github.johnpersano.benson.visualizer;
 
 import android.graphics.Canvas;
 import android.graphics.Rect;
 
 
-abstract public class Renderer {
+abstract public class Renderer implements CaptureConsumer {
 
     protected float[] mPoints;
     protected float[] mFFTPoints;
@@ -22,6 +22,35 @@ abstract public class Renderer {
 
     }
 
+    /* By default a renderer reads both streams at the default size and rate. Override to capture less. */
+    @Override
+    public boolean needsWaveform() {
+
+        return true;
+
+    }
+
+    @Override
+    public boolean needsFFT() {
+
+        return true;
+
+    }
+
+    @Override
+    public int getCaptureSize() {
+
+        return DEFAULT;
+
+    }
+
+    @Override
+    public int getCaptureRate() {
+
+        return DEFAULT;
+
+    }
+
     // As the display of raw/FFT audio will usually look different, subclasses
     // will typically only implement one of the below methods
 
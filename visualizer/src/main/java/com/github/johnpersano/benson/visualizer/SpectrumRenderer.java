@@ -0,0 +1,246 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.opengl.GLES20;
+
+/**
+ * Renders the FFT data as mirrored bars. FFT bins are grouped into log spaced bands, so low
+ * frequencies where speech lives get most of the bars. Each band rises quickly and falls slowly.
+ * All state is preallocated, a frame allocates nothing unless the capture size changes.
+ */
+public class SpectrumRenderer extends Renderer implements GLRenderable {
+
+    private static final int BAR_COUNT = 32;
+
+    /* Fraction of the gap to the new level covered per frame, rising and falling. */
+    private static final float ATTACK = 0.6f;
+    private static final float DECAY = 0.15f;
+
+    /* Largest bin magnitude of the 8 bit FFT, used to normalize levels. */
+    private static final double MAX_MAGNITUDE = 128 * Math.sqrt(2);
+
+    /* Bars fill this fraction of their slot, the rest is spacing. */
+    private static final float BAR_FILL = 0.6f;
+
+    /* Tallest bar as a fraction of the rect height. */
+    private static final float BAR_HEIGHT = 0.8f;
+
+    private final Paint mPaint;
+
+    /* First FFT bin of every band, plus the end of the last band. Rebuilt when the capture size changes. */
+    private int[] mBandEdges;
+    private int mCaptureSize;
+
+    /* Smoothed level of every band, 0 to 1. */
+    private final float[] mLevels = new float[BAR_COUNT];
+
+    /* Two vertices per bar, shared by both paths. */
+    private final float[] mBars = new float[BAR_COUNT * 4];
+
+    private GLLines mLines;
+
+    public SpectrumRenderer() {
+        super();
+
+        this.mPaint = new Paint();
+        this.mPaint.setAntiAlias(true);
+        this.mPaint.setColor(Color.argb(255, 222, 92, 143));
+
+    }
+
+    public void changeColor(int color) {
+
+        mPaint.setColor(color);
+
+    }
+
+    /* Only FFT data is drawn, so the waveform is never captured for this renderer. */
+    @Override
+    public boolean needsWaveform() {
+
+        return false;
+
+    }
+
+    @Override
+    public void onRender(Canvas canvas, AudioData data, Rect rect) {
+
+        /* Do nothing, we only display FFT data */
+
+    }
+
+    @Override
+    public void onRender(Canvas canvas, FFTData data, Rect rect) {
+
+        if (!layout(data.bytes, rect)) {
+
+            return;
+
+        }
+
+        mPaint.setStrokeWidth(barWidth(rect));
+        canvas.drawLines(mBars, 0, BAR_COUNT * 4, mPaint);
+
+    }
+
+    @Override
+    public void onGLSurfaceCreated() {
+
+        mLines = new GLLines();
+
+    }
+
+    @Override
+    public void onGLRender(AudioData data, Rect rect) {
+
+        /* Do nothing, we only display FFT data */
+
+    }
+
+    @Override
+    public void onGLRender(FFTData data, Rect rect) {
+
+        if (!layout(data.bytes, rect)) {
+
+            return;
+
+        }
+
+        mLines.draw(GLES20.GL_LINES, mBars, BAR_COUNT * 2, rect, mPaint.getColor(), barWidth(rect));
+
+    }
+
+    /**
+     * Fold an FFT capture into the smoothed band levels. This is the whole per frame cost
+     * apart from drawing.
+     *
+     * @param fft - Visualizer FFT capture: DC, Nyquist, then real and imaginary pairs
+     * @return The band levels, valid until the next call.
+     */
+    float[] updateLevels(byte[] fft) {
+
+        if (fft.length != mCaptureSize) {
+
+            buildBands(fft.length);
+
+        }
+
+        final int[] edges = mBandEdges;
+
+        for (int band = 0; band < BAR_COUNT; band++) {
+
+            /* Peak squared magnitude in the band, square root taken once per band. */
+            int peak = 0;
+
+            for (int bin = edges[band]; bin < edges[band + 1]; bin++) {
+
+                final int real = fft[bin * 2];
+                final int imaginary = fft[bin * 2 + 1];
+                final int magnitude = real * real + imaginary * imaginary;
+
+                if (magnitude > peak) {
+
+                    peak = magnitude;
+
+                }
+
+            }
+
+            /* Log scale so quiet speech still moves the bars. */
+            final float target = (float) (Math.log1p(Math.sqrt(peak)) / Math.log1p(MAX_MAGNITUDE));
+            final float level = mLevels[band];
+
+            mLevels[band] = level + (target - level) * (target > level ? ATTACK : DECAY);
+
+        }
+
+        return mLevels;
+
+    }
+
+    /* Update levels and place one vertical bar per band, mirrored around the middle. */
+    private boolean layout(byte[] fft, Rect rect) {
+
+        if (fft.length < BAR_COUNT * 4) {
+
+            return false;
+
+        }
+
+        final float[] levels = updateLevels(fft);
+
+        final float slot = (float) rect.width() / BAR_COUNT;
+        final float middle = rect.height() / 2f;
+        final float maxHalfHeight = rect.height() * BAR_HEIGHT / 2f;
+
+        for (int band = 0; band < BAR_COUNT; band++) {
+
+            final float x = slot * band + slot / 2f;
+
+            /* Keep a sliver visible so silence still shows a line of bars. */
+            final float halfHeight = Math.max(1f, levels[band] * maxHalfHeight);
+
+            mBars[band * 4] = x;
+            mBars[band * 4 + 1] = middle - halfHeight;
+            mBars[band * 4 + 2] = x;
+            mBars[band * 4 + 3] = middle + halfHeight;
+
+        }
+
+        return true;
+
+    }
+
+    private float barWidth(Rect rect) {
+
+        return (float) rect.width() / BAR_COUNT * BAR_FILL;
+
+    }
+
+    /**
+     * Bin k sits at byte 2k for k from 1 to n/2 - 1; bin 0 (DC) is skipped. Band edges are
+     * spaced logarithmically over those bins, and every band gets at least one bin.
+     */
+    private void buildBands(int captureSize) {
+
+        final int bins = captureSize / 2;
+
+        mBandEdges = new int[BAR_COUNT + 1];
+        mBandEdges[0] = 1;
+
+        for (int band = 1; band <= BAR_COUNT; band++) {
+
+            final int edge = (int) Math.round(Math.pow(bins, (double) band / BAR_COUNT));
+
+            /* Leave at least one bin for each remaining band. */
+            final int ceiling = bins - (BAR_COUNT - band);
+
+            mBandEdges[band] = Math.min(Math.max(edge, mBandEdges[band - 1] + 1), ceiling);
+
+        }
+
+        mCaptureSize = captureSize;
+
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2014 John Persano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+/* Common interface of the visualizer backends, so the activity does not care which one is inflated. */
+public interface VisualizerHost {
+
+    /* Start capturing audio. */
+    public void create();
+
+    /* Add a renderer at the default order. */
+    public void addRenderer(Renderer renderer);
+
+    /* Add a renderer. Lower orders are drawn first, equal orders in the order they were added. */
+    public void addRenderer(Renderer renderer, int order);
+
+    public void removeRenderer(Renderer renderer);
+
+    public void clearRenderers();
+
+    /* The renderer pipeline, with per renderer frame timing. */
+    public Compositor getCompositor();
+
+    /* Receives frame, renderer and dropped frame timing, or null to stop. */
+    public void setFrameObserver(FrameObserver frameObserver);
+
+    /* Capture while something is playing, stop while idle. */
+    public void setCapturing(boolean capturing);
+
+    /* Forward the activity lifecycle. */
+    public void onPause();
+
+    public void onResume();
+
+    /* Stop capturing and release resources. */
+    public void release();
+
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright 2011, Felix Palmer
+ *
+ * Licensed under the MIT license:
+ * http://creativecommons.org/licenses/MIT/
+ */
+
+package com.github.johnpersano.benson.visualizer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff.Mode;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.WindowManager;
+
+
+/**
+ * A class that draws visualizations of data received from a
+ * {@link android.media.audiofx.Visualizer.OnDataCaptureListener#onWaveFormDataCapture } and
+ * {@link android.media.audiofx.Visualizer.OnDataCaptureListener#onFftDataCapture }
+ * <p/>
+ * This is the software backend. {@link GLVisualizerView} does the same work on the GPU.
+ */
+@SuppressWarnings({"JavaDoc", "UnusedDeclaration"})
+public class VisualizerView extends View implements VisualizerHost {
+
+    private static final String TAG = "VisualizerView";
+
+    private Rect mRect = new Rect();
+    private AudioCapture mAudioCapture;
+    private FramePacer mFramePacer;
+    private boolean mCreated;
+
+    /* Reused for every frame, only the byte references change. */
+    private final AudioData mAudioData = new AudioData(null);
+    private final FFTData mFFTData = new FFTData(null);
+
+    private final Compositor mCompositor = new Compositor();
+
+    private volatile FrameObserver mFrameObserver;
+
+    private Paint mFlashPaint = new Paint();
+    private Paint mFadePaint = new Paint();
+
+    private Matrix mMatrix;
+
+    public VisualizerView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs);
+
+        mFlashPaint.setColor(Color.argb(122, 255, 255, 255));
+        mFadePaint.setColor(Color.argb(238, 255, 255, 255)); // Adjust alpha to change how quickly the image fades
+        mFadePaint.setXfermode(new PorterDuffXfermode(Mode.MULTIPLY));
+
+        mMatrix = new Matrix();
+
+        mAudioCapture = new AudioCapture();
+
+        /* Draw once per vsync, and only when a new capture arrived since the last draw. */
+        mFramePacer = new FramePacer(new FramePacer.OnFrameListener() {
+
+            @Override
+            public void onFrame(long frameTimeNanos, int droppedFrames) {
+
+                final FrameObserver frameObserver = mFrameObserver;
+
+                if (droppedFrames > 0 && frameObserver != null) {
+
+                    frameObserver.onFramesDropped(droppedFrames);
+
+                }
+
+                if (mAudioCapture.hasUpdate()) {
+
+                    invalidate();
+
+                }
+
+            }
+
+        });
+
+        /* Used to count missed vsyncs. */
+        final WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        mFramePacer.setRefreshRate(windowManager.getDefaultDisplay().getRefreshRate());
+
+    }
+
+    public VisualizerView(Context context, AttributeSet attrs) {
+
+        this(context, attrs, 0);
+    }
+
+    public VisualizerView(Context context) {
+
+        this(context, null, 0);
+
+    }
+
+    @Override
+    public void create() {
+
+        mAudioCapture.create();
+        mFramePacer.start();
+        mCreated = true;
+
+    }
+
+    @Override
+    public void addRenderer(Renderer renderer) {
+
+        addRenderer(renderer, Compositor.DEFAULT_ORDER);
+
+    }
+
+    @Override
+    public void addRenderer(Renderer renderer, int order) {
+
+        if (renderer != null && mCompositor.add(renderer, order)) {
+
+            mAudioCapture.addConsumer(renderer);
+
+        }
+
+    }
+
+    @Override
+    public void removeRenderer(Renderer renderer) {
+
+        if (mCompositor.remove(renderer)) {
+
+            mAudioCapture.removeConsumer(renderer);
+
+        }
+
+    }
+
+    @Override
+    public void clearRenderers() {
+
+        mCompositor.clear();
+        mAudioCapture.clearConsumers();
+
+    }
+
+    @Override
+    public Compositor getCompositor() {
+
+        return mCompositor;
+
+    }
+
+    @Override
+    public void setFrameObserver(FrameObserver frameObserver) {
+
+        mFrameObserver = frameObserver;
+        mCompositor.setFrameObserver(frameObserver);
+
+    }
+
+    @Override
+    public void setCapturing(boolean capturing) {
+
+        mAudioCapture.setActive(capturing);
+
+    }
+
+    /**
+     * Call to release the resources used by VisualizerView. Like with the
+     * MediaPlayer it is good practice to call this method
+     */
+    @Override
+    public void release() {
+
+        mCreated = false;
+        mFramePacer.stop();
+        mAudioCapture.release();
+
+    }
+
+    @Override
+    public void onPause() {
+
+        mFramePacer.stop();
+
+    }
+
+    @Override
+    public void onResume() {
+
+        if (mCreated) {
+
+            mFramePacer.start();
+
+        }
+
+    }
+
+    boolean mFlash = false;
+
+    /**
+     * Call this to make the visualizer flash. Useful for flashing at the start
+     * of a song/loop etc...
+     */
+    public void flash() {
+        mFlash = true;
+        invalidate();
+    }
+
+    Bitmap mCanvasBitmap;
+    Canvas mCanvas;
+
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        final long start = System.nanoTime();
+
+        // Create canvas once we're ready to draw
+        mRect.set(0, 0, getWidth(), getHeight());
+
+        if (mCanvasBitmap == null) {
+
+            mCanvasBitmap = Bitmap.createBitmap(canvas.getWidth(), canvas.getHeight(), Config.ARGB_8888);
+
+        }
+        if (mCanvas == null) {
+
+            mCanvas = new Canvas(mCanvasBitmap);
+
+        }
+
+        // Latest captures, the capture thread cannot touch these until the next acquire
+        final long captureTime = mAudioCapture.acquire(mAudioData, mFFTData);
+
+        mCompositor.render(mCanvas, mAudioData, mFFTData, mRect);
+
+        // Fade out old contents
+        mCanvas.drawPaint(mFadePaint);
+
+        if (mFlash) {
+            mFlash = false;
+            mCanvas.drawPaint(mFlashPaint);
+        }
+
+        canvas.drawBitmap(mCanvasBitmap, mMatrix, null);
+
+        final FrameObserver frameObserver = mFrameObserver;
+
+        if (frameObserver != null) {
+
+            final long end = System.nanoTime();
+            frameObserver.onFrameRendered(end - start, (captureTime == 0) ? -1 : end - captureTime);
+
+        }
+    }
+}